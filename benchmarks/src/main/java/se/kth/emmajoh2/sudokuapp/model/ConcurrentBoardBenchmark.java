@@ -0,0 +1,96 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention benchmark for {@link ConcurrentBoard}: every thread is a player making random moves on the same
+ * board, compared with the same moves on a {@link PackedBoard} behind one lock.
+ * <p>
+ * Run it with increasing thread counts to see how it scales, for example
+ * {@code java -jar benchmarks/target/benchmarks.jar ConcurrentBoard -t 1} and then {@code -t 2}, {@code -t 4}
+ * up to the number of cores. After every iteration the counts of the board are checked against a recount, so a
+ * lost update fails the run.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentBoardBenchmark {
+    private final AtomicInteger players = new AtomicInteger();
+    private Puzzle puzzle;
+    private ConcurrentBoard board;
+    private PackedBoard lockedBoard;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        puzzle = MatrixGenerator.generatePuzzle(SudokuLevel.HARD, new SudokuSolver(), new SplittableRandom(42));
+        board = new ConcurrentBoard(puzzle);
+        lockedBoard = new PackedBoard();
+        lockedBoard.load(puzzle);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkCounts() {
+        PackedBoard copy = board.toPackedBoard();
+        int filled = 0, correct = 0;
+        for (int cell = 0; cell < copy.getCells(); cell++) {
+            if (copy.getCurrent(cell) != 0) filled++;
+            if (copy.isCorrect(cell)) correct++;
+        }
+        if (filled != board.getFilledCount() || correct != board.getCorrectCount()) {
+            throw new IllegalStateException("lost update: counted " + filled + "/" + correct + " but the board has "
+                    + board.getFilledCount() + "/" + board.getCorrectCount());
+        }
+    }
+
+    /**
+     * The random generator and the id of one player.
+     */
+    @State(Scope.Thread)
+    public static class Player {
+        SplittableRandom random;
+        int id;
+
+        @Setup
+        public void setup(ConcurrentBoardBenchmark benchmark) {
+            id = benchmark.players.incrementAndGet();
+            random = new SplittableRandom(id);
+        }
+    }
+
+    /**
+     * A move based on the value the player saw, which fails if another player changed the cell first.
+     */
+    @Benchmark
+    public long compareAndSet(Player player) {
+        int cell = player.random.nextInt(81);
+        long stamp = board.read(cell);
+        return board.compareAndSet(cell, stamp, player.random.nextInt(10), player.id);
+    }
+
+    /**
+     * A move where the last player wins.
+     */
+    @Benchmark
+    public long set(Player player) {
+        return board.set(player.random.nextInt(81), player.random.nextInt(10), player.id);
+    }
+
+    /**
+     * The same move on a board shared behind one lock.
+     */
+    @Benchmark
+    public boolean locked(Player player) {
+        int cell = player.random.nextInt(81);
+        int value = player.random.nextInt(10);
+        synchronized (lockedBoard) {
+            return lockedBoard.setCurrent(cell, value);
+        }
+    }
+}
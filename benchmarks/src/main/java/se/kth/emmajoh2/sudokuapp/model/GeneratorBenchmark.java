@@ -0,0 +1,35 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MatrixGenerator#generateSudokuMatrix(SudokuLevel)} for every {@link SudokuLevel},
+ * with both solver backends for the uniqueness checks and without any check.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeneratorBenchmark {
+
+    @Param({"EASY", "MEDIUM", "HARD"})
+    public SudokuLevel level;
+
+    @Benchmark
+    public int[][][] generateUnique() {
+        return MatrixGenerator.generateSudokuMatrix(level);
+    }
+
+    @Benchmark
+    public int[][][] generateUniqueDancingLinks() {
+        return MatrixGenerator.generateSudokuMatrix(level, SolverBackend.DANCING_LINKS);
+    }
+
+    @Benchmark
+    public int[][][] generateUnchecked() {
+        return MatrixGenerator.generateSudokuMatrix(level, false);
+    }
+}
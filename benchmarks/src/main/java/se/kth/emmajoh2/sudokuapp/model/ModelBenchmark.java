@@ -0,0 +1,63 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link SudokuModel} operations used by the controller: starting a game, the board checks
+ * run after every move, and hints.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModelBenchmark {
+
+    @Param({"EASY", "MEDIUM", "HARD"})
+    public SudokuLevel level;
+
+    private SudokuModel model;
+
+    @Setup
+    public void setup() {
+        model = new SudokuModel();
+        model.initGame(level);
+    }
+
+    @Benchmark
+    public SudokuModel initGame() {
+        model.initGame(level);
+        return model;
+    }
+
+    @Benchmark
+    public boolean allTilesCorrect() {
+        return model.allTilesCorrect();
+    }
+
+    @Benchmark
+    public boolean placedTilesCorrect() {
+        return model.placedTilesCorrect();
+    }
+
+    @Benchmark
+    public boolean hasConflicts() {
+        return model.hasConflicts();
+    }
+
+    @Benchmark
+    public boolean gameOver() {
+        return model.gameOver();
+    }
+
+    /**
+     * Adds one hint, clearing the player's moves first when the board is already solved.
+     */
+    @Benchmark
+    public boolean addhint() {
+        if (model.allTilesCorrect()) model.resetMoves();
+        return model.addhint();
+    }
+}
@@ -0,0 +1,58 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link SolverEngine} backends on a fixed set of puzzles, solving and counting up to two
+ * solutions (the check done for every removal during generation).
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SolverBenchmark {
+    private static final String[] PUZZLES = {
+            // generated EASY-like puzzle with many clues
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79",
+            // hard 17-clue puzzles
+            "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......",
+            "52...6.........7.13...........4..8..6......5...........418.........3..2...87.....",
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4.."
+    };
+
+    @Param({"BITMASK", "DANCING_LINKS"})
+    public SolverBackend backend;
+
+    @Param({"0", "1", "2", "3"})
+    public int puzzle;
+
+    private SolverEngine engine;
+    private int[] givens;
+    private int[] grid;
+
+    @Setup
+    public void setup() {
+        engine = backend.newEngine();
+        givens = new int[PUZZLES[puzzle].length()];
+        for (int cell = 0; cell < givens.length; cell++) {
+            char c = PUZZLES[puzzle].charAt(cell);
+            givens[cell] = c == '.' ? 0 : c - '0';
+        }
+        grid = new int[givens.length];
+    }
+
+    @Benchmark
+    public int[] solve() {
+        System.arraycopy(givens, 0, grid, 0, givens.length);
+        engine.solve(grid);
+        return grid;
+    }
+
+    @Benchmark
+    public int countUpToTwo() {
+        return engine.countSolutions(givens, 2);
+    }
+}
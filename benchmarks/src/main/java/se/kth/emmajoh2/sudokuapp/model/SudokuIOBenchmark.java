@@ -0,0 +1,50 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SudokuIO} save and load round-trips through a temporary file, in the binary save format
+ * and in the serialized format of older versions.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SudokuIOBenchmark {
+    private SudokuModel model;
+    private File file;
+    private File legacyFile;
+
+    @Setup
+    public void setup() throws IOException {
+        model = new SudokuModel();
+        file = File.createTempFile("sudoku-bench", ".sudoku");
+        legacyFile = File.createTempFile("sudoku-bench", ".ser");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        legacyFile.delete();
+    }
+
+    @Benchmark
+    public SudokuModel roundTrip() throws IOException {
+        SudokuIO.saveGame(model, file.toPath());
+        SudokuIO.loadGame(model, file.toPath());
+        return model;
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public SudokuModel legacyRoundTrip() throws IOException {
+        SudokuIO.serializeToFile(model.getSudokuBoard(), legacyFile);
+        SudokuIO.loadGame(model, legacyFile.toPath());
+        return model;
+    }
+}
@@ -1,6 +1,9 @@
 module se.kth.emmajoh2.sudokuapp {
     requires javafx.controls;
     requires javafx.fxml;
+    requires jdk.httpserver;
+    requires java.net.http;
+    requires jdk.jfr;
 
 
     opens se.kth.emmajoh2.sudokuapp to javafx.fxml;
@@ -0,0 +1,309 @@
+package se.kth.emmajoh2.sudokuapp;
+
+import se.kth.emmajoh2.sudokuapp.model.BoardSize;
+import se.kth.emmajoh2.sudokuapp.model.Canonicalizer;
+import se.kth.emmajoh2.sudokuapp.model.DedupIndex;
+import se.kth.emmajoh2.sudokuapp.model.DifficultyRater;
+import se.kth.emmajoh2.sudokuapp.model.MatrixGenerator;
+import se.kth.emmajoh2.sudokuapp.model.Puzzle;
+import se.kth.emmajoh2.sudokuapp.model.PuzzleArchive;
+import se.kth.emmajoh2.sudokuapp.model.SolverBackend;
+import se.kth.emmajoh2.sudokuapp.model.SolverEngine;
+import se.kth.emmajoh2.sudokuapp.model.SudokuLevel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless entry point that generates puzzle packs in parallel.
+ * <p>
+ * Generates {@code --count} puzzles for each requested level, spread over {@code --threads} workers
+ * (all cores by default). Every worker has its own solver and its own {@link SplittableRandom} split off
+ * one root generator, so nothing is shared while generating. Finished puzzles are written to the output
+ * in chunks as soon as they are ready, either as text, one puzzle per line in the format of
+ * {@link Puzzle#toLine()}, or appended to a {@link PuzzleArchive}. The order of the puzzles is not deterministic.
+ * </p>
+ * <p>
+ * With {@code --rated} every puzzle is generated to rate as its level with the {@link DifficultyRater}, and is
+ * labelled with the level it actually rates as, instead of being classified by its clue count alone.
+ * </p>
+ * <p>
+ * {@code --size 16} or {@code --size 25} generates 16x16 or 25x25 puzzles. Archives only hold 9x9 puzzles,
+ * so the larger sizes can only be written as text.
+ * </p>
+ * <p>
+ * With {@code --dedup} every 9x9 puzzle is canonicalized and checked against a shared {@link DedupIndex} before it
+ * is written, and puzzles that are the same as an earlier one up to the Sudoku symmetries are generated again.
+ * When appending to an existing archive, its puzzles are added to the index first.
+ * </p>
+ * Usage:
+ * <pre>
+ * BatchGenerator (--out pack.txt | --archive pack.sdka) [--count 1000] [--levels EASY,MEDIUM,HARD]
+ *                [--threads 8] [--seed 42] [--rated] [--size 9|16|25] [--dedup]
+ * </pre>
+ */
+public class BatchGenerator {
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * Receives the finished puzzles, one chunk at a time. Called from several worker threads at once.
+     */
+    public interface PuzzleSink {
+        void write(List<Puzzle> chunk) throws IOException;
+    }
+
+    private final int count;
+    private final List<SudokuLevel> levels;
+    private final int threads;
+    private final SplittableRandom root;
+    private final boolean rated;
+    private final BoardSize size;
+    private DedupIndex dedupIndex;
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * Constructs a new {@code BatchGenerator}.
+     *
+     * @param count The number of puzzles to generate per level.
+     * @param levels The levels to generate puzzles for.
+     * @param threads The number of worker threads.
+     * @param root The random generator the workers' generators are split from.
+     */
+    public BatchGenerator(int count, List<SudokuLevel> levels, int threads, SplittableRandom root) {
+        this(count, levels, threads, root, false);
+    }
+
+    /**
+     * Constructs a new {@code BatchGenerator}.
+     *
+     * @param count The number of puzzles to generate per level.
+     * @param levels The levels to generate puzzles for.
+     * @param threads The number of worker threads.
+     * @param root The random generator the workers' generators are split from.
+     * @param rated Whether the puzzles are generated to a target rating and labelled by their rated level.
+     */
+    public BatchGenerator(int count, List<SudokuLevel> levels, int threads, SplittableRandom root, boolean rated) {
+        this(count, levels, threads, root, rated, BoardSize.NINE);
+    }
+
+    /**
+     * Constructs a new {@code BatchGenerator}.
+     *
+     * @param count The number of puzzles to generate per level.
+     * @param levels The levels to generate puzzles for.
+     * @param threads The number of worker threads.
+     * @param root The random generator the workers' generators are split from.
+     * @param rated Whether the puzzles are generated to a target rating and labelled by their rated level.
+     * @param size The size of the boards to generate.
+     */
+    public BatchGenerator(int count, List<SudokuLevel> levels, int threads, SplittableRandom root, boolean rated,
+                          BoardSize size) {
+        if (count < 0 || threads < 1) throw new IllegalArgumentException();
+        this.count = count;
+        this.levels = levels;
+        this.threads = threads;
+        this.root = root;
+        this.rated = rated;
+        this.size = size;
+    }
+
+    /**
+     * Makes the workers drop every puzzle whose {@link se.kth.emmajoh2.sudokuapp.model.Fingerprint} is already in
+     * the index, and add the fingerprints of the puzzles they keep. Dropped puzzles are generated again, so each
+     * level still gets {@code count} puzzles.
+     *
+     * @param dedupIndex The index shared by the workers, or {@code null} to keep duplicates.
+     * @throws IllegalArgumentException If the generator makes boards other than 9x9, which cannot be canonicalized.
+     */
+    public void setDedupIndex(DedupIndex dedupIndex) {
+        if (dedupIndex != null && size != BoardSize.NINE) throw new IllegalArgumentException("only 9x9 puzzles can be deduplicated");
+        this.dedupIndex = dedupIndex;
+    }
+
+    /**
+     * Returns the number of generated puzzles that were dropped as duplicates.
+     *
+     * @return The number of duplicates found by the runs so far.
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * Generates all puzzles and writes them to the given writer as they are finished.
+     *
+     * @param out The writer the puzzle lines are written to. Writes are synchronized on it.
+     * @return The number of puzzles written.
+     * @throws IOException If writing to the output fails.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public long run(Writer out) throws IOException, InterruptedException {
+        return run(chunk -> {
+            StringBuilder lines = new StringBuilder(chunk.size() * (2 * size.getCells() + 20));
+            for (Puzzle puzzle : chunk) lines.append(puzzle.toLine()).append('\n');
+            synchronized (out) {
+                out.write(lines.toString());
+            }
+        });
+    }
+
+    /**
+     * Generates all puzzles and appends them to the given archive as they are finished.
+     *
+     * @param archive The archive the puzzles are appended to.
+     * @return The number of puzzles written.
+     * @throws IOException If writing to the archive fails.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     * @throws IllegalStateException If the generator makes boards other than 9x9, which archives cannot hold.
+     */
+    public long run(PuzzleArchive archive) throws IOException, InterruptedException {
+        if (size != BoardSize.NINE) throw new IllegalStateException("archives only hold 9x9 puzzles");
+        return run(archive::appendAll);
+    }
+
+    /**
+     * Generates all puzzles and hands them to the given sink as they are finished.
+     *
+     * @param sink The sink receiving the chunks of puzzles. It must be safe to call from several threads.
+     * @return The number of puzzles written.
+     * @throws IOException If writing to the output fails.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public long run(PuzzleSink sink) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> workers = new ArrayList<>();
+        try {
+            for (SudokuLevel level : levels) {
+                for (int worker = 0; worker < threads; worker++) {
+                    // split on this thread, SplittableRandom itself is not thread-safe
+                    SplittableRandom random = root.split();
+                    int quota = count / threads + (worker < count % threads ? 1 : 0);
+                    if (quota > 0) workers.add(executor.submit(() -> generate(level, quota, random, sink)));
+                }
+            }
+            long written = 0;
+            for (Future<Long> worker : workers) written += worker.get();
+            return written;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Work done by one worker: generates {@code quota} puzzles and flushes them in chunks.
+     */
+    private long generate(SudokuLevel level, int quota, SplittableRandom random, PuzzleSink sink) throws IOException {
+        SolverEngine solver = SolverBackend.BITMASK.newEngine(size);
+        DifficultyRater rater = rated ? new DifficultyRater() : null;
+        Canonicalizer canonicalizer = dedupIndex != null ? new Canonicalizer() : null;
+        List<Puzzle> chunk = new ArrayList<>(CHUNK_SIZE);
+        long written = 0;
+        for (int i = 0; i < quota; i++) {
+            if (Thread.currentThread().isInterrupted()) break;
+            Puzzle puzzle = rated ? MatrixGenerator.generateRatedPuzzle(level, solver, rater, random)
+                    : MatrixGenerator.generatePuzzle(level, solver, random);
+            if (canonicalizer != null && !dedupIndex.add(canonicalizer.fingerprint(puzzle))) {
+                duplicates.incrementAndGet();
+                i--; // generate a replacement
+                continue;
+            }
+            chunk.add(puzzle);
+            if (chunk.size() == CHUNK_SIZE || i == quota - 1) {
+                sink.write(chunk);
+                written += chunk.size();
+                chunk.clear();
+            }
+        }
+        return written;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path outFile = null;
+        Path archiveFile = null;
+        int count = 1000;
+        List<SudokuLevel> levels = List.of(SudokuLevel.values());
+        int threads = Runtime.getRuntime().availableProcessors();
+        SplittableRandom root = new SplittableRandom();
+        boolean rated = false;
+        BoardSize size = BoardSize.NINE;
+        boolean dedup = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": outFile = Path.of(args[++i]); break;
+                case "--archive": archiveFile = Path.of(args[++i]); break;
+                case "--count": count = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--seed": root = new SplittableRandom(Long.parseLong(args[++i])); break;
+                case "--rated": rated = true; break;
+                case "--size": size = BoardSize.ofGridSize(Integer.parseInt(args[++i])); break;
+                case "--dedup": dedup = true; break;
+                case "--levels":
+                    levels = new ArrayList<>();
+                    for (String level : args[++i].split(",")) levels.add(SudokuLevel.valueOf(level.trim().toUpperCase()));
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    usage();
+                    return;
+            }
+        }
+        if ((outFile == null) == (archiveFile == null)) {
+            usage();
+            return;
+        }
+        if (archiveFile != null && size != BoardSize.NINE) {
+            System.err.println("Archives only hold 9x9 puzzles, use --out for " + size + " puzzles");
+            return;
+        }
+        if (dedup && size != BoardSize.NINE) {
+            System.err.println("Only 9x9 puzzles can be deduplicated");
+            return;
+        }
+
+        long start = System.nanoTime();
+        long written;
+        BatchGenerator generator = new BatchGenerator(count, levels, threads, root, rated, size);
+        DedupIndex index = dedup ? new DedupIndex(count * levels.size()) : null;
+        generator.setDedupIndex(index);
+        if (outFile != null) {
+            try (BufferedWriter out = Files.newBufferedWriter(outFile, StandardCharsets.US_ASCII)) {
+                written = generator.run(out);
+            }
+        } else {
+            try (PuzzleArchive archive = PuzzleArchive.open(archiveFile)) {
+                if (index != null) {
+                    // puzzles already in the archive count as seen
+                    Canonicalizer canonicalizer = new Canonicalizer();
+                    for (long i = 0; i < archive.size(); i++) index.add(canonicalizer.fingerprint(archive.get(i)));
+                }
+                written = generator.run(archive);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d puzzles in %.2f s (%.0f puzzles/s) with %d threads -> %s%n",
+                written, seconds, written / seconds, threads, outFile != null ? outFile : archiveFile);
+        if (index != null) System.out.println("Dropped " + generator.getDuplicates() + " duplicates");
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchGenerator (--out <text file> | --archive <archive file>) "
+                + "[--count <per level>] [--levels EASY,MEDIUM,HARD] [--threads <n>] [--seed <long>] [--rated] "
+                + "[--size 9|16|25] [--dedup]");
+    }
+}
@@ -0,0 +1,294 @@
+package se.kth.emmajoh2.sudokuapp;
+
+import se.kth.emmajoh2.sudokuapp.diagnostics.Metrics;
+import se.kth.emmajoh2.sudokuapp.model.BoardSize;
+import se.kth.emmajoh2.sudokuapp.model.SolverBackend;
+import se.kth.emmajoh2.sudokuapp.model.SolverEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless entry point that checks and solves large files of 9x9 puzzles in parallel.
+ * <p>
+ * The input has one puzzle per line in the common 81-character format: the cells in row-major order, {@code 1}-
+ * {@code 9} for the givens and {@code .} or {@code 0} for the empty cells. Anything after the first whitespace on
+ * a line is ignored, so the packs of {@link BatchGenerator} can be checked as well, and empty lines are skipped.
+ * For every puzzle one line is written, in input order: the puzzle, its solution ({@code -} if there is none) and
+ * whether the solution is {@code unique}, {@code multiple}, {@code none} or the line is {@code invalid}.
+ * </p>
+ * <p>
+ * The input is streamed through a {@link ReadableByteChannel} into a buffer of {@code --chunk-kb} kilobytes. The
+ * complete lines in the buffer make up one chunk, which is solved by one of {@code --threads} workers (all cores by
+ * default), each with a {@link SolverEngine} of its own from a {@link ThreadLocal}, the same engine the game uses.
+ * At most {@code --read-ahead} chunks are read ahead of the output; the oldest chunk is written as soon as it is
+ * finished, so the memory used does not depend on the size of the input. At the end the throughput and the
+ * percentiles of the time taken per puzzle are printed to standard error, so the results can be piped.
+ * </p>
+ * Usage:
+ * <pre>
+ * BatchSolver [--in puzzles.txt] [--out results.txt] [--threads 8] [--backend BITMASK|DANCING_LINKS]
+ *             [--chunk-kb 256] [--read-ahead 16]
+ * </pre>
+ */
+public class BatchSolver {
+    private static final int CELLS = BoardSize.NINE.getCells();
+    private static final byte[] NO_SOLUTION = {'-'};
+    private static final byte[][] STATUS = {
+            " none\n".getBytes(), " unique\n".getBytes(), " multiple\n".getBytes(), " invalid\n".getBytes()};
+    private static final int NONE = 0, UNIQUE = 1, MULTIPLE = 2, INVALID = 3;
+
+    private final int threads;
+    private final int chunkBytes;
+    private final int readAhead;
+    private final ThreadLocal<SolverEngine> solvers;
+    private final ThreadLocal<int[]> grids = ThreadLocal.withInitial(() -> new int[CELLS]);
+
+    private final long[] statusCounts = new long[STATUS.length];
+    private final Metrics.Histogram latencies = new Metrics.Histogram(); // recorded to by the workers
+    private long puzzles;
+
+    /**
+     * The result of solving one chunk: the output lines and the status of each puzzle.
+     */
+    private static final class Chunk {
+        final ByteBuffer output;
+        final int[] statuses;
+        int count;
+
+        Chunk(int inputBytes, int lines) {
+            // every line gets its puzzle, at most the line itself, a solution and a status of at most 10 bytes
+            this.output = ByteBuffer.allocate(inputBytes + lines * (CELLS + 11));
+            this.statuses = new int[lines];
+        }
+    }
+
+    /**
+     * Constructs a new {@code BatchSolver}.
+     *
+     * @param threads The number of worker threads.
+     * @param backend The solver backend every worker creates its engine from.
+     * @param chunkBytes The size of the read buffer, and so the largest chunk. A line must fit in it.
+     * @param readAhead The largest number of chunks read but not yet written.
+     */
+    public BatchSolver(int threads, SolverBackend backend, int chunkBytes, int readAhead) {
+        if (threads < 1 || chunkBytes < CELLS + 2 || readAhead < 1) throw new IllegalArgumentException();
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+        this.readAhead = readAhead;
+        this.solvers = ThreadLocal.withInitial(() -> backend.newEngine(BoardSize.NINE));
+    }
+
+    /**
+     * Reads all puzzles from the input, solves them and writes the results in input order.
+     *
+     * @param in The channel the puzzle lines are read from.
+     * @param out The channel the result lines are written to.
+     * @return The number of puzzles, valid or not.
+     * @throws IOException If reading or writing fails, or a line does not fit in the buffer.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public long run(ReadableByteChannel in, WritableByteChannel out) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>(readAhead);
+        ByteBuffer buffer = ByteBuffer.allocate(chunkBytes);
+        try {
+            boolean end = false;
+            while (!end) {
+                end = in.read(buffer) < 0;
+                if (buffer.hasRemaining() && !end) continue; // fill the buffer before cutting a chunk
+                buffer.flip();
+                int length = end ? buffer.limit() : lastLineEnd(buffer);
+                if (length < 0) throw new IOException("line longer than " + chunkBytes + " bytes");
+                if (length > 0) {
+                    byte[] input = new byte[length];
+                    buffer.get(input);
+                    if (pending.size() == readAhead) write(pending.removeFirst(), out);
+                    pending.addLast(executor.submit(() -> solve(input)));
+                }
+                buffer.compact();
+            }
+            while (!pending.isEmpty()) write(pending.removeFirst(), out);
+            return puzzles;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of bytes up to and including the last line break in the buffer, or -1 if there is none.
+     */
+    private static int lastLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+            if (buffer.get(i) == '\n') return i + 1 - buffer.position();
+        }
+        return -1;
+    }
+
+    /**
+     * Waits for the oldest chunk, writes its lines and adds its puzzles to the summary. Only called by the thread
+     * that runs {@link #run}.
+     */
+    private void write(Future<Chunk> pending, WritableByteChannel out) throws IOException, InterruptedException,
+            ExecutionException {
+        Chunk chunk = pending.get();
+        chunk.output.flip();
+        while (chunk.output.hasRemaining()) out.write(chunk.output);
+        for (int i = 0; i < chunk.count; i++) statusCounts[chunk.statuses[i]]++;
+        puzzles += chunk.count;
+    }
+
+    /**
+     * Work done by one worker: solves every line of a chunk with the engine of the worker's thread.
+     */
+    private Chunk solve(byte[] input) {
+        SolverEngine solver = solvers.get();
+        int[] grid = grids.get();
+        int lines = 1;
+        for (byte b : input) if (b == '\n') lines++;
+        Chunk chunk = new Chunk(input.length, lines);
+        int start = 0;
+        while (start < input.length) {
+            int end = start;
+            while (end < input.length && input[end] != '\n') end++;
+            int tokenEnd = start;
+            while (tokenEnd < end && !Character.isWhitespace(input[tokenEnd])) tokenEnd++;
+            if (tokenEnd > start) solveLine(solver, grid, input, start, tokenEnd, chunk);
+            start = end + 1;
+        }
+        return chunk;
+    }
+
+    private void solveLine(SolverEngine solver, int[] grid, byte[] input, int start, int end, Chunk chunk) {
+        long begin = System.nanoTime();
+        int status = parse(input, start, end, grid) ? check(solver, grid) : INVALID;
+        chunk.output.put(input, start, end - start).put((byte) ' ');
+        if (status == UNIQUE) {
+            for (int value : grid) chunk.output.put((byte) ('0' + value));
+        } else {
+            chunk.output.put(NO_SOLUTION);
+        }
+        chunk.output.put(STATUS[status]);
+        latencies.record(System.nanoTime() - begin);
+        chunk.statuses[chunk.count++] = status;
+    }
+
+    /**
+     * Counts up to two solutions in one search, leaving the first one in the grid.
+     */
+    private static int check(SolverEngine solver, int[] grid) {
+        int solutions = solver.solveAndCount(grid, 2);
+        return solutions == 0 ? NONE : solutions == 1 ? UNIQUE : MULTIPLE;
+    }
+
+    /**
+     * Reads the 81 characters of a puzzle into the grid.
+     *
+     * @return {@code false} if the token is not a 9x9 puzzle.
+     */
+    private static boolean parse(byte[] input, int start, int end, int[] grid) {
+        if (end - start != CELLS) return false;
+        for (int cell = 0; cell < CELLS; cell++) {
+            byte c = input[start + cell];
+            if (c == '.' || c == '0') grid[cell] = 0;
+            else if (c >= '1' && c <= '9') grid[cell] = c - '0';
+            else return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time within which the given fraction of the puzzles was solved, to within 1/16.
+     *
+     * @param fraction The fraction, for example 0.99 for the 99th percentile.
+     * @return The latency in nanoseconds, or 0 if no puzzle was solved.
+     */
+    public long getPercentileNanos(double fraction) {
+        return latencies.getPercentile(fraction);
+    }
+
+    public long getMaxNanos() {
+        return latencies.getMax();
+    }
+
+    public long getUniqueCount() {
+        return statusCounts[UNIQUE];
+    }
+
+    public long getMultipleCount() {
+        return statusCounts[MULTIPLE];
+    }
+
+    public long getUnsolvableCount() {
+        return statusCounts[NONE];
+    }
+
+    public long getInvalidCount() {
+        return statusCounts[INVALID];
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path inFile = null;
+        Path outFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        SolverBackend backend = SolverBackend.BITMASK;
+        int chunkKb = 256;
+        int readAhead = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--in": inFile = Path.of(args[++i]); break;
+                case "--out": outFile = Path.of(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--backend": backend = SolverBackend.valueOf(args[++i].trim().toUpperCase()); break;
+                case "--chunk-kb": chunkKb = Integer.parseInt(args[++i]); break;
+                case "--read-ahead": readAhead = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    usage();
+                    return;
+            }
+        }
+        if (readAhead == 0) readAhead = 2 * threads; // enough to keep every worker busy while one chunk is written
+
+        long start = System.nanoTime();
+        BatchSolver solver = new BatchSolver(threads, backend, chunkKb * 1024, readAhead);
+        long solved;
+        try (ReadableByteChannel in = inFile != null ? FileChannel.open(inFile, StandardOpenOption.READ)
+                : Channels.newChannel(System.in);
+             WritableByteChannel out = outFile != null ? FileChannel.open(outFile, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+                     : Channels.newChannel(System.out)) {
+            solved = solver.run(in, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Solved %d puzzles in %.2f s (%.0f puzzles/s) with %d threads: %d unique, %d multiple,"
+                        + " %d without solution, %d invalid%n", solved, seconds, solved / seconds, threads,
+                solver.getUniqueCount(), solver.getMultipleCount(), solver.getUnsolvableCount(),
+                solver.getInvalidCount());
+        System.err.printf("  per puzzle p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                solver.getPercentileNanos(0.50) / 1e3, solver.getPercentileNanos(0.90) / 1e3,
+                solver.getPercentileNanos(0.99) / 1e3, solver.getPercentileNanos(0.999) / 1e3,
+                solver.getMaxNanos() / 1e3);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchSolver [--in <puzzle file>] [--out <result file>] [--threads <n>] "
+                + "[--backend " + String.join("|", Arrays.stream(SolverBackend.values()).map(Enum::name)
+                .toArray(String[]::new)) + "] [--chunk-kb <n>] [--read-ahead <chunks>]");
+    }
+}
@@ -5,14 +5,32 @@ import javafx.scene.Scene;
 import javafx.scene.control.MenuBar;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import se.kth.emmajoh2.sudokuapp.diagnostics.Metrics;
+import se.kth.emmajoh2.sudokuapp.model.AutosaveService;
 import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
 import se.kth.emmajoh2.sudokuapp.view.SudokuView;
 
+import java.io.IOException;
+
 public class SudokuApp extends Application {
+    private AutosaveService autosave;
+
     @Override
     public void start(Stage stage) { //Stage == fönster
 
         SudokuModel model = new SudokuModel();
+        // Återställer det senaste spelet om programmet avslutades utan att spara, och sparar sedan i bakgrunden.
+        autosave = new AutosaveService(model, AutosaveService.defaultDirectory());
+        try {
+            autosave.recover();
+        } catch (IOException e) {
+            System.err.println("Could not restore the autosaved game: " + e.getMessage());
+        }
+        try {
+            autosave.start();
+        } catch (IOException e) {
+            System.err.println("Autosave is disabled: " + e.getMessage());
+        }
         SudokuView view = new SudokuView(model); // Skapar vyn för Sudoku-spelet och även kontrollern inuti vyn.
 
         MenuBar menuBar = view.getMenuBar(); // Hämtar menyraden från vyn och lägger den i en VBox tillsammans med vyn.
@@ -27,6 +45,13 @@ public class SudokuApp extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        if (autosave != null) autosave.close();  // skriver de sista dragen till disken
+        // skriver ut mätvärdena vid avslut om programmet startades med -Dsudokuapp.metrics=true
+        if (Boolean.getBoolean("sudokuapp.metrics")) System.out.print(Metrics.getDefault());
+    }
+
     public static void main(String[] args) {
         launch(args);                               //Anroper förr eller senare start();
     }
@@ -0,0 +1,28 @@
+package se.kth.emmajoh2.sudokuapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for the view applying the changes of the model to its tiles, once per JavaFX pulse.
+ */
+@Name("se.kth.emmajoh2.sudokuapp.BoardUpdate")
+@Label("Board Update")
+@Category({"Sudoku", "View"})
+@Description("The view updated the tiles of changed cells")
+public final class BoardUpdateEvent extends Event {
+    @Label("Cells")
+    @Description("The tiles that were updated")
+    public int cells;
+
+    @Label("Whole Board")
+    @Description("Whether the whole board was updated, for example for a new game")
+    public boolean wholeBoard;
+
+    @Label("Rebuilt")
+    @Description("Whether the tiles were built again for another board size")
+    public boolean rebuilt;
+}
@@ -0,0 +1,25 @@
+package se.kth.emmajoh2.sudokuapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for saving a game to a file or loading one from a file.
+ */
+@Name("se.kth.emmajoh2.sudokuapp.GameIo")
+@Label("Game Save or Load")
+@Category({"Sudoku", "I/O"})
+public final class GameIoEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,30 @@
+package se.kth.emmajoh2.sudokuapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for generating one puzzle, from the first random board to the puzzle that is returned.
+ */
+@Name("se.kth.emmajoh2.sudokuapp.Generation")
+@Label("Puzzle Generation")
+@Category({"Sudoku", "Generation"})
+@Description("A puzzle was generated")
+public final class GenerationEvent extends Event {
+    @Label("Board Size")
+    public String size;
+
+    @Label("Level")
+    @Description("The level that was asked for")
+    public String level;
+
+    @Label("Attempts")
+    @Description("The boards generated until one had the level; 1 unless the puzzle was rated")
+    public int attempts;
+
+    @Label("Clues")
+    public int clues;
+}
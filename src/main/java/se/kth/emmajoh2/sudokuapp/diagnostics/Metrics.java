@@ -0,0 +1,203 @@
+package se.kth.emmajoh2.sudokuapp.diagnostics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code Metrics} class is a registry of named counters and histograms that are kept in the running process
+ * and can be {@linkplain #dump(Appendable) dumped} at any time, for example by the {@code /metrics} endpoint of the
+ * server.
+ * <p>
+ * Counters are {@link LongAdder}s and histograms count their values in buckets of 1/16 of a power of two, so
+ * recording never locks and never allocates; looking a metric up by name does, so callers keep the metrics they
+ * record to in static fields. Metrics are only recorded for whole operations (generating a puzzle, saving a game, updating the
+ * view); the inner loops of the solvers report through the {@link SolveEvent}s of the Flight Recorder instead.
+ * </p>
+ * The registry is thread-safe.
+ */
+public final class Metrics {
+    private static final Metrics DEFAULT = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry the application records to.
+     *
+     * @return The shared registry.
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it the first time.
+     *
+     * @param name The name of the counter, for example {@code io.bytesWritten}.
+     * @return The counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it the first time.
+     *
+     * @param name The name of the histogram, with the unit of its values, for example {@code io.save.nanos}.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Writes every metric on a line of its own, sorted by name: the value of the counters, and the count, mean,
+     * percentiles and maximum of the histograms. The percentiles are the upper bounds of their buckets, so they
+     * are at most 1/16 above the real value.
+     *
+     * @param out Where to write the metrics.
+     */
+    public void dump(Appendable out) {
+        try {
+            for (Map.Entry<String, Counter> entry : new ConcurrentSkipListMap<>(counters).entrySet()) {
+                out.append(entry.getKey()).append(' ').append(String.valueOf(entry.getValue().get())).append('\n');
+            }
+            for (Map.Entry<String, Histogram> entry : new ConcurrentSkipListMap<>(histograms).entrySet()) {
+                Histogram histogram = entry.getValue();
+                out.append(entry.getKey())
+                        .append(" count=").append(String.valueOf(histogram.getCount()))
+                        .append(" mean=").append(String.valueOf(histogram.getMean()))
+                        .append(" p50=").append(String.valueOf(histogram.getPercentile(0.50)))
+                        .append(" p90=").append(String.valueOf(histogram.getPercentile(0.90)))
+                        .append(" p99=").append(String.valueOf(histogram.getPercentile(0.99)))
+                        .append(" max=").append(String.valueOf(histogram.getMax())).append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        dump(text);
+        return text.toString();
+    }
+
+    /**
+     * A count that only goes up.
+     */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * The distribution of non-negative values, such as durations in nanoseconds. Values below 16 have a bucket
+     * each; above that, the values with the same power of two are split by their next four bits into 16 buckets,
+     * so every bucket is at most 1/16 as wide as the values it holds.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKETS = 16;
+        private static final int BUCKETS = (64 - 4) * SUB_BUCKETS; // 2^4 to 2^63 - 1, plus the 16 exact buckets
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Constructs a histogram outside any registry, for a tool that reports its own figures.
+         */
+        public Histogram() {
+        }
+
+        /**
+         * Records one value; negative values are recorded as 0.
+         *
+         * @param value The value to record.
+         */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            if (value > max.get()) max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMean() {
+            long values = count.sum();
+            return values == 0 ? 0 : sum.sum() / values;
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Returns the largest value the bucket holding the given fraction of the values can hold, or the maximum if
+         * that is smaller.
+         *
+         * @param fraction The fraction, for example 0.99 for the 99th percentile.
+         * @return A value that at least that fraction of the recorded values is at or below, or 0 if none were
+         *         recorded.
+         */
+        public long getPercentile(double fraction) {
+            long values = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) values += counts[i] = buckets.get(i);
+            if (values == 0) return 0;
+            long rank = (long) Math.ceil(fraction * values);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(bucketMax(i), getMax());
+            }
+            return getMax();
+        }
+
+        /**
+         * Returns the bucket of a non-negative value: the value itself below 16, and above that its power of two
+         * and its next four bits.
+         */
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - 3) * SUB_BUCKETS + (int) (value >>> (exponent - 4)) - SUB_BUCKETS;
+        }
+
+        /**
+         * Returns the largest value a bucket holds.
+         */
+        private static long bucketMax(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + 3;
+            long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+            return ((top + 1) << (exponent - 4)) - 1; // wraps to 2^63 - 1 for the last bucket
+        }
+    }
+}
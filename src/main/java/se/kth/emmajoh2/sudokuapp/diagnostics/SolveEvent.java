@@ -0,0 +1,45 @@
+package se.kth.emmajoh2.sudokuapp.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one run of a solver, solving a grid or counting its solutions.
+ * <p>
+ * A solver runs thousands of times while a puzzle is generated, so the event is disabled by default, and has to
+ * be enabled in the recording settings, for example with a threshold to keep only the slow runs. While it is
+ * disabled, or no recording is running, {@link #shouldCommit()} is {@code false}, none of the fields are set and
+ * the JIT compiler removes the event object, so the solvers run as fast as without it.
+ * </p>
+ */
+@Name("se.kth.emmajoh2.sudokuapp.Solve")
+@Label("Solver Run")
+@Category({"Sudoku", "Solver"})
+@Description("A solver solved a grid or counted its solutions")
+@Enabled(false)
+public final class SolveEvent extends Event {
+    @Label("Solver")
+    public String solver;
+
+    @Label("Board Size")
+    public String size;
+
+    @Label("Limit")
+    @Description("The number of solutions after which the solver stops")
+    public int limit;
+
+    @Label("Solutions")
+    public int solutions;
+
+    @Label("Nodes")
+    @Description("The search nodes visited")
+    public long nodes;
+
+    @Label("Backtracks")
+    @Description("The dead ends the search backed out of")
+    public long backtracks;
+}
@@ -0,0 +1,350 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code AutosaveService} class keeps a copy of the current game on disk, so it survives a crash or an exit
+ * without saving.
+ * <p>
+ * The service listens to the {@link SudokuModel} as a {@link BoardListener}. A changed cell is packed into one
+ * {@code int} and added to an in-memory buffer; a background writer thread takes the buffer, waits up to
+ * {@link #FLUSH_DELAY_MILLIS} for more moves and appends them to a log file as one checksummed batch with one
+ * {@code fsync}. The thread that changes the model only holds a lock for as long as it takes to add the move,
+ * so it never waits on the disk.
+ * </p>
+ * <p>
+ * When the whole board changes (a new game, a load or a reset), the model is copied and written as a snapshot in
+ * the binary save format of {@link SudokuIO}, and the log starts over. The writer keeps its own copy of the board
+ * up to date with the logged moves, and compacts it into a new snapshot every {@link #COMPACT_MOVES} moves and on
+ * {@link #close()}, so the log stays short. A snapshot is written to a temporary file and renamed over the old
+ * one, and the log header holds the checksum of the snapshot it belongs to, so a crash at any point leaves either
+ * the old or the new state. After a failed write nothing more is appended to the log; the next batch is written
+ * as a snapshot instead, so moves are never logged against a snapshot of another game.
+ * </p>
+ * <p>
+ * On startup, {@link #recover()} loads the snapshot and replays the log up to the first incomplete batch.
+ * Replayed moves are recorded in the move history like the moves of the player; the moves that were undone since
+ * the last snapshot come back as moves of their own rather than as redoable moves.
+ * </p>
+ * The listener methods must be called on the thread that changes the model, as {@link BoardListener}s are.
+ */
+public class AutosaveService implements BoardListener, AutoCloseable {
+    static final String SNAPSHOT_FILE = "autosave.sudoku";
+    static final String LOG_FILE = "autosave.log";
+    static final int LOG_MAGIC = 0x53444B4C; // "SDKL"
+    /** How long the writer waits for more moves before it writes a batch. */
+    static final long FLUSH_DELAY_MILLIS = 200;
+    /** The number of logged moves after which the log is compacted into a new snapshot. */
+    static final int COMPACT_MOVES = 1024;
+
+    private static final int HEADER_BYTES = 4 + 4;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final SudokuModel model;
+    private final Path directory;
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final Path tempFile;
+
+    // guarded by lock: filled by the thread that changes the model, taken by the writer
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int[] pending = new int[256];
+    private int pendingCount;
+    private Snapshot pendingSnapshot;
+    private boolean closing;
+
+    // only used by the writer thread
+    private int[] batch = new int[256];
+    private ByteBuffer logBuffer = ByteBuffer.allocate(1024);
+    private Snapshot shadow;
+    private FileChannel log;
+    private boolean logValid;   // whether the log belongs to the writer's copy and can be appended to
+    private int movesSinceSnapshot;
+    private Thread writer;
+
+    /**
+     * Constructs a new {@code AutosaveService} for a game. Nothing is read or written until {@link #recover()} or
+     * {@link #start()} is called.
+     *
+     * @param model The game to save.
+     * @param directory The directory to keep the autosave files in. It is created by {@link #start()}.
+     */
+    public AutosaveService(SudokuModel model, Path directory) {
+        this.model = model;
+        this.directory = directory;
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.logFile = directory.resolve(LOG_FILE);
+        this.tempFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+    }
+
+    /**
+     * Returns the directory autosaves are kept in by default, {@code .sudokuapp} in the home directory of the user.
+     *
+     * @return The default autosave directory.
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".sudokuapp");
+    }
+
+    /**
+     * Restores the game from the last autosave, if there is one. Must be called before {@link #start()}.
+     *
+     * @return {@code true} if a game was restored, {@code false} if there was no autosave.
+     * @throws IOException If an I/O error occurs or the snapshot is not a valid save. A damaged log is not an
+     *                     error: the moves up to the damage are replayed.
+     */
+    public boolean recover() throws IOException {
+        if (!Files.exists(snapshotFile)) return false;
+        byte[] snapshot = Files.readAllBytes(snapshotFile);
+        SudokuIO.decodeGame(model, ByteBuffer.wrap(snapshot));
+        if (Files.exists(logFile)) {
+            long snapshotChecksum = checksum(ByteBuffer.wrap(snapshot), 0, snapshot.length);
+            replayLog(ByteBuffer.wrap(Files.readAllBytes(logFile)), snapshotChecksum);
+        }
+        return true;
+    }
+
+    /**
+     * Starts saving the game: writes a snapshot of the current game and starts the writer thread.
+     *
+     * @throws IOException If the autosave directory or the log cannot be created.
+     */
+    public void start() throws IOException {
+        if (writer != null) throw new IllegalStateException("already started");
+        Files.createDirectories(directory);
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        model.addBoardListener(this);
+        boardChanged(); // the first snapshot is the game as it is now
+        writer = new Thread(this::writeLoop, "sudoku-autosave");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds the new value of the cell to the moves waiting to be written.
+     */
+    @Override
+    public void cellChanged(int row, int col) {
+        int cell = row * model.getBoardSize().getGridSize() + col;
+        int move = MoveJournal.pack(cell, 0, model.getPackedBoard().getCurrent(cell));
+        lock.lock();
+        try {
+            if (closing) return;
+            if (pendingCount == pending.length) pending = Arrays.copyOf(pending, 2 * pending.length);
+            pending[pendingCount++] = move;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the whole game to be written as a new snapshot. The moves still waiting are dropped, since the
+     * snapshot already holds them.
+     */
+    @Override
+    public void boardChanged() {
+        PackedBoard board = model.getPackedBoard();
+        PackedBoard copy = new PackedBoard(board.getSize());
+        copy.copyFrom(board);
+        Snapshot snapshot = new Snapshot(copy, model.getLevel(), model.getJournal().copy());
+        lock.lock();
+        try {
+            if (closing) return;
+            pendingSnapshot = snapshot;
+            pendingCount = 0;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops saving the game. The moves still waiting are written and compacted into a snapshot before this method
+     * returns, or at most {@code 5} seconds later if the disk is slow.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closing = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        model.removeBoardListener(this);
+        if (writer == null) return;
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer thread: takes the waiting snapshot and moves in batches and writes them, until closed.
+     */
+    private void writeLoop() {
+        boolean last = false;
+        while (!last) {
+            Snapshot snapshot;
+            int count;
+            lock.lock();
+            try {
+                while (!closing && pendingCount == 0 && pendingSnapshot == null) changed.awaitUninterruptibly();
+                // give the player some time to make more moves, so they share one write and one fsync
+                long nanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_DELAY_MILLIS);
+                while (!closing && pendingSnapshot == null && nanos > 0) nanos = changed.awaitNanos(nanos);
+                snapshot = pendingSnapshot;
+                pendingSnapshot = null;
+                int[] moves = pending;
+                pending = batch;
+                batch = moves;
+                count = pendingCount;
+                pendingCount = 0;
+                last = closing;
+            } catch (InterruptedException e) {
+                continue; // awaitNanos only; nothing has been taken yet
+            } finally {
+                lock.unlock();
+            }
+            if (snapshot != null) {
+                shadow = snapshot;
+                logValid = false; // the log still belongs to the previous game
+            }
+            applyMoves(batch, count);
+            try {
+                if (!logValid) writeSnapshot(); // holds the moves of the batch as well
+                else if (count > 0) appendMoves(batch, count);
+                if (movesSinceSnapshot >= COMPACT_MOVES || (last && movesSinceSnapshot > 0)) writeSnapshot();
+            } catch (IOException e) {
+                System.err.println("Autosave failed: " + e.getMessage());
+                e.printStackTrace();
+                logValid = false; // the log may be torn or name another snapshot, start over with the next batch
+            }
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Applies the moves to the writer's copy of the board.
+     */
+    private void applyMoves(int[] moves, int count) {
+        for (int i = 0; i < count; i++) {
+            int cell = MoveJournal.cellOf(moves[i]);
+            int value = MoveJournal.newValueOf(moves[i]);
+            int oldValue = shadow.board.getCurrent(cell);
+            // the same change the model made, so a compacted snapshot has the same move history as a replay
+            if (shadow.board.setCurrent(cell, value) && oldValue != value) {
+                shadow.journal.record(MoveJournal.pack(cell, oldValue, value));
+            }
+        }
+    }
+
+    /**
+     * Appends the moves to the log as one batch: 4 bytes move count, one {@code int} per move, 4 bytes CRC-32 of
+     * the count and the moves.
+     */
+    private void appendMoves(int[] moves, int count) throws IOException {
+        int size = 4 + 4 * count + 4;
+        if (logBuffer.capacity() < size) logBuffer = ByteBuffer.allocate(Math.max(size, 2 * logBuffer.capacity()));
+        logBuffer.clear();
+        logBuffer.putInt(count);
+        for (int i = 0; i < count; i++) logBuffer.putInt(moves[i]);
+        logBuffer.putInt((int) checksum(logBuffer, 0, logBuffer.position()));
+        logBuffer.flip();
+        while (logBuffer.hasRemaining()) log.write(logBuffer);
+        log.force(false);
+        movesSinceSnapshot += count;
+    }
+
+    /**
+     * Writes the writer's copy of the game as the new snapshot and starts a new log for it.
+     */
+    private void writeSnapshot() throws IOException {
+        ByteBuffer buffer = SudokuIO.encodeGame(shadow.board, shadow.level, shadow.journal);
+        long snapshotChecksum = checksum(buffer, 0, buffer.limit());
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // until the new header is written, the log still names the old snapshot and is ignored by recover()
+        log.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(LOG_MAGIC).putInt((int) snapshotChecksum);
+        header.flip();
+        while (header.hasRemaining()) log.write(header, header.position());
+        log.position(HEADER_BYTES);
+        log.force(false);
+        logValid = true;
+        movesSinceSnapshot = 0;
+    }
+
+    /**
+     * Replays the moves of a log into the model, if the log belongs to the snapshot that was loaded.
+     *
+     * @return The number of moves replayed.
+     */
+    private int replayLog(ByteBuffer buffer, long snapshotChecksum) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != LOG_MAGIC) return 0;
+        if ((buffer.getInt() & 0xFFFFFFFFL) != snapshotChecksum) return 0; // the log of an older snapshot
+        int cells = model.getBoardSize().getCells();
+        int maxValue = model.getBoardSize().getGridSize();
+        int replayed = 0;
+        while (buffer.remaining() >= 4 + 4) {
+            int begin = buffer.position();
+            int count = buffer.getInt();
+            if (count <= 0 || count > (buffer.remaining() - 4) / 4) break; // torn by a crash while writing
+            int end = begin + 4 + 4 * count;
+            if (checksum(buffer, begin, end - begin) != (buffer.getInt(end) & 0xFFFFFFFFL)) break;
+            for (int i = 0; i < count; i++) {
+                int move = buffer.getInt();
+                int cell = MoveJournal.cellOf(move);
+                int value = MoveJournal.newValueOf(move);
+                if (cell >= cells || value > maxValue) return replayed;
+                model.replayMove(cell, value);
+                replayed++;
+            }
+            buffer.position(end + 4);
+        }
+        return replayed;
+    }
+
+    private static long checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(start + length));
+        return crc.getValue();
+    }
+
+    /**
+     * A copy of a game, handed from the model's thread to the writer, which then keeps it up to date.
+     */
+    private static final class Snapshot {
+        final PackedBoard board;
+        final SudokuLevel level;
+        final MoveJournal journal;
+
+        Snapshot(PackedBoard board, SudokuLevel level, MoveJournal journal) {
+            this.board = board;
+            this.level = level;
+            this.journal = journal;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code BoardCodec} class converts a {@link PackedBoard} and its level to and from a fixed-size binary record.
+ * <p>
+ * 9x9 boards are written as version 1 records, so older versions of the application can still read them.
+ * Layout of a version 1 record (103 bytes, big-endian):
+ * </p>
+ * <ul>
+ *     <li>4 bytes magic {@code "SDKB"}</li>
+ *     <li>1 byte format version</li>
+ *     <li>1 byte level ({@link SudokuLevel#ordinal()})</li>
+ *     <li>11 bytes pre-filled mask, one bit per cell</li>
+ *     <li>41 bytes solution values, one nibble per cell (low nibble first)</li>
+ *     <li>41 bytes current values, one nibble per cell</li>
+ *     <li>4 bytes CRC-32 of all bytes before it</li>
+ * </ul>
+ * <p>
+ * Larger boards are written as version 2 records, whose size depends on the board size
+ * (see {@link #recordSize(BoardSize)}):
+ * </p>
+ * <ul>
+ *     <li>4 bytes magic {@code "SDKB"}</li>
+ *     <li>1 byte format version</li>
+ *     <li>1 byte section size (3, 4 or 5)</li>
+ *     <li>1 byte level ({@link SudokuLevel#ordinal()})</li>
+ *     <li>pre-filled mask, one bit per cell</li>
+ *     <li>solution values, one byte per cell</li>
+ *     <li>current values, one byte per cell</li>
+ *     <li>4 bytes CRC-32 of all bytes before it</li>
+ * </ul>
+ * New fields must be added as a new version; older versions must stay readable.
+ */
+final class BoardCodec {
+    static final int MAGIC = 0x53444B42; // "SDKB"
+    static final byte VERSION = 1;
+    static final byte SIZED_VERSION = 2;
+
+    private static final int CELLS = BoardSize.NINE.getCells();
+    private static final int MASK_BYTES = (CELLS + 7) / 8;
+    private static final int NIBBLE_BYTES = (CELLS + 1) / 2;
+    private static final int HEADER_BYTES = 4 + 1 + 1;
+    private static final int SIZED_HEADER_BYTES = 4 + 1 + 1 + 1;
+    /** The size of a version 1 record, holding a 9x9 board. */
+    static final int RECORD_SIZE = HEADER_BYTES + MASK_BYTES + 2 * NIBBLE_BYTES + 4;
+    /** The size of the largest record, holding a 25x25 board. */
+    static final int MAX_RECORD_SIZE = recordSize(BoardSize.TWENTY_FIVE);
+
+    /**
+     * Returns the size of the record a board of the given size is written as.
+     *
+     * @param size The size of the board.
+     * @return The number of bytes {@link #encode} writes for such a board.
+     */
+    static int recordSize(BoardSize size) {
+        if (size == BoardSize.NINE) return RECORD_SIZE;
+        int cells = size.getCells();
+        return SIZED_HEADER_BYTES + (cells + 7) / 8 + 2 * cells + 4;
+    }
+
+    /**
+     * Writes one record at the current position of the buffer.
+     *
+     * @param buffer The buffer to write to, with at least {@link #recordSize(BoardSize)} bytes remaining.
+     * @param board The board to write.
+     * @param level The level of the game.
+     */
+    static void encode(ByteBuffer buffer, PackedBoard board, SudokuLevel level) {
+        int start = buffer.position();
+        BoardSize size = board.getSize();
+        buffer.putInt(MAGIC);
+        if (size == BoardSize.NINE) {
+            buffer.put(VERSION);
+            buffer.put((byte) level.ordinal());
+            putMask(buffer, board);
+            putNibbles(buffer, board, true);
+            putNibbles(buffer, board, false);
+        } else {
+            buffer.put(SIZED_VERSION);
+            buffer.put((byte) size.getSectionSize());
+            buffer.put((byte) level.ordinal());
+            putMask(buffer, board);
+            for (int cell = 0; cell < board.getCells(); cell++) buffer.put((byte) board.getSolution(cell));
+            for (int cell = 0; cell < board.getCells(); cell++) buffer.put((byte) board.getCurrent(cell));
+        }
+        buffer.putInt((int) checksum(buffer, start, buffer.position() - start));
+    }
+
+    /**
+     * Reads the board size from the header of the record at the current position of the buffer, without
+     * moving the position.
+     *
+     * @param buffer The buffer to read from.
+     * @return The size of the board stored in the record.
+     * @throws IOException If the record has an unknown magic, version or size.
+     */
+    static BoardSize peekSize(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        if (buffer.remaining() < SIZED_HEADER_BYTES) throw new IOException("Truncated save record");
+        if (buffer.getInt(start) != MAGIC) throw new IOException("Not a Sudoku save record");
+        byte version = buffer.get(start + 4);
+        if (version == VERSION) return BoardSize.NINE;
+        if (version != SIZED_VERSION) throw new IOException("Unsupported save format version " + version);
+        int sectionSize = buffer.get(start + 5);
+        for (BoardSize size : BoardSize.values()) {
+            if (size.getSectionSize() == sectionSize) return size;
+        }
+        throw new IOException("Unsupported board size " + sectionSize);
+    }
+
+    /**
+     * Reads one record at the current position of the buffer into the given board.
+     * <p>
+     * The board is only changed once the whole record has been checked.
+     * </p>
+     *
+     * @param buffer The buffer to read from.
+     * @param board The board to load the record into, of the size returned by {@link #peekSize(ByteBuffer)}.
+     * @return The level stored in the record.
+     * @throws IOException If the record is truncated, has an unknown magic or version, holds a board of another
+     *                     size, or fails the checksum.
+     */
+    static SudokuLevel decode(ByteBuffer buffer, PackedBoard board) throws IOException {
+        BoardSize size = peekSize(buffer);
+        if (size != board.getSize()) throw new IOException("Save record holds a " + size + " board");
+        if (size != BoardSize.NINE) return decodeSized(buffer, board);
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_SIZE) throw new IOException("Truncated save record");
+        buffer.position(start + HEADER_BYTES - 1);
+        int levelOrdinal = buffer.get();
+        if (levelOrdinal < 0 || levelOrdinal >= SudokuLevel.values().length) {
+            throw new IOException("Invalid level " + levelOrdinal);
+        }
+
+        int payloadEnd = start + RECORD_SIZE - 4;
+        long expected = buffer.getInt(payloadEnd) & 0xFFFFFFFFL;
+        if (checksum(buffer, start, payloadEnd - start) != expected) throw new IOException("Save record checksum mismatch");
+
+        int maskStart = buffer.position();
+        int solutionStart = maskStart + MASK_BYTES;
+        int currentStart = solutionStart + NIBBLE_BYTES;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (nibble(buffer, solutionStart, cell) > BoardSize.NINE.getGridSize()
+                    || nibble(buffer, currentStart, cell) > BoardSize.NINE.getGridSize()) {
+                throw new IOException("Invalid value in cell " + cell);
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            boolean given = (buffer.get(maskStart + cell / 8) & (1 << (cell & 7))) != 0;
+            board.set(cell, nibble(buffer, currentStart, cell), nibble(buffer, solutionStart, cell), given);
+        }
+        buffer.position(start + RECORD_SIZE);
+        return SudokuLevel.values()[levelOrdinal];
+    }
+
+    private static SudokuLevel decodeSized(ByteBuffer buffer, PackedBoard board) throws IOException {
+        int start = buffer.position();
+        int cells = board.getCells();
+        int recordSize = recordSize(board.getSize());
+        if (buffer.remaining() < recordSize) throw new IOException("Truncated save record");
+        int levelOrdinal = buffer.get(start + SIZED_HEADER_BYTES - 1);
+        if (levelOrdinal < 0 || levelOrdinal >= SudokuLevel.values().length) {
+            throw new IOException("Invalid level " + levelOrdinal);
+        }
+
+        int payloadEnd = start + recordSize - 4;
+        long expected = buffer.getInt(payloadEnd) & 0xFFFFFFFFL;
+        if (checksum(buffer, start, payloadEnd - start) != expected) throw new IOException("Save record checksum mismatch");
+
+        int maskStart = start + SIZED_HEADER_BYTES;
+        int solutionStart = maskStart + (cells + 7) / 8;
+        int currentStart = solutionStart + cells;
+        int maxValue = board.getSize().getGridSize();
+        for (int cell = 0; cell < cells; cell++) {
+            if (buffer.get(solutionStart + cell) > maxValue || buffer.get(solutionStart + cell) < 0
+                    || buffer.get(currentStart + cell) > maxValue || buffer.get(currentStart + cell) < 0) {
+                throw new IOException("Invalid value in cell " + cell);
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            boolean given = (buffer.get(maskStart + cell / 8) & (1 << (cell & 7))) != 0;
+            board.set(cell, buffer.get(currentStart + cell), buffer.get(solutionStart + cell), given);
+        }
+        buffer.position(start + recordSize);
+        return SudokuLevel.values()[levelOrdinal];
+    }
+
+    private static void putMask(ByteBuffer buffer, PackedBoard board) {
+        int cells = board.getCells();
+        int mask = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (board.isGiven(cell)) mask |= 1 << (cell & 7);
+            if ((cell & 7) == 7 || cell == cells - 1) {
+                buffer.put((byte) mask);
+                mask = 0;
+            }
+        }
+    }
+
+    private static void putNibbles(ByteBuffer buffer, PackedBoard board, boolean solution) {
+        for (int cell = 0; cell < CELLS; cell += 2) {
+            int low = solution ? board.getSolution(cell) : board.getCurrent(cell);
+            int high = 0;
+            if (cell + 1 < CELLS) high = solution ? board.getSolution(cell + 1) : board.getCurrent(cell + 1);
+            buffer.put((byte) (low | high << 4));
+        }
+    }
+
+    private static int nibble(ByteBuffer buffer, int start, int cell) {
+        int packed = buffer.get(start + cell / 2);
+        return (cell & 1) == 0 ? packed & 0x0F : (packed >>> 4) & 0x0F;
+    }
+
+    private static long checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(start + length));
+        return crc.getValue();
+    }
+
+    private BoardCodec() {}
+}
@@ -0,0 +1,25 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code BoardListener} interface is notified when the board of a {@link SudokuModel} changes.
+ * <p>
+ * Listeners are called on the thread that changed the model, right after the change. A single move reports
+ * only the cell that changed; operations that replace or reset the whole board report a board change instead
+ * of 81 cell changes.
+ * </p>
+ */
+public interface BoardListener {
+
+    /**
+     * Called when the current value of one cell has changed.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    void cellChanged(int row, int col);
+
+    /**
+     * Called when the whole board may have changed, for example when a new game is started or loaded.
+     */
+    void boardChanged();
+}
@@ -0,0 +1,185 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code BoardSize} enum defines the supported board sizes.
+ * <p>
+ * A board of section size {@code n} has {@code n * n} rows, columns and sections, uses the digits 1 to
+ * {@code n * n} and has {@code n^4} cells. Candidate sets of a cell or a unit are stored as an {@code int}
+ * bitmask where bit {@code d - 1} stands for the digit {@code d}, which is wide enough for 25 digits.
+ * </p>
+ * <p>
+ * Each size precomputes the lookup tables the solvers share: the row, column and section of every cell,
+ * and the cells of every unit (units {@code 0} to {@code g - 1} are the rows, {@code g} to {@code 2g - 1}
+ * the columns and {@code 2g} to {@code 3g - 1} the sections, where {@code g} is the grid size).
+ * The tables are handed out without copying and must not be changed.
+ * </p>
+ */
+public enum BoardSize {
+    NINE(3, 40, 30, 17),
+    SIXTEEN(4, 150, 125, 100),
+    TWENTY_FIVE(5, 400, 360, 330);
+
+    private final int sectionSize;
+    private final int gridSize;
+    private final int cells;
+    private final int[] clues;
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int[] sectionOf;
+    private final int[][] unitCells;
+    private final int[][] unitsOf;
+    private final int[][] peersOf;
+
+    BoardSize(int sectionSize, int easyClues, int mediumClues, int hardClues) {
+        this.sectionSize = sectionSize;
+        this.gridSize = sectionSize * sectionSize;
+        this.cells = gridSize * gridSize;
+        this.clues = new int[]{easyClues, mediumClues, hardClues};
+        rowOf = new int[cells];
+        colOf = new int[cells];
+        sectionOf = new int[cells];
+        unitCells = new int[3 * gridSize][gridSize];
+        unitsOf = new int[cells][3];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / gridSize;
+            int col = cell % gridSize;
+            int section = (row / sectionSize) * sectionSize + col / sectionSize;
+            int inSection = (row % sectionSize) * sectionSize + col % sectionSize;
+            rowOf[cell] = row;
+            colOf[cell] = col;
+            sectionOf[cell] = section;
+            unitCells[row][col] = cell;
+            unitCells[gridSize + col][row] = cell;
+            unitCells[2 * gridSize + section][inSection] = cell;
+            unitsOf[cell][0] = row;
+            unitsOf[cell][1] = gridSize + col;
+            unitsOf[cell][2] = 2 * gridSize + section;
+        }
+        // the row and the column, then the cells of the section outside both (20 peers on a 9x9 board)
+        peersOf = new int[cells][3 * (gridSize - 1) - 2 * (sectionSize - 1)];
+        for (int cell = 0; cell < cells; cell++) {
+            int count = 0;
+            for (int peer : unitCells[rowOf[cell]]) if (peer != cell) peersOf[cell][count++] = peer;
+            for (int peer : unitCells[gridSize + colOf[cell]]) if (peer != cell) peersOf[cell][count++] = peer;
+            for (int peer : unitCells[2 * gridSize + sectionOf[cell]]) {
+                if (rowOf[peer] != rowOf[cell] && colOf[peer] != colOf[cell]) peersOf[cell][count++] = peer;
+            }
+        }
+    }
+
+    /**
+     * Returns the size with the given number of rows.
+     *
+     * @param gridSize The number of rows (and columns) of the board.
+     * @return The matching {@code BoardSize}.
+     * @throws IllegalArgumentException If no size has that many rows.
+     */
+    public static BoardSize ofGridSize(int gridSize) {
+        for (BoardSize size : values()) {
+            if (size.gridSize == gridSize) return size;
+        }
+        throw new IllegalArgumentException("unsupported grid size " + gridSize);
+    }
+
+    /**
+     * Returns the size with the given number of cells.
+     *
+     * @param cells The number of cells of the board.
+     * @return The matching {@code BoardSize}.
+     * @throws IllegalArgumentException If no size has that many cells.
+     */
+    public static BoardSize ofCells(int cells) {
+        for (BoardSize size : values()) {
+            if (size.cells == cells) return size;
+        }
+        throw new IllegalArgumentException("unsupported number of cells " + cells);
+    }
+
+    /**
+     * Returns the number of rows and columns of a section.
+     *
+     * @return The section size, 3 for a 9x9 board.
+     */
+    public int getSectionSize() {
+        return sectionSize;
+    }
+
+    /**
+     * Returns the number of rows and columns of the board, which is also the largest digit.
+     *
+     * @return The grid size, 9 for a 9x9 board.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Returns the number of cells of the board.
+     *
+     * @return The number of cells, 81 for a 9x9 board.
+     */
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the number of clues to leave on the board for the given difficulty level.
+     *
+     * @param level The difficulty level of the puzzle.
+     * @return The number of pre-filled cells for the level.
+     */
+    public int cluesFor(SudokuLevel level) {
+        return clues[level.ordinal()];
+    }
+
+    /**
+     * Returns the bitmask with one bit set for each digit of this size.
+     */
+    int allDigits() {
+        return (int) ((1L << gridSize) - 1);
+    }
+
+    int[] rowOf() {
+        return rowOf;
+    }
+
+    int[] colOf() {
+        return colOf;
+    }
+
+    int[] sectionOf() {
+        return sectionOf;
+    }
+
+    int[][] unitCells() {
+        return unitCells;
+    }
+
+    int[][] unitsOf() {
+        return unitsOf;
+    }
+
+    /**
+     * Returns the peers of every cell: the other cells of its row, column and section, each listed once.
+     */
+    int[][] peersOf() {
+        return peersOf;
+    }
+
+    /**
+     * Returns the character a value is written as in text formats: {@code 1}-{@code 9}, then {@code A} for 10
+     * up to {@code P} for 25, and {@code .} for an empty cell.
+     *
+     * @param value The value, 0 for an empty cell.
+     * @return The character for the value.
+     */
+    static char toChar(int value) {
+        if (value == 0) return '.';
+        return value <= 9 ? (char) ('0' + value) : (char) ('A' + value - 10);
+    }
+
+    @Override
+    public String toString() {
+        return gridSize + "x" + gridSize;
+    }
+}
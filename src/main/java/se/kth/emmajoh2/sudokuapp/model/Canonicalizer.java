@@ -0,0 +1,185 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code Canonicalizer} class maps a 9x9 puzzle to its canonical form: the lexicographically smallest grid
+ * among all grids that are the same puzzle up to the Sudoku symmetries.
+ * <p>
+ * The symmetries are the ones of {@link GridTransform}: band and stack permutations, row and column permutations
+ * inside them, transposition and relabelling of the digits. Empty cells are 0 and compare smaller than any
+ * digit, and the digits of a candidate grid are relabelled in the order they first appear (the smallest
+ * relabelling of that grid), so only the {@code 2 * 3!^8} geometric transformations have to be searched.
+ * </p>
+ * <p>
+ * The search fixes the transposition and the column order ({@code 2 * 1296} combinations) and then picks the
+ * rows one at a time, depth first. A row whose relabelled values are larger than the same row of the best grid
+ * so far cuts off the whole branch, so nearly all of the 1296 row orders per column order are never looked at.
+ * </p>
+ * All working arrays are allocated once; a canonicalizer is not thread-safe, use one instance per thread.
+ *
+ * @see Fingerprint
+ */
+public class Canonicalizer {
+    private static final int GRID_SIZE = BoardSize.NINE.getGridSize();
+    private static final int SECTION_SIZE = BoardSize.NINE.getSectionSize();
+    private static final int CELLS = BoardSize.NINE.getCells();
+    // every order of the columns that keeps the stacks together: 3! stack orders times 3!^3 column orders
+    private static final int[][] LINE_ORDERS = lineOrders();
+
+    private final int[] source = new int[CELLS];
+    private final int[] best = new int[CELLS];
+    private final int[] labels = new int[GRID_SIZE + 1];
+    private final int[] labelled = new int[CELLS]; // the digits in the order they were labelled, for undoing
+    private int labelCount;
+    private int bestRows;
+    private int[] colOrder;
+
+    /**
+     * Constructs a new {@code Canonicalizer}.
+     */
+    public Canonicalizer() {
+    }
+
+    /**
+     * Returns the canonical form of a puzzle's pre-filled values.
+     *
+     * @param puzzle The puzzle, which must be a 9x9 puzzle.
+     * @return A new array with the canonical form, 0 for empty cells.
+     * @throws IllegalArgumentException If the puzzle is not a 9x9 puzzle.
+     */
+    public int[] canonicalForm(Puzzle puzzle) {
+        if (puzzle.getSize() != BoardSize.NINE) throw new IllegalArgumentException("only 9x9 puzzles can be canonicalized");
+        return canonicalForm(puzzle.copyGivens());
+    }
+
+    /**
+     * Returns the canonical form of a grid.
+     *
+     * @param grid The grid, 81 values in row-major order (0 for empty cells). It is not changed.
+     * @return A new array with the canonical form.
+     * @throws IllegalArgumentException If the grid does not have 81 cells or contains a value outside 0-9.
+     */
+    public int[] canonicalForm(int[] grid) {
+        canonicalize(grid);
+        return best.clone();
+    }
+
+    /**
+     * Returns the fingerprint of a puzzle's canonical form.
+     *
+     * @param puzzle The puzzle, which must be a 9x9 puzzle.
+     * @return The fingerprint, equal for all puzzles that are the same up to the Sudoku symmetries.
+     * @throws IllegalArgumentException If the puzzle is not a 9x9 puzzle.
+     */
+    public Fingerprint fingerprint(Puzzle puzzle) {
+        if (puzzle.getSize() != BoardSize.NINE) throw new IllegalArgumentException("only 9x9 puzzles can be canonicalized");
+        return fingerprint(puzzle.copyGivens());
+    }
+
+    /**
+     * Returns the fingerprint of a grid's canonical form.
+     *
+     * @param grid The grid, 81 values in row-major order (0 for empty cells). It is not changed.
+     * @return The fingerprint of the canonical form.
+     * @throws IllegalArgumentException If the grid does not have 81 cells or contains a value outside 0-9.
+     */
+    public Fingerprint fingerprint(int[] grid) {
+        canonicalize(grid);
+        return Fingerprint.of(best);
+    }
+
+    /**
+     * Leaves the canonical form of the grid in {@code best}.
+     */
+    private void canonicalize(int[] grid) {
+        if (grid.length != CELLS) throw new IllegalArgumentException("grid must have " + CELLS + " cells");
+        for (int value : grid) {
+            if (value < 0 || value > GRID_SIZE) throw new IllegalArgumentException("invalid value " + value);
+        }
+        bestRows = 0;
+        for (int transpose = 0; transpose < 2; transpose++) {
+            for (int row = 0; row < GRID_SIZE; row++) {
+                for (int col = 0; col < GRID_SIZE; col++) {
+                    source[row * GRID_SIZE + col] = transpose == 0 ? grid[row * GRID_SIZE + col] : grid[col * GRID_SIZE + row];
+                }
+            }
+            for (int[] order : LINE_ORDERS) {
+                colOrder = order;
+                searchRows(0, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Picks the source row for row {@code depth} of the candidate grid.
+     *
+     * @param usedRows A bitmask of the source rows picked so far.
+     * @param band The source band of the current result band, once its first row has been picked.
+     */
+    private void searchRows(int depth, int usedRows, int band) {
+        if (depth == GRID_SIZE) return;
+        boolean bandStart = depth % SECTION_SIZE == 0;
+        for (int row = 0; row < GRID_SIZE; row++) {
+            if ((usedRows & 1 << row) != 0) continue;
+            if (!bandStart && row / SECTION_SIZE != band) continue;
+            int mark = labelCount;
+            int order = compareRow(depth, row);
+            if (order <= 0) searchRows(depth + 1, usedRows | 1 << row, row / SECTION_SIZE);
+            while (labelCount > mark) labels[labelled[--labelCount]] = 0;
+        }
+    }
+
+    /**
+     * Relabels source row {@code row} (in column order) as row {@code depth} of the candidate grid and compares
+     * it with the same row of the best grid. If it is smaller, or the best grid has no such row yet, it becomes
+     * that row of the best grid and the rows after it are dropped.
+     *
+     * @return A negative number if the row is smaller or new, 0 if it is equal, a positive number if it is larger
+     *         (in which case the comparison stops at the first larger value).
+     */
+    private int compareRow(int depth, int row) {
+        int offset = depth * GRID_SIZE;
+        boolean compare = depth < bestRows;
+        for (int col = 0; col < GRID_SIZE; col++) {
+            int value = source[row * GRID_SIZE + colOrder[col]];
+            if (value != 0 && labels[value] == 0) {
+                labels[value] = ++labelCount;
+                labelled[labelCount - 1] = value;
+            }
+            int label = value == 0 ? 0 : labels[value];
+            if (!compare) {
+                best[offset + col] = label;
+            } else if (label != best[offset + col]) {
+                if (label > best[offset + col]) return 1;
+                // smaller: keep the prefix so far and write the rest of the row into best
+                compare = false;
+                best[offset + col] = label;
+            }
+        }
+        if (compare) return 0;
+        bestRows = depth + 1;
+        return -1;
+    }
+
+    private static int[][] lineOrders() {
+        int[][] permutations = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        int count = permutations.length;
+        int[][] orders = new int[count * count * count * count][GRID_SIZE];
+        int index = 0;
+        for (int[] bands : permutations) {
+            for (int[] first : permutations) {
+                for (int[] second : permutations) {
+                    for (int[] third : permutations) {
+                        int[][] inBand = {first, second, third};
+                        for (int band = 0; band < SECTION_SIZE; band++) {
+                            for (int line = 0; line < SECTION_SIZE; line++) {
+                                orders[index][band * SECTION_SIZE + line] = bands[band] * SECTION_SIZE + inBand[band][line];
+                            }
+                        }
+                        index++;
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+}
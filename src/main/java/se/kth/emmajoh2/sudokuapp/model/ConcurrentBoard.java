@@ -0,0 +1,242 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ConcurrentBoard} class is a Sudoku board that several players can edit at the same time without a
+ * lock, for cooperative games.
+ * <p>
+ * Every cell is one {@code long} in an {@link AtomicLongArray}, holding the current value, the solution, whether
+ * the cell is pre-filled, the player who changed it last and a version that every change increments. This word
+ * is the stamp of the cell (see {@link #read(int)}). A move is a compare-and-set from the stamp the player saw to
+ * the new one, so it fails with {@link #CONFLICT} if another player changed the cell in between, and the player
+ * can look at the new value before trying again. {@link #set(int, int, int)} retries by itself, for moves where
+ * the last one wins.
+ * </p>
+ * <p>
+ * The cells are spread one cache line apart, so players writing neighbouring cells do not invalidate each other's
+ * cache lines, and the filled, correct and wrong counts are {@link LongAdder}s, so moves on different cells never
+ * write the same memory. The counts are exact whenever no move is in progress.
+ * </p>
+ * The board is thread-safe. Unlike {@link SudokuModel} it has no listeners, hints or move history.
+ */
+public final class ConcurrentBoard {
+    /** Returned by {@link #compareAndSet} when the cell has changed since the expected stamp was read. */
+    public static final long CONFLICT = -1;
+    /** Returned by {@link #compareAndSet} and {@link #set} when the cell is pre-filled. */
+    public static final long GIVEN = -2;
+
+    private static final int STRIDE = 8; // longs per cell, one 64-byte cache line
+    private static final int VALUE_BITS = 5;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long GIVEN_BIT = 1L << (2 * VALUE_BITS);
+    private static final int PLAYER_SHIFT = 16;
+    private static final long PLAYER_MASK = 0xFFFF;
+    private static final int VERSION_SHIFT = 32;
+    private static final long VERSION_MASK = 0x7FFFFFFF; // 31 bits, so a stamp is never negative
+    private static final long CELL_BITS = (1L << VERSION_SHIFT) - 1;
+
+    private final BoardSize size;
+    private final AtomicLongArray cells;
+    private final LongAdder filled = new LongAdder();
+    private final LongAdder correct = new LongAdder();
+    private final LongAdder wrong = new LongAdder();
+
+    /**
+     * Constructs a new {@code ConcurrentBoard} with a puzzle, with every cell at version 0.
+     *
+     * @param puzzle The puzzle to play.
+     */
+    public ConcurrentBoard(Puzzle puzzle) {
+        this.size = puzzle.getSize();
+        int gridSize = size.getGridSize();
+        this.cells = new AtomicLongArray(size.getCells() * STRIDE);
+        for (int cell = 0; cell < size.getCells(); cell++) {
+            int given = puzzle.getGiven(cell / gridSize, cell % gridSize);
+            int solution = puzzle.getSolution(cell / gridSize, cell % gridSize);
+            cells.set(cell * STRIDE, given | (long) solution << VALUE_BITS | (given != 0 ? GIVEN_BIT : 0));
+            count(given, solution, 1);
+        }
+    }
+
+    /**
+     * Returns the size of the board.
+     *
+     * @return The {@link BoardSize} of the board.
+     */
+    public BoardSize getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the stamp of a cell: its whole state, which changes with every move on the cell.
+     *
+     * @param cell The index of the cell, {@code row * gridSize + col}.
+     * @return The stamp, to be read with {@link #valueOf}, {@link #playerOf} and {@link #versionOf}, and passed
+     *         to {@link #compareAndSet}.
+     */
+    public long read(int cell) {
+        return cells.get(cell * STRIDE);
+    }
+
+    /**
+     * Returns the current value of a cell.
+     *
+     * @param cell The index of the cell.
+     * @return The value, 0 if the cell is empty.
+     */
+    public int getValue(int cell) {
+        return valueOf(read(cell));
+    }
+
+    /**
+     * Returns the value a stamp holds, 0 for an empty cell.
+     */
+    public static int valueOf(long stamp) {
+        return (int) (stamp & VALUE_MASK);
+    }
+
+    /**
+     * Returns the player who made the change a stamp holds, 0 if the cell has not been changed.
+     */
+    public static int playerOf(long stamp) {
+        return (int) (stamp >>> PLAYER_SHIFT & PLAYER_MASK);
+    }
+
+    /**
+     * Returns the number of changes made to the cell when the stamp was read. The version wraps after
+     * {@code 2^31} changes.
+     */
+    public static int versionOf(long stamp) {
+        return (int) (stamp >>> VERSION_SHIFT & VERSION_MASK);
+    }
+
+    /**
+     * Returns {@code true} if the stamp belongs to a pre-filled cell.
+     */
+    public static boolean isGiven(long stamp) {
+        return (stamp & GIVEN_BIT) != 0;
+    }
+
+    /**
+     * Sets the value of a cell if it has not changed since the stamp was read.
+     *
+     * @param cell The index of the cell.
+     * @param expectedStamp The stamp the player based the move on, from {@link #read(int)}.
+     * @param value The new value, 0 to clear the cell.
+     * @param player The player making the move, 1-65535.
+     * @return The new stamp of the cell, {@link #CONFLICT} if the cell has changed, or {@link #GIVEN} if the cell
+     *         is pre-filled.
+     * @throws IllegalArgumentException If the value or the player is out of range.
+     */
+    public long compareAndSet(int cell, long expectedStamp, int value, int player) {
+        check(value, player);
+        if (isGiven(expectedStamp)) return GIVEN;
+        long stamp = next(expectedStamp, value, player);
+        if (!cells.compareAndSet(cell * STRIDE, expectedStamp, stamp)) return isGiven(read(cell)) ? GIVEN : CONFLICT;
+        moved(expectedStamp, value);
+        return stamp;
+    }
+
+    /**
+     * Sets the value of a cell, whatever other players did to it.
+     *
+     * @param cell The index of the cell.
+     * @param value The new value, 0 to clear the cell.
+     * @param player The player making the move, 1-65535.
+     * @return The new stamp of the cell, or {@link #GIVEN} if the cell is pre-filled.
+     * @throws IllegalArgumentException If the value or the player is out of range.
+     */
+    public long set(int cell, int value, int player) {
+        check(value, player);
+        while (true) {
+            long old = read(cell);
+            if (isGiven(old)) return GIVEN;
+            long stamp = next(old, value, player);
+            if (cells.compareAndSet(cell * STRIDE, old, stamp)) {
+                moved(old, value);
+                return stamp;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cells that hold a number, pre-filled or entered.
+     */
+    public int getFilledCount() {
+        return filled.intValue();
+    }
+
+    /**
+     * Returns the number of cells that hold their correct number, including the pre-filled ones.
+     */
+    public int getCorrectCount() {
+        return correct.intValue();
+    }
+
+    /**
+     * Returns the number of cells that hold a wrong number.
+     */
+    public int getWrongCount() {
+        return wrong.intValue();
+    }
+
+    /**
+     * Checks if every cell holds its correct number.
+     *
+     * @return {@code true} if the board is solved.
+     */
+    public boolean isSolved() {
+        return correct.intValue() == size.getCells();
+    }
+
+    /**
+     * Copies the current values into a new {@link PackedBoard}, for example to save the game. The copy is taken
+     * cell by cell, so moves made while copying may or may not be in it.
+     *
+     * @return A new board with the values, solutions and pre-filled cells of this one.
+     */
+    public PackedBoard toPackedBoard() {
+        PackedBoard board = new PackedBoard(size);
+        for (int cell = 0; cell < size.getCells(); cell++) {
+            long stamp = read(cell);
+            board.set(cell, valueOf(stamp), solutionOf(stamp), isGiven(stamp));
+        }
+        return board;
+    }
+
+    /**
+     * Returns the stamp after a move: the new value and player, and the next version.
+     */
+    private static long next(long stamp, int value, int player) {
+        long version = (versionOf(stamp) + 1) & VERSION_MASK;
+        long kept = stamp & CELL_BITS & ~VALUE_MASK & ~(PLAYER_MASK << PLAYER_SHIFT);
+        return version << VERSION_SHIFT | (long) player << PLAYER_SHIFT | kept | value;
+    }
+
+    private static int solutionOf(long stamp) {
+        return (int) (stamp >>> VALUE_BITS & VALUE_MASK);
+    }
+
+    private void check(int value, int player) {
+        if (value < 0 || value > size.getGridSize()) throw new IllegalArgumentException("invalid value " + value);
+        if (player < 1 || player > PLAYER_MASK) throw new IllegalArgumentException("invalid player " + player);
+    }
+
+    /**
+     * Updates the counts after a successful move from the old stamp to the given value.
+     */
+    private void moved(long oldStamp, int value) {
+        int solution = solutionOf(oldStamp);
+        count(valueOf(oldStamp), solution, -1);
+        count(value, solution, 1);
+    }
+
+    private void count(int value, int solution, int delta) {
+        if (value == 0) return;
+        filled.add(delta);
+        if (value == solution) correct.add(delta);
+        else wrong.add(delta);
+    }
+}
@@ -0,0 +1,298 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import se.kth.emmajoh2.sudokuapp.diagnostics.SolveEvent;
+
+/**
+ * The {@code DancingLinksSolver} class solves Sudoku grids as an exact-cover problem with Knuth's Algorithm X.
+ * <p>
+ * For a 9x9 board the exact-cover matrix has 324 constraint columns (each cell filled once, each digit once per
+ * row, column and section) and 729 candidate rows (one per cell and digit), each row covering exactly four
+ * columns. All links live in flat {@code int} arrays indexed by node number: index 0 is the root, 1-324 are the
+ * column headers and the 2916 matrix nodes follow. Larger boards scale the same way, with
+ * {@code 4 * cells} columns and {@code cells * digits} rows. The matrix is built once in the constructor; a solve
+ * covers the rows of the given values, searches, and uncovers everything again, so the structure is reused
+ * without allocating.
+ * </p>
+ * A solver instance is not thread-safe; use one instance per thread.
+ */
+public class DancingLinksSolver implements SolverEngine {
+    private final BoardSize boardSize;
+    private final int cells;
+    private final int gridSize;
+
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] column;
+    private final int[] rowId;
+    private final int[] size;
+    private final int[] rowStart;
+    private final boolean[] covered;
+
+    private final int[] givenRows;
+    private final int[] choice;
+    private final int[] solution;
+    private int givenCount;
+
+    private int solutionCount;
+    private int solutionLimit;
+    private long nodes;
+    private long backtracks;
+
+    /**
+     * Constructs a new {@code DancingLinksSolver} for 9x9 grids and builds the exact-cover matrix.
+     */
+    public DancingLinksSolver() {
+        this(BoardSize.NINE);
+    }
+
+    /**
+     * Constructs a new {@code DancingLinksSolver} for grids of the given size and builds the exact-cover matrix.
+     *
+     * @param boardSize The size of the grids to solve.
+     */
+    public DancingLinksSolver(BoardSize boardSize) {
+        this.boardSize = boardSize;
+        this.cells = boardSize.getCells();
+        this.gridSize = boardSize.getGridSize();
+        int columns = 4 * cells;
+        int rows = cells * gridSize;
+        int nodeCount = 1 + columns + 4 * rows;
+        left = new int[nodeCount];
+        right = new int[nodeCount];
+        up = new int[nodeCount];
+        down = new int[nodeCount];
+        column = new int[nodeCount];
+        rowId = new int[nodeCount];
+        size = new int[columns + 1];
+        rowStart = new int[rows];
+        covered = new boolean[columns + 1];
+        givenRows = new int[cells];
+        choice = new int[cells];
+        solution = new int[cells];
+
+        for (int col = 0; col <= columns; col++) {
+            left[col] = col == 0 ? columns : col - 1;
+            right[col] = col == columns ? 0 : col + 1;
+            up[col] = col;
+            down[col] = col;
+            column[col] = col;
+        }
+
+        int node = columns + 1;
+        int[] rowColumns = new int[4];
+        for (int row = 0; row < rows; row++) {
+            int cell = row / gridSize;
+            int digit = row % gridSize;
+            int first = node;
+            rowStart[row] = first;
+            rowColumns[0] = 1 + cell;
+            rowColumns[1] = 1 + cells + boardSize.rowOf()[cell] * gridSize + digit;
+            rowColumns[2] = 1 + 2 * cells + boardSize.colOf()[cell] * gridSize + digit;
+            rowColumns[3] = 1 + 3 * cells + boardSize.sectionOf()[cell] * gridSize + digit;
+            for (int i = 0; i < rowColumns.length; i++, node++) {
+                int col = rowColumns[i];
+                column[node] = col;
+                rowId[node] = row;
+                up[node] = up[col];
+                down[node] = col;
+                down[up[col]] = node;
+                up[col] = node;
+                size[col]++;
+                left[node] = i == 0 ? first + 3 : node - 1;
+                right[node] = i == 3 ? first : node + 1;
+            }
+        }
+    }
+
+    @Override
+    public BoardSize getBoardSize() {
+        return boardSize;
+    }
+
+    @Override
+    public boolean solve(int[] grid) {
+        return solveAndCount(grid, 1) > 0;
+    }
+
+    @Override
+    public int countSolutions(int[] grid, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        if (!load(grid)) {
+            finish(event, limit);
+            return 0;
+        }
+        run(limit);
+        unload();
+        finish(event, limit);
+        return solutionCount;
+    }
+
+    @Override
+    public int solveAndCount(int[] grid, int limit) {
+        int solutions = countSolutions(grid, limit);
+        if (solutions > 0) System.arraycopy(solution, 0, grid, 0, cells);
+        return solutions;
+    }
+
+    /**
+     * Commits the Flight Recorder event of a run, if it is being recorded.
+     */
+    private void finish(SolveEvent event, int limit) {
+        if (!event.shouldCommit()) return;
+        event.solver = "DancingLinksSolver";
+        event.size = boardSize.toString();
+        event.limit = limit;
+        event.solutions = solutionCount;
+        event.nodes = nodes;
+        event.backtracks = backtracks;
+        event.commit();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Selects the matrix rows of the given values by covering their columns.
+     * <p>
+     * If two given values conflict, everything selected so far is uncovered again.
+     * </p>
+     *
+     * @return {@code false} if two given values conflict with each other.
+     */
+    private boolean load(int[] grid) {
+        if (grid.length != cells) throw new IllegalArgumentException("grid must have " + cells + " cells");
+        for (int cell = 0; cell < cells; cell++) {
+            int value = grid[cell];
+            if (value < 0 || value > gridSize) throw new IllegalArgumentException("invalid value " + value);
+        }
+        solutionCount = 0;
+        nodes = 0;
+        backtracks = 0;
+        givenCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int value = grid[cell];
+            solution[cell] = value;
+            if (value == 0) continue;
+            int first = rowStart[cell * gridSize + value - 1];
+            int node = first;
+            do {
+                if (covered[column[node]]) {
+                    unload();
+                    return false;
+                }
+                node = right[node];
+            } while (node != first);
+            node = first;
+            do {
+                cover(column[node]);
+                node = right[node];
+            } while (node != first);
+            givenRows[givenCount++] = first;
+        }
+        return true;
+    }
+
+    /**
+     * Uncovers the rows of the given values in reverse order, restoring the full matrix.
+     */
+    private void unload() {
+        while (givenCount > 0) {
+            int first = givenRows[--givenCount];
+            int node = left[first];
+            do {
+                uncover(column[node]);
+                node = left[node];
+            } while (node != left[first]);
+        }
+    }
+
+    private void run(int limit) {
+        solutionLimit = limit;
+        search(0);
+    }
+
+    /**
+     * Algorithm X: covers the column with the fewest rows left and tries each of its rows in turn.
+     *
+     * @param depth The number of rows chosen by the search so far.
+     * @return {@code true} if the solution limit has been reached and the search should stop.
+     */
+    private boolean search(int depth) {
+        if (right[0] == 0) {
+            if (solutionCount++ == 0) {
+                for (int i = 0; i < depth; i++) {
+                    int row = rowId[choice[i]];
+                    solution[row / gridSize] = row % gridSize + 1;
+                }
+            }
+            return solutionCount >= solutionLimit;
+        }
+
+        int best = right[0];
+        for (int col = right[best]; col != 0 && size[best] > 1; col = right[col]) {
+            if (size[col] < size[best]) best = col;
+        }
+        if (size[best] == 0) {
+            backtracks++;
+            return false;
+        }
+
+        cover(best);
+        for (int node = down[best]; node != best; node = down[node]) {
+            choice[depth] = node;
+            nodes++;
+            for (int j = right[node]; j != node; j = right[j]) cover(column[j]);
+            boolean stop = search(depth + 1);
+            for (int j = left[node]; j != node; j = left[j]) uncover(column[j]);
+            if (stop) {
+                uncover(best);
+                return true;
+            }
+        }
+        uncover(best);
+        return false;
+    }
+
+    /**
+     * Removes a column from the header list and every row that intersects it from the other columns.
+     */
+    private void cover(int col) {
+        covered[col] = true;
+        right[left[col]] = right[col];
+        left[right[col]] = left[col];
+        for (int i = down[col]; i != col; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Reverses {@link #cover(int)}, relinking in the exact opposite order.
+     */
+    private void uncover(int col) {
+        for (int i = up[col]; i != col; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+        }
+        right[left[col]] = col;
+        left[right[col]] = col;
+        covered[col] = false;
+    }
+}
@@ -0,0 +1,127 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code DedupIndex} class is a concurrent set of {@link Fingerprint}s, used to drop puzzles that were
+ * already seen.
+ * <p>
+ * The fingerprints are spread over {@link #STRIPES} segments by their top bits. Each segment is an
+ * open-addressing hash table of two {@code long}s per slot (16 bytes per fingerprint at most half full) with
+ * its own lock, so generator threads adding at the same time rarely wait for each other, and no objects are
+ * created per entry. A segment doubles its table when it becomes half full.
+ * </p>
+ * The index is thread-safe.
+ */
+public class DedupIndex {
+    static final int STRIPES = 64;
+    private static final int MIN_SEGMENT_SLOTS = 64;
+
+    private final Segment[] segments = new Segment[STRIPES];
+
+    /**
+     * Constructs a new, empty {@code DedupIndex}.
+     */
+    public DedupIndex() {
+        this(0);
+    }
+
+    /**
+     * Constructs a new, empty {@code DedupIndex} sized for the given number of fingerprints, so it does not
+     * have to grow while they are added.
+     *
+     * @param expectedSize The number of fingerprints expected to be added.
+     */
+    public DedupIndex(int expectedSize) {
+        int slots = MIN_SEGMENT_SLOTS;
+        while (slots < 2L * expectedSize / STRIPES + 1) slots <<= 1;
+        for (int stripe = 0; stripe < STRIPES; stripe++) segments[stripe] = new Segment(slots);
+    }
+
+    /**
+     * Adds a fingerprint unless it is already in the index.
+     *
+     * @param fingerprint The fingerprint to add.
+     * @return {@code true} if the fingerprint was new, {@code false} if it was already in the index.
+     */
+    public boolean add(Fingerprint fingerprint) {
+        return segmentFor(fingerprint).add(fingerprint.getHigh(), fingerprint.getLow());
+    }
+
+    /**
+     * Checks if a fingerprint is in the index.
+     *
+     * @param fingerprint The fingerprint to look for.
+     * @return {@code true} if the fingerprint was added before.
+     */
+    public boolean contains(Fingerprint fingerprint) {
+        return segmentFor(fingerprint).contains(fingerprint.getHigh(), fingerprint.getLow());
+    }
+
+    /**
+     * Returns the number of fingerprints in the index.
+     *
+     * @return The number of distinct fingerprints added.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.size();
+        return size;
+    }
+
+    private Segment segmentFor(Fingerprint fingerprint) {
+        return segments[(int) (fingerprint.getHigh() >>> 58)]; // the top 6 bits pick one of 64 stripes
+    }
+
+    /**
+     * One stripe of the index: linear probing over pairs of {@code long}s, where an all-zero pair is an empty slot.
+     */
+    private static final class Segment {
+        private long[] keys;
+        private int size;
+
+        Segment(int slots) {
+            keys = new long[2 * slots];
+        }
+
+        synchronized boolean add(long high, long low) {
+            int slot = find(keys, high, low);
+            if (keys[2 * slot] != 0 || keys[2 * slot + 1] != 0) return false;
+            keys[2 * slot] = high;
+            keys[2 * slot + 1] = low;
+            if (++size * 2 > keys.length / 2) grow();
+            return true;
+        }
+
+        synchronized boolean contains(long high, long low) {
+            int slot = find(keys, high, low);
+            return keys[2 * slot] != 0 || keys[2 * slot + 1] != 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Returns the slot holding the fingerprint, or the empty slot it would go into.
+         */
+        private static int find(long[] keys, long high, long low) {
+            int mask = keys.length / 2 - 1;
+            int slot = (int) low & mask;
+            while (true) {
+                long slotHigh = keys[2 * slot], slotLow = keys[2 * slot + 1];
+                if ((slotHigh == high && slotLow == low) || (slotHigh == 0 && slotLow == 0)) return slot;
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = new long[2 * old.length];
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i] == 0 && old[i + 1] == 0) continue;
+                int slot = find(keys, old[i], old[i + 1]);
+                keys[2 * slot] = old[i];
+                keys[2 * slot + 1] = old[i + 1];
+            }
+        }
+    }
+}
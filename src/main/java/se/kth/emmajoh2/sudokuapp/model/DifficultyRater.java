@@ -0,0 +1,203 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code DifficultyRater} class rates how hard a puzzle is for a human.
+ * <p>
+ * The rater solves the puzzle with the {@link HintEngine}, one logical step at a time, and records the hardest
+ * {@link Technique} and the number of steps needed. A puzzle the techniques cannot finish needs guessing or
+ * a technique the engine does not know, and is rated harder than any puzzle they can finish. The rating maps
+ * to a {@link SudokuLevel}:
+ * </p>
+ * <ul>
+ *     <li>{@code EASY}: hidden singles are enough.</li>
+ *     <li>{@code MEDIUM}: naked singles, pointing pairs, box/line reductions or naked subsets are needed.</li>
+ *     <li>{@code HARD}: the techniques above are not enough.</li>
+ * </ul>
+ * A rater is not thread-safe; use one instance per thread, or {@link #rateAll(List)} for batches.
+ * It rates puzzles of any {@link BoardSize}, and keeps the working arrays of the last size it rated.
+ */
+public class DifficultyRater {
+    private static final ThreadLocal<DifficultyRater> RATERS = ThreadLocal.withInitial(DifficultyRater::new);
+
+    private HintEngine engine = new HintEngine();
+    private int[] grid = new int[BoardSize.NINE.getCells()];
+
+    /**
+     * The result of rating one puzzle. Ratings are ordered from easiest to hardest.
+     */
+    public static final class Rating implements Comparable<Rating> {
+        private final Technique hardest;
+        private final int steps;
+        private final int eliminations;
+        private final boolean solved;
+
+        Rating(Technique hardest, int steps, int eliminations, boolean solved) {
+            this.hardest = hardest;
+            this.steps = steps;
+            this.eliminations = eliminations;
+            this.solved = solved;
+        }
+
+        /**
+         * Returns the hardest technique that was needed.
+         *
+         * @return The hardest technique, or {@code null} if the puzzle had no empty cells.
+         */
+        public Technique getHardest() {
+            return hardest;
+        }
+
+        /**
+         * Returns the number of cells that were placed by logical steps.
+         *
+         * @return The number of placements.
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * Returns the number of times candidates had to be removed with a technique harder than a single.
+         *
+         * @return The number of elimination steps.
+         */
+        public int getEliminations() {
+            return eliminations;
+        }
+
+        /**
+         * Checks if the techniques of the {@link HintEngine} were enough to solve the puzzle.
+         *
+         * @return {@code true} if the puzzle was solved without guessing.
+         */
+        public boolean isSolved() {
+            return solved;
+        }
+
+        /**
+         * Returns the level the puzzle belongs to by this rating.
+         *
+         * @return The {@link SudokuLevel} matching the techniques needed.
+         */
+        public SudokuLevel getLevel() {
+            if (!solved) return SudokuLevel.HARD;
+            if (hardest == null || hardest == Technique.HIDDEN_SINGLE) return SudokuLevel.EASY;
+            return SudokuLevel.MEDIUM;
+        }
+
+        /**
+         * Compares by whether the puzzle was solved, then by the hardest technique, then by the number of
+         * elimination steps and finally by the number of placements.
+         */
+        @Override
+        public int compareTo(Rating other) {
+            if (solved != other.solved) return solved ? -1 : 1;
+            int byTechnique = Integer.compare(ordinal(hardest), ordinal(other.hardest));
+            if (byTechnique != 0) return byTechnique;
+            int byEliminations = Integer.compare(eliminations, other.eliminations);
+            return byEliminations != 0 ? byEliminations : Integer.compare(steps, other.steps);
+        }
+
+        private static int ordinal(Technique technique) {
+            return technique == null ? -1 : technique.ordinal();
+        }
+
+        @Override
+        public String toString() {
+            return getLevel() + " (" + (solved ? "" : "unsolved, ") + "hardest "
+                    + (hardest != null ? hardest.getDisplayName() : "none") + ", " + steps + " steps, "
+                    + eliminations + " eliminations)";
+        }
+    }
+
+    /**
+     * Constructs a new {@code DifficultyRater}.
+     */
+    public DifficultyRater() {
+    }
+
+    /**
+     * Rates a puzzle.
+     *
+     * @param puzzle The puzzle to rate.
+     * @return The rating of the puzzle's givens.
+     */
+    public Rating rate(Puzzle puzzle) {
+        BoardSize size = puzzle.getSize();
+        if (grid.length != size.getCells()) grid = new int[size.getCells()];
+        int gridSize = size.getGridSize();
+        for (int cell = 0; cell < grid.length; cell++) {
+            grid[cell] = puzzle.getGiven(cell / gridSize, cell % gridSize);
+        }
+        return rate(grid);
+    }
+
+    /**
+     * Rates a grid.
+     *
+     * @param grid The grid, a flat array of values in row-major order (0 for empty cells), with as many cells as
+     *             one of the {@link BoardSize}s. It is not changed.
+     * @return The rating of the grid. A contradictory grid is rated as not solved.
+     * @throws IllegalArgumentException If the grid does not match a board size or contains an invalid value.
+     */
+    public Rating rate(int[] grid) {
+        if (grid.length != engine.getBoardSize().getCells()) engine = new HintEngine(BoardSize.ofCells(grid.length));
+        if (!engine.load(grid)) return new Rating(null, 0, 0, false);
+        return solve();
+    }
+
+    /**
+     * Solves the grid loaded into the engine step by step and rates the steps it took.
+     */
+    private Rating solve() {
+        int hardest = -1;
+        int steps = 0;
+        while (engine.getEmptyCount() > 0) {
+            int step = engine.nextStep();
+            if (step == HintEngine.NO_STEP) break;
+            hardest = Math.max(hardest, HintEngine.stepTechnique(step).ordinal());
+            engine.place(HintEngine.stepCell(step), HintEngine.stepValue(step));
+            steps++;
+        }
+        Technique technique = hardest < 0 ? null : Technique.values()[hardest];
+        return new Rating(technique, steps, engine.getEliminations(), engine.getEmptyCount() == 0);
+    }
+
+    /**
+     * Rates the position left on the board of a game, starting from the candidates the model keeps instead of
+     * computing them again.
+     *
+     * @param model The game to rate. It is not changed.
+     * @return The rating of the empty cells of the board. A board with a wrong number on it is rated as not
+     *         solved.
+     */
+    public Rating rate(SudokuModel model) {
+        if (!model.placedTilesCorrect()) return new Rating(null, 0, 0, false);
+        BoardSize size = model.getBoardSize();
+        if (grid.length != size.getCells()) grid = new int[size.getCells()];
+        int gridSize = size.getGridSize();
+        for (int cell = 0; cell < grid.length; cell++) {
+            grid[cell] = model.getTileValue(cell / gridSize, cell % gridSize);
+        }
+        if (engine.getBoardSize() != size) engine = new HintEngine(size);
+        engine.load(grid, model.getCandidateMasks());
+        return solve();
+    }
+
+    /**
+     * Rates a batch of puzzles in parallel, using one rater per worker thread of the common fork/join pool.
+     *
+     * @param puzzles The puzzles to rate.
+     * @return The ratings, in the same order as the puzzles.
+     */
+    public static List<Rating> rateAll(List<Puzzle> puzzles) {
+        Rating[] ratings = new Rating[puzzles.size()];
+        IntStream.range(0, ratings.length).parallel()
+                .forEach(i -> ratings[i] = RATERS.get().rate(puzzles.get(i)));
+        return Arrays.asList(ratings);
+    }
+}
@@ -0,0 +1,92 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code Fingerprint} class is a 128-bit non-cryptographic hash of the canonical form of a puzzle.
+ * <p>
+ * Two puzzles that are the same up to the Sudoku symmetries (see {@link GridTransform}) have the same canonical
+ * form and therefore the same fingerprint. The hash mixes two lanes with the MurmurHash3 finalizer and is not
+ * cryptographic: different canonical forms can collide, and no bound on how often is proven, although collisions
+ * are expected to be rare for generated puzzles. A fingerprint is never all zero bits, so indexes can use zero as
+ * the empty marker.
+ * </p>
+ *
+ * @see Canonicalizer
+ * @see DedupIndex
+ */
+public final class Fingerprint {
+    private final long high;
+    private final long low;
+
+    Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Hashes a canonical form.
+     *
+     * @param form The canonical form, one value per cell.
+     * @return The fingerprint of the form.
+     */
+    static Fingerprint of(int[] form) {
+        // two independently seeded lanes over the values packed 12 per word (5 bits each)
+        long high = 0x243F6A8885A308D3L ^ form.length;
+        long low = 0x13198A2E03707344L ^ form.length;
+        long word = 0;
+        int packed = 0;
+        for (int cell = 0; cell < form.length; cell++) {
+            word = word << 5 | form[cell];
+            if (++packed == 12 || cell == form.length - 1) {
+                high = mix(high ^ word) * 0x9E3779B97F4A7C15L;
+                low = mix(low + word) * 0xC2B2AE3D27D4EB4FL;
+                word = 0;
+                packed = 0;
+            }
+        }
+        high = mix(high ^ low >>> 32);
+        low = mix(low ^ high);
+        if (high == 0 && low == 0) low = 1;
+        return new Fingerprint(high, low);
+    }
+
+    /**
+     * The 64-bit finalizer of MurmurHash3, which spreads every input bit over the whole word.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof Fingerprint)) return false;
+        Fingerprint fingerprint = (Fingerprint) other;
+        return high == fingerprint.high && low == fingerprint.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ low >>> 32);
+    }
+
+    /**
+     * Returns the fingerprint as 32 hexadecimal digits.
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,128 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * The {@code GridTransform} class applies the symmetries of Sudoku to a solved grid.
+ * <p>
+ * Each of these transformations maps a valid grid to another valid grid:
+ * </p>
+ * <ul>
+ *     <li>permuting the bands (the groups of rows that share sections), and the rows inside each band,</li>
+ *     <li>permuting the stacks (the groups of columns that share sections), and the columns inside each stack,</li>
+ *     <li>transposing the grid (swapping rows and columns),</li>
+ *     <li>relabelling the digits.</li>
+ * </ul>
+ * <p>
+ * All of them together are applied in one pass over the cells, so turning one seed grid into a differently
+ * shaped solution grid costs a few array shuffles instead of a search. On a 9x9 board there are
+ * {@code 3!^8 * 2 * 9!} (about 1.2 * 10^12) combinations.
+ * </p>
+ * Grids are flat arrays in row-major order, as used by the {@link SolverEngine}s.
+ */
+final class GridTransform {
+
+    /**
+     * Returns a copy of the grid with random band, stack, row and column permutations, a random transposition
+     * and a random relabelling of the digits applied.
+     *
+     * @param grid The solved grid to transform. It is not changed.
+     * @param size The size of the grid.
+     * @param random The random generator used to pick the transformation.
+     * @return A new valid grid, equivalent to {@code grid} under the Sudoku symmetries.
+     */
+    static int[] randomize(int[] grid, BoardSize size, SplittableRandom random) {
+        int[] relabel = randomRelabel(size, random);
+        int[] transformed = new int[grid.length];
+        apply(grid, size, randomLineOrder(size, random), randomLineOrder(size, random), random.nextBoolean(),
+                relabel, transformed);
+        return transformed;
+    }
+
+    /**
+     * Returns a random variant of a puzzle: the same random transformation as {@link #randomize} applied to both
+     * its pre-filled values and its solution. The variant needs the same solving techniques as the puzzle.
+     *
+     * @param puzzle The puzzle to transform.
+     * @param random The random generator used to pick the transformation.
+     * @return A new puzzle with the same level.
+     */
+    static Puzzle randomize(Puzzle puzzle, SplittableRandom random) {
+        BoardSize size = puzzle.getSize();
+        return puzzle.transformed(randomLineOrder(size, random), randomLineOrder(size, random), random.nextBoolean(),
+                randomRelabel(size, random));
+    }
+
+    /**
+     * Applies one transformation of the grid.
+     * <p>
+     * Cell {@code (row, col)} of the result takes the value of cell {@code (rowOrder[row], colOrder[col])} of
+     * the grid, or of cell {@code (colOrder[col], rowOrder[row])} when transposing, relabelled through
+     * {@code relabel}. The orders must keep the rows of a band together (and the columns of a stack), or the
+     * result is not a valid grid.
+     * </p>
+     *
+     * @param grid The grid to transform.
+     * @param size The size of the grid.
+     * @param rowOrder The source row of each row of the result.
+     * @param colOrder The source column of each column of the result.
+     * @param transpose Whether to swap rows and columns.
+     * @param relabel The new value of each value, with {@code relabel[0] == 0}.
+     * @param out The array the result is written to. It must not be {@code grid}.
+     */
+    static void apply(int[] grid, BoardSize size, int[] rowOrder, int[] colOrder, boolean transpose, int[] relabel,
+                      int[] out) {
+        int gridSize = size.getGridSize();
+        for (int row = 0; row < gridSize; row++) {
+            int sourceRow = rowOrder[row];
+            for (int col = 0; col < gridSize; col++) {
+                int source = transpose ? colOrder[col] * gridSize + sourceRow : sourceRow * gridSize + colOrder[col];
+                out[row * gridSize + col] = relabel[grid[source]];
+            }
+        }
+    }
+
+    /**
+     * Returns a random order of the rows (or columns) that keeps the rows of each band together: the bands are
+     * shuffled, and then the rows inside each band.
+     */
+    private static int[] randomLineOrder(BoardSize size, SplittableRandom random) {
+        int sectionSize = size.getSectionSize();
+        int[] bands = new int[sectionSize];
+        for (int band = 0; band < sectionSize; band++) bands[band] = band;
+        shuffle(bands, 0, sectionSize, random);
+        int[] order = new int[size.getGridSize()];
+        for (int band = 0; band < sectionSize; band++) {
+            int first = band * sectionSize;
+            for (int line = 0; line < sectionSize; line++) order[first + line] = bands[band] * sectionSize + line;
+            shuffle(order, first, first + sectionSize, random);
+        }
+        return order;
+    }
+
+    /**
+     * Returns a random relabelling of the digits, which keeps 0 so empty cells stay empty.
+     */
+    private static int[] randomRelabel(BoardSize size, SplittableRandom random) {
+        int gridSize = size.getGridSize();
+        int[] relabel = new int[gridSize + 1];
+        for (int digit = 0; digit <= gridSize; digit++) relabel[digit] = digit;
+        shuffle(relabel, 1, gridSize + 1, random);
+        return relabel;
+    }
+
+    /**
+     * Fisher-Yates shuffle of {@code array[from]} to {@code array[to - 1]}.
+     */
+    private static void shuffle(int[] array, int from, int to, SplittableRandom random) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    // Private constructor to prevent instantiation of utility class
+    private GridTransform() {}
+}
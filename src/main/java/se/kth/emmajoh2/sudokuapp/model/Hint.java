@@ -0,0 +1,56 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code Hint} class describes one step towards the solution: a value for a cell and the technique that
+ * justifies it.
+ * <p>
+ * A hint without a technique was taken directly from the solution, either because the cell held a wrong value
+ * or because no known technique applied.
+ * </p>
+ */
+public final class Hint {
+    private final int row;
+    private final int col;
+    private final int value;
+    private final Technique technique;
+
+    Hint(int row, int col, int value, Technique technique) {
+        this.row = row;
+        this.col = col;
+        this.value = value;
+        this.technique = technique;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the hardest technique needed to find this step.
+     *
+     * @return The technique, or {@code null} if the value was taken from the solution.
+     */
+    public Technique getTechnique() {
+        return technique;
+    }
+
+    /**
+     * Returns a description of the hint, such as {@code "5 at row 3, column 7 (hidden single)"}.
+     * Rows and columns are counted from 1.
+     *
+     * @return A description of the hint for the player.
+     */
+    @Override
+    public String toString() {
+        return value + " at row " + (row + 1) + ", column " + (col + 1)
+                + " (" + (technique != null ? technique.getDisplayName() : "from the solution") + ")";
+    }
+}
@@ -0,0 +1,389 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code HintEngine} class finds the next logically deducible step of a Sudoku grid of any {@link BoardSize}.
+ * <p>
+ * The engine keeps one candidate bitmask per cell (bit {@code d - 1} is set when the digit {@code d} is still
+ * possible) and applies the {@link Technique}s from easiest to hardest until one of them places a digit:
+ * singles place a digit directly, the other techniques only remove candidates, after which the singles are
+ * tried again. Every removal takes away at least one candidate (729 on a 9x9 board), so a step always ends
+ * after a bounded amount of work, either with a placement or with the answer that no known technique applies.
+ * </p>
+ * <p>
+ * A caller that already keeps the candidates of the grid up to date, like {@link SudokuModel}, passes them in
+ * with the grid, so they are copied instead of computed again from every filled cell.
+ * All working arrays are allocated once in the constructor and the search itself never allocates.
+ * An engine is not thread-safe; use one instance per thread.
+ * </p>
+ * The grid is given as a flat array in row-major order ({@code int[81]} for a 9x9 board), with 0 for empty cells.
+ */
+public class HintEngine {
+    static final int NO_STEP = -1;
+
+    private static final int MAX_SUBSET = 4;
+    private static final Technique[] TECHNIQUES = Technique.values(); // values() copies the array on each call
+
+    private final BoardSize boardSize;
+    private final int cellCount;
+    private final int gridSize;
+    private final int sectionSize;
+    private final int unitCount;
+    private final int allDigits;
+    // units 0 to gridSize - 1 are the rows, then the columns and the sections
+    private final int[][] unitCells;
+    private final int[][] unitsOf;
+
+    private final int[] values;
+    private final int[] candidates;
+    private final int[] subsetCells;
+    private int emptyCount;
+    private int hardest;
+    private int eliminations;
+
+    /**
+     * Constructs a new {@code HintEngine} for 9x9 grids with all working arrays preallocated.
+     */
+    public HintEngine() {
+        this(BoardSize.NINE);
+    }
+
+    /**
+     * Constructs a new {@code HintEngine} for grids of the given size with all working arrays preallocated.
+     *
+     * @param boardSize The size of the grids to examine.
+     */
+    public HintEngine(BoardSize boardSize) {
+        this.boardSize = boardSize;
+        this.cellCount = boardSize.getCells();
+        this.gridSize = boardSize.getGridSize();
+        this.sectionSize = boardSize.getSectionSize();
+        this.unitCount = 3 * gridSize;
+        this.allDigits = boardSize.allDigits();
+        this.unitCells = boardSize.unitCells();
+        this.unitsOf = boardSize.unitsOf();
+        this.values = new int[cellCount];
+        this.candidates = new int[cellCount];
+        this.subsetCells = new int[gridSize];
+    }
+
+    /**
+     * Returns the size of the grids this engine examines.
+     *
+     * @return The {@link BoardSize} of the engine.
+     */
+    public BoardSize getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Finds the next logical step for the given grid.
+     *
+     * @param grid The grid, a flat array of values in row-major order (0 for empty cells). It is not changed.
+     * @return The next step, or {@code null} if the grid is full, contradictory, or needs a technique the engine
+     *         does not know.
+     * @throws IllegalArgumentException If the grid has the wrong number of cells or contains an invalid value.
+     */
+    public Hint findHint(int[] grid) {
+        if (!load(grid)) return null;
+        int step = nextStep();
+        if (step == NO_STEP) return null;
+        int cell = stepCell(step);
+        return new Hint(cell / gridSize, cell % gridSize, stepValue(step), stepTechnique(step));
+    }
+
+    /**
+     * Finds the next logical step for a grid whose candidates are already known.
+     *
+     * @param grid The grid, a flat array of values in row-major order (0 for empty cells). It is not changed.
+     * @param candidates The candidates of every cell of a grid without conflicts, as bitmasks (0 for filled
+     *                   cells). They are not changed.
+     * @return The next step, or {@code null} if the grid is full or needs a technique the engine does not know.
+     * @throws IllegalArgumentException If the arrays have the wrong number of cells.
+     */
+    Hint findHint(int[] grid, int[] candidates) {
+        load(grid, candidates);
+        int step = nextStep();
+        if (step == NO_STEP) return null;
+        int cell = stepCell(step);
+        return new Hint(cell / gridSize, cell % gridSize, stepValue(step), stepTechnique(step));
+    }
+
+    /**
+     * Loads a grid together with its candidates, which are trusted as they are.
+     */
+    void load(int[] grid, int[] candidates) {
+        if (grid.length != cellCount || candidates.length != cellCount) {
+            throw new IllegalArgumentException("grid must have " + cellCount + " cells");
+        }
+        System.arraycopy(grid, 0, values, 0, cellCount);
+        System.arraycopy(candidates, 0, this.candidates, 0, cellCount);
+        emptyCount = 0;
+        eliminations = 0;
+        for (int value : grid) {
+            if (value == 0) emptyCount++;
+        }
+    }
+
+    /**
+     * Loads a grid and computes the candidates of every empty cell.
+     *
+     * @return {@code false} if two given values conflict with each other.
+     */
+    boolean load(int[] grid) {
+        if (grid.length != cellCount) throw new IllegalArgumentException("grid must have " + cellCount + " cells");
+        emptyCount = 0;
+        eliminations = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = grid[cell];
+            if (value < 0 || value > gridSize) throw new IllegalArgumentException("invalid value " + value);
+            values[cell] = value;
+            candidates[cell] = value == 0 ? allDigits : 0;
+            if (value == 0) emptyCount++;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = values[cell];
+            if (value == 0) continue;
+            int bit = 1 << (value - 1);
+            for (int unit : unitsOf[cell]) {
+                for (int peer : unitCells[unit]) {
+                    if (peer != cell && values[peer] == value) return false;
+                    candidates[peer] &= ~bit;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the next placement, removing candidates with the harder techniques as needed. The placement itself
+     * is not made; call {@link #place(int, int)} to continue from it.
+     *
+     * @return The step packed as by {@link #pack(Technique, int, int)}, or {@link #NO_STEP}.
+     */
+    int nextStep() {
+        hardest = -1;
+        while (emptyCount > 0) {
+            int step = findHiddenSingle();
+            if (step == NO_STEP) step = findNakedSingle();
+            if (step != NO_STEP) {
+                Technique technique = stepTechnique(step);
+                if (hardest > technique.ordinal()) technique = TECHNIQUES[hardest];
+                return pack(technique, stepCell(step), stepValue(step));
+            }
+            if (hasDeadCell()) return NO_STEP;
+            if (eliminatePointing()) {
+                used(Technique.POINTING_PAIR);
+            } else if (eliminateBoxLine()) {
+                used(Technique.BOX_LINE_REDUCTION);
+            } else if (eliminateNakedSubsets(2)) {
+                used(Technique.NAKED_PAIR);
+            } else if (eliminateNakedSubsets(3)) {
+                used(Technique.NAKED_TRIPLE);
+            } else if (eliminateNakedSubsets(MAX_SUBSET)) {
+                used(Technique.NAKED_QUAD);
+            } else {
+                return NO_STEP;
+            }
+        }
+        return NO_STEP;
+    }
+
+    /**
+     * Places a digit and removes it from the candidates of the cell's peers.
+     */
+    void place(int cell, int value) {
+        int bit = 1 << (value - 1);
+        values[cell] = value;
+        candidates[cell] = 0;
+        emptyCount--;
+        for (int unit : unitsOf[cell]) {
+            for (int peer : unitCells[unit]) candidates[peer] &= ~bit;
+        }
+    }
+
+    /**
+     * Returns the number of cells that are still empty.
+     */
+    int getEmptyCount() {
+        return emptyCount;
+    }
+
+    static int pack(Technique technique, int cell, int value) {
+        return technique.ordinal() << 24 | cell << 8 | value;
+    }
+
+    static Technique stepTechnique(int step) {
+        return TECHNIQUES[step >>> 24];
+    }
+
+    static int stepCell(int step) {
+        return (step >>> 8) & 0xFFFF;
+    }
+
+    static int stepValue(int step) {
+        return step & 0xFF;
+    }
+
+    /**
+     * Returns the number of times candidates were removed by a technique other than the singles since the last load.
+     */
+    int getEliminations() {
+        return eliminations;
+    }
+
+    private void used(Technique technique) {
+        eliminations++;
+        if (technique.ordinal() > hardest) hardest = technique.ordinal();
+    }
+
+    private boolean hasDeadCell() {
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == 0 && candidates[cell] == 0) return true;
+        }
+        return false;
+    }
+
+    private int findNakedSingle() {
+        for (int cell = 0; cell < cellCount; cell++) {
+            int mask = candidates[cell];
+            if (mask != 0 && (mask & (mask - 1)) == 0) {
+                return pack(Technique.NAKED_SINGLE, cell, Integer.numberOfTrailingZeros(mask) + 1);
+            }
+        }
+        return NO_STEP;
+    }
+
+    private int findHiddenSingle() {
+        for (int unit = 0; unit < unitCount; unit++) {
+            int[] cells = unitCells[unit];
+            int once = 0, twice = 0;
+            for (int cell : cells) {
+                int mask = candidates[cell];
+                twice |= once & mask;
+                once |= mask;
+            }
+            int singles = once & ~twice;
+            if (singles == 0) continue;
+            int bit = singles & -singles;
+            for (int cell : cells) {
+                if ((candidates[cell] & bit) != 0) {
+                    return pack(Technique.HIDDEN_SINGLE, cell, Integer.numberOfTrailingZeros(bit) + 1);
+                }
+            }
+        }
+        return NO_STEP;
+    }
+
+    /**
+     * Pointing pairs: a digit confined to one line of a section is removed from the rest of that line.
+     */
+    private boolean eliminatePointing() {
+        for (int section = 0; section < gridSize; section++) {
+            int[] cells = unitCells[2 * gridSize + section];
+            int firstRow = (section / sectionSize) * sectionSize;
+            int firstCol = (section % sectionSize) * sectionSize;
+            for (int i = 0; i < sectionSize; i++) {
+                int inRow = 0, inOtherRows = 0, inCol = 0, inOtherCols = 0;
+                for (int j = 0; j < gridSize; j++) {
+                    int mask = candidates[cells[j]];
+                    if (j / sectionSize == i) inRow |= mask;
+                    else inOtherRows |= mask;
+                    if (j % sectionSize == i) inCol |= mask;
+                    else inOtherCols |= mask;
+                }
+                if (removeOutside(firstRow + i, inRow & ~inOtherRows, 2 * gridSize + section)) return true;
+                if (removeOutside(gridSize + firstCol + i, inCol & ~inOtherCols, 2 * gridSize + section)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Box/line reduction: a digit confined to one section within a line is removed from the rest of that section.
+     */
+    private boolean eliminateBoxLine() {
+        for (int line = 0; line < 2 * gridSize; line++) {
+            int[] cells = unitCells[line];
+            for (int segment = 0; segment < sectionSize; segment++) {
+                int inSegment = 0, elsewhere = 0;
+                for (int j = 0; j < gridSize; j++) {
+                    if (j / sectionSize == segment) inSegment |= candidates[cells[j]];
+                    else elsewhere |= candidates[cells[j]];
+                }
+                int confined = inSegment & ~elsewhere;
+                if (confined == 0) continue;
+                int sectionUnit = unitsOf[cells[segment * sectionSize]][2];
+                if (removeOutside(sectionUnit, confined, line)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the digits in {@code mask} from the cells of {@code unit} that are not part of {@code keepUnit}.
+     *
+     * @return {@code true} if any candidate was removed.
+     */
+    private boolean removeOutside(int unit, int mask, int keepUnit) {
+        if (mask == 0) return false;
+        boolean removed = false;
+        for (int cell : unitCells[unit]) {
+            if (inUnit(cell, keepUnit) || (candidates[cell] & mask) == 0) continue;
+            candidates[cell] &= ~mask;
+            removed = true;
+        }
+        return removed;
+    }
+
+    private boolean inUnit(int cell, int unit) {
+        int[] units = unitsOf[cell];
+        return units[0] == unit || units[1] == unit || units[2] == unit;
+    }
+
+    /**
+     * Naked subsets: {@code size} cells of a unit whose candidates together are exactly {@code size} digits.
+     */
+    private boolean eliminateNakedSubsets(int size) {
+        for (int unit = 0; unit < unitCount; unit++) {
+            int count = 0;
+            for (int cell : unitCells[unit]) {
+                int bits = Integer.bitCount(candidates[cell]);
+                if (bits >= 2 && bits <= size) subsetCells[count++] = cell;
+            }
+            if (count > size && searchSubset(unit, size, count, 0, 0, 0, 0)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tries all combinations of {@code size} cells out of the first {@code count} entries of {@code subsetCells}.
+     *
+     * @param chosenCells A bitmask of the chosen positions in {@code subsetCells}.
+     */
+    private boolean searchSubset(int unit, int size, int count, int start, int depth, int union, int chosenCells) {
+        if (Integer.bitCount(union) > size) return false;
+        if (depth == size) {
+            boolean removed = false;
+            for (int cell : unitCells[unit]) {
+                if (isChosen(cell, count, chosenCells) || (candidates[cell] & union) == 0) continue;
+                candidates[cell] &= ~union;
+                removed = true;
+            }
+            return removed;
+        }
+        for (int i = start; i <= count - (size - depth); i++) {
+            if (searchSubset(unit, size, count, i + 1, depth + 1, union | candidates[subsetCells[i]],
+                    chosenCells | 1 << i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isChosen(int cell, int count, int chosenCells) {
+        for (int i = 0; i < count; i++) {
+            if ((chosenCells & 1 << i) != 0 && subsetCells[i] == cell) return true;
+        }
+        return false;
+    }
+}
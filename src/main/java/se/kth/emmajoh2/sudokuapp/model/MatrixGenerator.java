@@ -1,12 +1,25 @@
 package se.kth.emmajoh2.sudokuapp.model;
-import java.util.Random;
+import se.kth.emmajoh2.sudokuapp.diagnostics.GenerationEvent;
+import se.kth.emmajoh2.sudokuapp.diagnostics.Metrics;
+
+import java.util.SplittableRandom;
 
 /**
  * The {@code MatrixGenerator} class provides methods to generate a complete and valid Sudoku board,
  * which can be used to initialize and solve the puzzle. It also allows creating a Sudoku board with varying
  * difficulty levels by removing a specified number of values from the board.
  * <p>
- * The Sudoku grid size is fixed at 9x9, and the board is represented as a 3-dimensional array, where:
+ * By default every removal is checked with a {@link SolverEngine}, so the generated puzzle always has exactly
+ * one solution.
+ * </p>
+ * <p>
+ * Every puzzle generated by {@link #generatePuzzle} and {@link #generateRatedPuzzle} is counted in the
+ * {@link Metrics} ({@code generation.*}) and reported to the Flight Recorder as a {@link GenerationEvent}.
+ * </p>
+ * <p>
+ * {@link #GRID_SIZE}, {@link #SECTION_SIZE} and {@link #SECTIONS_PER_ROW} describe the classic 9x9 board, which
+ * the matrix methods generate. {@link #generatePuzzle} and {@link #generateRatedPuzzle} generate puzzles of the
+ * {@link BoardSize} of the solver they are given. The board is represented as a 3-dimensional array, where:
  * <ul>
  *     <li>{@code [row][col][0]} holds the initial values (with 0 indicating an empty cell).</li>
  *     <li>{@code [row][col][1]} holds the solution of the puzzle.</li>
@@ -16,12 +29,30 @@ public class MatrixGenerator {
     public static final int GRID_SIZE = 9;
     public static final int SECTIONS_PER_ROW = 3;
     public static final int SECTION_SIZE = 3;
+    private static final int MAX_RATED_ATTEMPTS = 32;
+    private static final int CLUE_STEP = 3;
+    private static final Metrics.Histogram GENERATION_NANOS = Metrics.getDefault().histogram("generation.nanos");
+    private static final Metrics.Counter GENERATED = Metrics.getDefault().counter("generation.puzzles");
+    private static final Metrics.Counter GENERATION_ATTEMPTS = Metrics.getDefault().counter("generation.attempts");
+    // the shifted pattern of each size, flattened, which randomizeBoard transforms
+    private static final int[][] SEED_GRIDS = new int[BoardSize.values().length][];
+    static {
+        for (BoardSize size : BoardSize.values()) {
+            int[][] matrix = generateInitBoard(size);
+            int[] grid = new int[size.getCells()];
+            for (int row = 0; row < matrix.length; row++) {
+                System.arraycopy(matrix[row], 0, grid, row * matrix.length, matrix.length);
+            }
+            SEED_GRIDS[size.ordinal()] = grid;
+        }
+    }
 
     /**
      * Generates a Sudoku matrix with an initial setup and solution, based on the specified difficulty level.
      * <p>
      * The puzzle starts with a fully generated and randomized valid Sudoku grid, and then values are removed
-     * to match the desired difficulty level (EASY, MEDIUM, HARD).
+     * to match the desired difficulty level (EASY, MEDIUM, HARD). Only removals that keep the solution unique
+     * are accepted.
      * </p>
      *
      * @param level The difficulty level of the Sudoku puzzle (EASY, MEDIUM, HARD).
@@ -32,42 +63,174 @@ public class MatrixGenerator {
      *         </ul>
      */
     static int[][][] generateSudokuMatrix(SudokuLevel level) {
-        switch (level) {
-            case EASY:
-                return setLevel(randomizeBoard(), 40);
-            case MEDIUM:
-                return setLevel(randomizeBoard(), 30);
-            case HARD:
-                return setLevel(randomizeBoard(), 17);
-            default:
-                return setLevel(randomizeBoard(), 30);
+        return generateSudokuMatrix(level, true);
+    }
+
+    /**
+     * Generates a Sudoku matrix with an initial setup and solution, based on the specified difficulty level.
+     * <p>
+     * When {@code unique} is {@code true}, each removed value is checked with a solution counter that stops at
+     * two solutions, and removals that would allow a second solution are undone. The clue count of the level
+     * is then a target: if no further value can be removed without losing uniqueness, the puzzle keeps a few
+     * more clues (this is usually the case for HARD). When {@code unique} is {@code false}, random values are
+     * removed until the clue count is reached, without any check.
+     * </p>
+     *
+     * @param level The difficulty level of the Sudoku puzzle (EASY, MEDIUM, HARD).
+     * @param unique Whether the generated puzzle must have exactly one solution.
+     * @return A 3-dimensional array representing the Sudoku puzzle, see {@link #generateSudokuMatrix(SudokuLevel)}.
+     */
+    static int[][][] generateSudokuMatrix(SudokuLevel level, boolean unique) {
+        if (unique) return generateSudokuMatrix(level, SolverBackend.BITMASK);
+        SplittableRandom random = new SplittableRandom();
+        return setLevel(randomizeBoard(random), cluesFor(level), random);
+    }
+
+    /**
+     * Generates a Sudoku matrix with a unique solution, checking the removals with the given solver backend.
+     *
+     * @param level The difficulty level of the Sudoku puzzle (EASY, MEDIUM, HARD).
+     * @param backend The solver backend used to count solutions after each removal.
+     * @return A 3-dimensional array representing the Sudoku puzzle, see {@link #generateSudokuMatrix(SudokuLevel)}.
+     */
+    static int[][][] generateSudokuMatrix(SudokuLevel level, SolverBackend backend) {
+        SplittableRandom random = new SplittableRandom();
+        return setLevelUnique(randomizeBoard(random), cluesFor(level), backend.newEngine(), random);
+    }
+
+    /**
+     * Generates a puzzle with a unique solution using the given solver and random generator.
+     * The puzzle has the {@link BoardSize} of the solver.
+     * <p>
+     * Nothing is shared between calls, so several threads can generate puzzles at the same time as long as
+     * each of them passes its own solver and its own random generator (for example one split off a common
+     * {@link SplittableRandom} with {@link SplittableRandom#split()}).
+     * </p>
+     *
+     * @param level The difficulty level of the Sudoku puzzle (EASY, MEDIUM, HARD).
+     * @param solver The solver used to count solutions after each removal.
+     * @param random The random generator used for the board and the removals.
+     * @return The generated {@link Puzzle}.
+     */
+    public static Puzzle generatePuzzle(SudokuLevel level, SolverEngine solver, SplittableRandom random) {
+        long start = System.nanoTime();
+        GenerationEvent event = new GenerationEvent();
+        event.begin();
+        BoardSize size = solver.getBoardSize();
+        Puzzle puzzle = Puzzle.fromMatrix(level,
+                setLevelUnique(randomizeBoard(size, random), size.cluesFor(level), solver, random));
+        generated(event, start, puzzle, level, 1);
+        return puzzle;
+    }
+
+    /**
+     * Generates a puzzle with a unique solution that the {@link DifficultyRater} rates as the given level.
+     * <p>
+     * Puzzles are generated with the clue count of the level and rated. When a puzzle rates too easy the next
+     * attempt leaves fewer clues, when it rates too hard the next attempt leaves more. If no attempt hits the
+     * level, the closest puzzle is returned, labelled with the level it actually rates as.
+     * </p>
+     *
+     * @param level The level the puzzle should rate as.
+     * @param solver The solver used to count solutions after each removal.
+     * @param rater The rater used to rate the candidates.
+     * @param random The random generator used for the board and the removals.
+     * @return The generated {@link Puzzle} of the solver's size, labelled with its rated level.
+     */
+    public static Puzzle generateRatedPuzzle(SudokuLevel level, SolverEngine solver, DifficultyRater rater,
+                                             SplittableRandom random) {
+        long start = System.nanoTime();
+        GenerationEvent event = new GenerationEvent();
+        event.begin();
+        BoardSize size = solver.getBoardSize();
+        int clues = size.cluesFor(level);
+        int clueStep = Math.max(CLUE_STEP, size.getCells() / 27);
+        Puzzle closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < MAX_RATED_ATTEMPTS; attempt++) {
+            Puzzle puzzle = Puzzle.fromMatrix(level,
+                    setLevelUnique(randomizeBoard(size, random), clues, solver, random));
+            SudokuLevel rated = rater.rate(puzzle).getLevel();
+            if (rated == level) {
+                generated(event, start, puzzle, level, attempt + 1);
+                return puzzle;
+            }
+            int distance = Math.abs(rated.ordinal() - level.ordinal());
+            if (distance < closestDistance) {
+                closest = puzzle.withLevel(rated);
+                closestDistance = distance;
+            }
+            if (rated.compareTo(level) < 0) clues = Math.max(size.cluesFor(SudokuLevel.HARD), clues - clueStep);
+            else clues = Math.min(size.cluesFor(SudokuLevel.EASY), clues + clueStep);
         }
+        generated(event, start, closest, level, MAX_RATED_ATTEMPTS);
+        return closest;
+    }
+
+    /**
+     * Records a generated puzzle in the {@link Metrics} and commits its Flight Recorder event.
+     */
+    private static void generated(GenerationEvent event, long start, Puzzle puzzle, SudokuLevel level,
+                                  int attempts) {
+        GENERATION_NANOS.record(System.nanoTime() - start);
+        GENERATED.increment();
+        GENERATION_ATTEMPTS.add(attempts);
+        if (!event.shouldCommit()) return;
+        int gridSize = puzzle.getSize().getGridSize();
+        int clues = 0;
+        for (int cell = 0; cell < puzzle.getSize().getCells(); cell++) {
+            if (puzzle.getGiven(cell / gridSize, cell % gridSize) != 0) clues++;
+        }
+        event.size = puzzle.getSize().toString();
+        event.level = level.name();
+        event.attempts = attempts;
+        event.clues = clues;
+        event.commit();
+    }
+
+    /**
+     * Returns the number of clues to leave on a 9x9 board for the given difficulty level.
+     *
+     * @param level The difficulty level of the Sudoku puzzle.
+     * @return The number of pre-filled cells for the level.
+     * @see BoardSize#cluesFor(SudokuLevel)
+     */
+    static int cluesFor(SudokuLevel level) {
+        return BoardSize.NINE.cluesFor(level);
     }
 
     /**
      * Generates a randomized and valid 9x9 Sudoku board.
+     *
+     * @param random The random generator used to pick the transformation.
+     * @return A 3-dimensional array representing a fully populated and valid Sudoku grid.
+     */
+    private static int[][][] randomizeBoard(SplittableRandom random) {
+        return randomizeBoard(BoardSize.NINE, random);
+    }
+
+    /**
+     * Generates a randomized and valid Sudoku board of the given size.
      * <p>
-     * This method first creates a valid Sudoku grid using a shifting pattern, and then randomizes
-     * the board by swapping numbers randomly.
+     * This method starts from the seed grid of the size, a valid grid built from a shifting pattern, and
+     * applies a random combination of the Sudoku symmetries to it (see {@link GridTransform}): band, stack,
+     * row and column permutations, transposition and relabelling of the digits. Each of them keeps the grid
+     * valid, so no search is needed, and the rows and sections of the result no longer share the shape of
+     * the seed.
      * </p>
      *
+     * @param size The size of the board.
+     * @param random The random generator used to pick the transformation.
      * @return A 3-dimensional array representing a fully populated and valid Sudoku grid.
      */
-    private static int[][][] randomizeBoard() {
-        Random random = new Random();
-        int[][] matrix = generateInitBoard();
-        int[][][] newMatrix = new int[GRID_SIZE][GRID_SIZE][3];
-        int randomNb1, randomNb2;
-        for (int i = 0; i < GRID_SIZE; i++) {
-            randomNb1 = random.nextInt(GRID_SIZE)+1;
-            randomNb2 = random.nextInt(GRID_SIZE)+1;
-            for (int row = 0; row < GRID_SIZE; row++) {
-                for (int col = 0; col < GRID_SIZE; col++) {
-                    if      (matrix[row][col] == randomNb1)     matrix[row][col] = randomNb2;
-                    else if (matrix[row][col] == randomNb2)     matrix[row][col] = randomNb1;
-                    newMatrix[row][col][0] = matrix[row][col];
-                    newMatrix[row][col][1] = matrix[row][col];
-                }
+    private static int[][][] randomizeBoard(BoardSize size, SplittableRandom random) {
+        int gridSize = size.getGridSize();
+        int[] grid = GridTransform.randomize(SEED_GRIDS[size.ordinal()], size, random);
+        int[][][] newMatrix = new int[gridSize][gridSize][3];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                newMatrix[row][col][0] = grid[row * gridSize + col];
+                newMatrix[row][col][1] = grid[row * gridSize + col];
             }
         }
         return newMatrix;
@@ -76,20 +239,22 @@ public class MatrixGenerator {
     /**
      * Generates the initial valid Sudoku board using a shifting pattern.
      * <p>
-     * This method creates a 9x9 Sudoku board by shifting numbers in each row, ensuring that
+     * This method creates a Sudoku board by shifting numbers in each row, ensuring that
      * the board is valid without breaking Sudoku rules.
      * </p>
      *
-     * @return A valid 9x9 Sudoku board with numbers filled in.
+     * @param size The size of the board.
+     * @return A valid Sudoku board with numbers filled in.
      */
-    private static int[][] generateInitBoard() {
-        int[][] matrix = new int[GRID_SIZE][GRID_SIZE];
-        int[] sudokuNbs = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+    private static int[][] generateInitBoard(BoardSize size) {
+        int gridSize = size.getGridSize();
+        int sectionSize = size.getSectionSize();
+        int[][] matrix = new int[gridSize][gridSize];
         int shift;
-        for (int row = 0; row < GRID_SIZE; row++) {
-           shift = row * SECTION_SIZE + row / SECTION_SIZE;
-            for (int col = 0; col < GRID_SIZE; col++) {
-                matrix[row][col] = sudokuNbs[(shift + col) % GRID_SIZE];
+        for (int row = 0; row < gridSize; row++) {
+           shift = row * sectionSize + row / sectionSize;
+            for (int col = 0; col < gridSize; col++) {
+                matrix[row][col] = (shift + col) % gridSize + 1;
                 // exempel Row 0:
                 //(0 / 3) + (0 % 3) * 3 = 0 + 0 = 0 → No shift
                 //0+2 % 9 = 2 ==> SudokuNb = 3
@@ -107,14 +272,15 @@ public class MatrixGenerator {
      *
      * @param matrix The complete Sudoku matrix to modify.
      * @param levelChoice The number of cells to leave filled, defining the difficulty.
+     * @param random The random generator used to pick the cells to empty.
      * @return A 3-dimensional array representing the Sudoku board with empty cells (0) according to the difficulty level.
      */
-    private static int[][][] setLevel(int[][][] matrix, int levelChoice) {
-        Random random = new Random();
+    private static int[][][] setLevel(int[][][] matrix, int levelChoice, SplittableRandom random) {
+        int gridSize = matrix.length;
         int randomRow, randomCol;
-        for (int i = GRID_SIZE * GRID_SIZE; i > levelChoice; i--) {
-            randomRow = random.nextInt(GRID_SIZE);
-            randomCol = random.nextInt(GRID_SIZE);
+        for (int i = gridSize * gridSize; i > levelChoice; i--) {
+            randomRow = random.nextInt(gridSize);
+            randomCol = random.nextInt(gridSize);
             if (matrix[randomRow][randomCol][0] != 0) {
                 matrix[randomRow][randomCol][0] = 0;
                 matrix[randomRow][randomCol][2] = 1;
@@ -125,4 +291,51 @@ public class MatrixGenerator {
         }
         return matrix;
     }
+
+    /**
+     * Adjusts the difficulty level of the Sudoku board by removing values while keeping the solution unique.
+     * <p>
+     * The cells are visited once each in random order. A value is removed and the remaining puzzle is handed to
+     * the solver, which counts solutions but stops at two. If a second solution shows up, the value
+     * is put back. The method stops when only {@code levelChoice} filled cells remain or when every cell has
+     * been tried, in which case the puzzle is minimal.
+     * </p>
+     *
+     * @param matrix The complete Sudoku matrix to modify.
+     * @param levelChoice The number of cells to leave filled, defining the difficulty.
+     * @param solver The solver used to count the solutions after each removal.
+     * @param random The random generator used to shuffle the order of the cells.
+     * @return A 3-dimensional array representing the Sudoku board with empty cells (0), with a unique solution.
+     */
+    private static int[][][] setLevelUnique(int[][][] matrix, int levelChoice, SolverEngine solver,
+                                            SplittableRandom random) {
+        int gridSize = matrix.length;
+        int[] grid = new int[gridSize * gridSize];
+        int[] order = new int[gridSize * gridSize];
+        for (int cell = 0; cell < grid.length; cell++) {
+            grid[cell] = matrix[cell / gridSize][cell % gridSize][0];
+            order[cell] = cell;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+
+        int filled = grid.length;
+        for (int i = 0; i < order.length && filled > levelChoice; i++) {
+            int cell = order[i];
+            int value = grid[cell];
+            grid[cell] = 0;
+            if (solver.hasUniqueSolution(grid)) {
+                matrix[cell / gridSize][cell % gridSize][0] = 0;
+                matrix[cell / gridSize][cell % gridSize][2] = 1;
+                filled--;
+            } else {
+                grid[cell] = value; // Put the value back, removing it allows more than one solution.
+            }
+        }
+        return matrix;
+    }
 }
@@ -0,0 +1,240 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code MoveJournal} class records the moves of a game for undo and redo.
+ * <p>
+ * Every move is one {@code int} holding the cell, the old value and the new value (see {@link #pack}), stored in
+ * a ring buffer of fixed capacity. Recording, undoing and redoing a move are O(1) and never allocate. When the
+ * buffer is full, recording a move drops the oldest one, so a long session keeps only its last
+ * {@link #getCapacity()} moves. Recording a move after an undo drops the moves that could have been redone.
+ * </p>
+ * <p>
+ * A move can be marked as {@linkplain #GROUPED grouped} with the move before it, so that several cells changed
+ * by one action (such as resetting the board) are undone and redone together. A group is only ever dropped as a
+ * whole, so undo never stops inside one; a group must therefore not be larger than the capacity.
+ * </p>
+ * The journal is saved after the board record of a save file, see {@link #encode(ByteBuffer)}.
+ * A journal is not thread-safe.
+ */
+final class MoveJournal {
+    static final int DEFAULT_CAPACITY = 1 << 12;
+    static final int MAX_CAPACITY = 1 << 20;
+    /** Set in a move that belongs to the same action as the move before it. */
+    static final int GROUPED = 1 << 30;
+    static final int MAGIC = 0x53444B4A; // "SDKJ"
+
+    private static final int VALUE_BITS = 5;
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4;
+
+    private final int[] entries;
+    private final int mask;
+    private int start;      // the position of the oldest move
+    private int undoCount;  // moves from start that can be undone
+    private int redoCount;  // moves after those that can be redone
+
+    /**
+     * Constructs a new, empty {@code MoveJournal}.
+     *
+     * @param capacity The number of moves to keep, rounded up to a power of two.
+     */
+    MoveJournal(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) throw new IllegalArgumentException("invalid capacity " + capacity);
+        int length = 1;
+        while (length < capacity) length <<= 1;
+        this.entries = new int[length];
+        this.mask = entries.length - 1;
+    }
+
+    /**
+     * Packs a move into one {@code int}: the cell in bits 10 and up, the old value in bits 5-9 and the new value
+     * in bits 0-4.
+     */
+    static int pack(int cell, int oldValue, int newValue) {
+        return cell << (2 * VALUE_BITS) | oldValue << VALUE_BITS | newValue;
+    }
+
+    static int cellOf(int move) {
+        return (move & ~GROUPED) >>> (2 * VALUE_BITS);
+    }
+
+    static int oldValueOf(int move) {
+        return (move >>> VALUE_BITS) & VALUE_MASK;
+    }
+
+    static int newValueOf(int move) {
+        return move & VALUE_MASK;
+    }
+
+    static boolean isGrouped(int move) {
+        return (move & GROUPED) != 0;
+    }
+
+    int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Records a move, dropping the moves that could have been redone. If the journal is full, the oldest move is
+     * dropped together with the rest of its group.
+     *
+     * @param move The move, packed by {@link #pack} and optionally marked {@link #GROUPED}.
+     */
+    void record(int move) {
+        redoCount = 0;
+        if (undoCount == entries.length) dropOldest();
+        entries[(start + undoCount) & mask] = move;
+        undoCount++;
+    }
+
+    /**
+     * Drops the oldest move and the moves grouped with it.
+     */
+    private void dropOldest() {
+        do {
+            start = (start + 1) & mask;
+            undoCount--;
+        } while (undoCount > 0 && isGrouped(entries[start]));
+    }
+
+    boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    boolean canRedo() {
+        return redoCount > 0;
+    }
+
+    /**
+     * Takes back the last move.
+     *
+     * @return The move, to be reverted by the caller.
+     * @throws IllegalStateException If there is no move to undo.
+     */
+    int undo() {
+        if (undoCount == 0) throw new IllegalStateException("nothing to undo");
+        undoCount--;
+        redoCount++;
+        return entries[(start + undoCount) & mask];
+    }
+
+    /**
+     * Returns the move {@link #redo()} would return, without redoing it.
+     *
+     * @throws IllegalStateException If there is no move to redo.
+     */
+    int peekRedo() {
+        if (redoCount == 0) throw new IllegalStateException("nothing to redo");
+        return entries[(start + undoCount) & mask];
+    }
+
+    /**
+     * Redoes the last undone move.
+     *
+     * @return The move, to be applied again by the caller.
+     * @throws IllegalStateException If there is no move to redo.
+     */
+    int redo() {
+        int move = peekRedo();
+        undoCount++;
+        redoCount--;
+        return move;
+    }
+
+    /**
+     * Returns a copy of the journal with the same capacity and moves.
+     */
+    MoveJournal copy() {
+        MoveJournal copy = new MoveJournal(entries.length);
+        System.arraycopy(entries, 0, copy.entries, 0, entries.length);
+        copy.start = start;
+        copy.undoCount = undoCount;
+        copy.redoCount = redoCount;
+        return copy;
+    }
+
+    /**
+     * Forgets all moves, for example when a new game starts.
+     */
+    void clear() {
+        start = 0;
+        undoCount = 0;
+        redoCount = 0;
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(ByteBuffer)} writes for the current moves.
+     */
+    int encodedSize() {
+        return HEADER_BYTES + 4 * (undoCount + redoCount) + 4;
+    }
+
+    /**
+     * Returns the largest number of bytes {@link #encode(ByteBuffer)} can write for a journal of the given capacity.
+     */
+    static int maxEncodedSize(int capacity) {
+        return HEADER_BYTES + 4 * capacity + 4;
+    }
+
+    /**
+     * Writes the moves, oldest first. Layout (big-endian): 4 bytes magic {@code "SDKJ"}, 4 bytes undo count,
+     * 4 bytes redo count, 4 bytes reserved (0), one {@code int} per move, 4 bytes CRC-32 of all bytes before it.
+     *
+     * @param buffer The buffer to write to, with at least {@link #encodedSize()} bytes remaining.
+     */
+    void encode(ByteBuffer buffer) {
+        int begin = buffer.position();
+        buffer.putInt(MAGIC).putInt(undoCount).putInt(redoCount).putInt(0);
+        for (int i = 0; i < undoCount + redoCount; i++) buffer.putInt(entries[(start + i) & mask]);
+        buffer.putInt((int) checksum(buffer, begin, buffer.position() - begin));
+    }
+
+    /**
+     * Replaces the moves with the ones written by {@link #encode(ByteBuffer)}, dropping the oldest ones if there
+     * are more than fit. The journal is only changed once the whole block has been checked.
+     *
+     * @param buffer The buffer to read from.
+     * @param cells The number of cells of the board the moves belong to.
+     * @param maxValue The largest value of the board.
+     * @throws IOException If the block is truncated, fails the checksum or holds a move that does not fit the board.
+     */
+    void decode(ByteBuffer buffer, int cells, int maxValue) throws IOException {
+        int begin = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES + 4) throw new IOException("Truncated move journal");
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a move journal");
+        int undos = buffer.getInt();
+        int redos = buffer.getInt();
+        buffer.getInt(); // reserved
+        if (undos < 0 || redos < 0 || (long) undos + redos > buffer.remaining() / 4 - 1) {
+            throw new IOException("Truncated move journal");
+        }
+        int total = undos + redos;
+        int payloadEnd = buffer.position() + 4 * total;
+        long expected = buffer.getInt(payloadEnd) & 0xFFFFFFFFL;
+        if (checksum(buffer, begin, payloadEnd - begin) != expected) throw new IOException("Move journal checksum mismatch");
+        for (int i = 0; i < total; i++) {
+            int move = buffer.getInt(buffer.position() + 4 * i);
+            if (cellOf(move) >= cells || oldValueOf(move) > maxValue || newValueOf(move) > maxValue) {
+                throw new IOException("Invalid move in journal: " + Integer.toHexString(move));
+            }
+        }
+        // keep the newest moves if the saved journal was larger than this one, without splitting a group
+        int skip = Math.max(0, total - entries.length);
+        while (skip < total && isGrouped(buffer.getInt(buffer.position() + 4 * skip))) skip++;
+        clear();
+        for (int i = skip; i < total; i++) entries[(i - skip) & mask] = buffer.getInt(buffer.position() + 4 * i);
+        redoCount = Math.min(redos, total - skip);
+        undoCount = total - skip - redoCount;
+        buffer.position(payloadEnd + 4);
+    }
+
+    private static long checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(start + length));
+        return crc.getValue();
+    }
+}
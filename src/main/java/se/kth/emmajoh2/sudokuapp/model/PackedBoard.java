@@ -0,0 +1,188 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code PackedBoard} class stores the state of a Sudoku board in a few {@code long} words.
+ * <p>
+ * Each cell is a field holding the current value, the solution and whether the cell was pre-filled (1 bit).
+ * On a 9x9 board the values take 4 bits each, so a field is 9 bits and seven fields fit in one {@code long}:
+ * the whole board takes 12 words, about 100 bytes including the array header, instead of 81
+ * {@link SelectedTile} objects. On 16x16 and 25x25 boards the values take 5 bits and five fields fit in a word.
+ * A board is reset and reloaded in place and never allocates after construction.
+ * </p>
+ * Cells are addressed by their index {@code row * gridSize + col}.
+ */
+public final class PackedBoard {
+    private final BoardSize size;
+    private final int cells;
+    private final int maxValue;
+    private final int valueMask;
+    private final int solutionShift;
+    private final int fieldBits;
+    private final long fieldMask;
+    private final long currentBits;
+    private final long givenBit;
+    private final int fieldsPerWord;
+    private final long[] words;
+
+    /**
+     * Constructs a new, empty 9x9 {@code PackedBoard}.
+     */
+    public PackedBoard() {
+        this(BoardSize.NINE);
+    }
+
+    /**
+     * Constructs a new, empty {@code PackedBoard} of the given size.
+     *
+     * @param size The size of the board.
+     */
+    public PackedBoard(BoardSize size) {
+        this.size = size;
+        this.cells = size.getCells();
+        this.maxValue = size.getGridSize();
+        int valueBits = 32 - Integer.numberOfLeadingZeros(maxValue);
+        this.valueMask = (1 << valueBits) - 1;
+        this.solutionShift = valueBits;
+        this.fieldBits = 2 * valueBits + 1;
+        this.fieldMask = (1L << fieldBits) - 1;
+        this.currentBits = valueMask;
+        this.givenBit = 1L << (2 * valueBits);
+        this.fieldsPerWord = Long.SIZE / fieldBits;
+        this.words = new long[(cells + fieldsPerWord - 1) / fieldsPerWord];
+    }
+
+    /**
+     * Returns the size of the board.
+     *
+     * @return The {@link BoardSize} of the board.
+     */
+    public BoardSize getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of cells of the board.
+     *
+     * @return The number of cells, 81 for a 9x9 board.
+     */
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the current value of a cell.
+     *
+     * @param cell The index of the cell.
+     * @return The value entered or pre-filled in the cell, or 0 if the cell is empty.
+     */
+    public int getCurrent(int cell) {
+        return (int) (field(cell) & currentBits);
+    }
+
+    /**
+     * Returns the solution of a cell.
+     *
+     * @param cell The index of the cell.
+     * @return The correct value of the cell.
+     */
+    public int getSolution(int cell) {
+        return (int) (field(cell) >>> solutionShift) & valueMask;
+    }
+
+    /**
+     * Checks if a cell was pre-filled in the puzzle.
+     *
+     * @param cell The index of the cell.
+     * @return {@code true} if the cell is part of the puzzle and cannot be changed.
+     */
+    public boolean isGiven(int cell) {
+        return (field(cell) & givenBit) != 0;
+    }
+
+    /**
+     * Checks if the current value of a cell matches its solution.
+     *
+     * @param cell The index of the cell.
+     * @return {@code true} if the cell holds its correct value.
+     */
+    public boolean isCorrect(int cell) {
+        long field = field(cell);
+        return (field & currentBits) == ((field >>> solutionShift) & valueMask);
+    }
+
+    /**
+     * Sets the current value of a cell, unless the cell was pre-filled.
+     *
+     * @param cell The index of the cell.
+     * @param value The new value, 0 to clear the cell.
+     * @return {@code true} if the value was set, {@code false} if the cell is pre-filled.
+     * @throws IllegalArgumentException If the value is not between 0 and the grid size.
+     */
+    boolean setCurrent(int cell, int value) {
+        if (value < 0 || value > maxValue) throw new IllegalArgumentException("invalid value " + value);
+        long field = field(cell);
+        if ((field & givenBit) != 0) return false;
+        setField(cell, (field & ~currentBits) | value);
+        return true;
+    }
+
+    /**
+     * Overwrites every part of a cell.
+     *
+     * @param cell The index of the cell.
+     * @param current The current value, 0 for empty.
+     * @param solution The solution of the cell.
+     * @param given Whether the cell is pre-filled.
+     */
+    void set(int cell, int current, int solution, boolean given) {
+        if (current < 0 || current > maxValue || solution < 0 || solution > maxValue) {
+            throw new IllegalArgumentException("invalid value " + current + "/" + solution);
+        }
+        setField(cell, current | ((long) solution << solutionShift) | (given ? givenBit : 0));
+    }
+
+    /**
+     * Loads a puzzle, replacing the whole board.
+     *
+     * @param puzzle The puzzle to load.
+     * @throws IllegalArgumentException If the puzzle has another size than the board.
+     */
+    void load(Puzzle puzzle) {
+        if (puzzle.getSize() != size) throw new IllegalArgumentException("puzzle is " + puzzle.getSize());
+        for (int cell = 0; cell < cells; cell++) {
+            int given = puzzle.getGiven(cell / maxValue, cell % maxValue);
+            set(cell, given, puzzle.getSolution(cell / maxValue, cell % maxValue), given != 0);
+        }
+    }
+
+    /**
+     * Clears the current value of every cell that was not pre-filled.
+     */
+    void resetMoves() {
+        for (int cell = 0; cell < cells; cell++) {
+            long field = field(cell);
+            if ((field & givenBit) == 0) setField(cell, field & ~currentBits);
+        }
+    }
+
+    /**
+     * Copies the whole state of another board into this one.
+     *
+     * @param other The board to copy from.
+     * @throws IllegalArgumentException If the other board has another size.
+     */
+    void copyFrom(PackedBoard other) {
+        if (other.size != size) throw new IllegalArgumentException("board is " + other.size);
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    private long field(int cell) {
+        return (words[cell / fieldsPerWord] >>> ((cell % fieldsPerWord) * fieldBits)) & fieldMask;
+    }
+
+    private void setField(int cell, long field) {
+        int word = cell / fieldsPerWord;
+        int shift = (cell % fieldsPerWord) * fieldBits;
+        words[word] = (words[word] & ~(fieldMask << shift)) | (field << shift);
+    }
+}
@@ -0,0 +1,164 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code Puzzle} class holds a generated Sudoku puzzle: its difficulty level, the pre-filled values and the
+ * solution.
+ * <p>
+ * The values are stored as flat arrays in row-major order (81 cells for a 9x9 board), the same layout the
+ * solvers use. The {@link BoardSize} follows from the number of cells. A puzzle is never changed after it has
+ * been created.
+ * </p>
+ * <p>
+ * The text form used by {@link #toLine()} is the common one-line format: 81 characters for the pre-filled
+ * values ({@code '.'} for empty cells), a space, the 81 characters of the solution, a space and the level,
+ * for example {@code 53..7.... 534678912... EASY}. Larger boards write the values 10 to 25 as {@code A} to
+ * {@code P}.
+ * </p>
+ */
+public final class Puzzle {
+    private final BoardSize size;
+    private final SudokuLevel level;
+    private final int[] givens;
+    private final int[] solution;
+
+    /**
+     * Constructs a new {@code Puzzle}. The arrays are used as they are, without copying.
+     *
+     * @param level The difficulty level of the puzzle.
+     * @param givens The pre-filled values, 0 for empty cells.
+     * @param solution The solution of the puzzle.
+     * @throws IllegalArgumentException If the arrays differ in length or do not match a {@link BoardSize}.
+     */
+    Puzzle(SudokuLevel level, int[] givens, int[] solution) {
+        if (givens.length != solution.length) throw new IllegalArgumentException();
+        this.size = BoardSize.ofCells(givens.length);
+        this.level = level;
+        this.givens = givens;
+        this.solution = solution;
+    }
+
+    /**
+     * Creates a puzzle from a matrix in the format returned by {@link MatrixGenerator}.
+     *
+     * @param level The difficulty level of the puzzle.
+     * @param matrix The matrix where {@code [row][col][0]} is the initial value and {@code [row][col][1]} the solution.
+     * @return A new {@code Puzzle}.
+     */
+    static Puzzle fromMatrix(SudokuLevel level, int[][][] matrix) {
+        int gridSize = matrix.length;
+        int[] givens = new int[gridSize * gridSize];
+        int[] solution = new int[gridSize * gridSize];
+        for (int cell = 0; cell < givens.length; cell++) {
+            givens[cell] = matrix[cell / gridSize][cell % gridSize][0];
+            solution[cell] = matrix[cell / gridSize][cell % gridSize][1];
+        }
+        return new Puzzle(level, givens, solution);
+    }
+
+    /**
+     * Returns the same puzzle labelled with another level. The arrays are shared, since neither puzzle changes them.
+     *
+     * @param level The new difficulty level.
+     * @return A new {@code Puzzle} with the same cells.
+     */
+    Puzzle withLevel(SudokuLevel level) {
+        return new Puzzle(level, givens, solution);
+    }
+
+    /**
+     * Returns the puzzle with one transformation of {@link GridTransform#apply} applied to both the pre-filled
+     * values and the solution, which is again a valid puzzle of the same difficulty.
+     */
+    Puzzle transformed(int[] rowOrder, int[] colOrder, boolean transpose, int[] relabel) {
+        int[] newGivens = new int[givens.length];
+        int[] newSolution = new int[solution.length];
+        GridTransform.apply(givens, size, rowOrder, colOrder, transpose, relabel, newGivens);
+        GridTransform.apply(solution, size, rowOrder, colOrder, transpose, relabel, newSolution);
+        return new Puzzle(level, newGivens, newSolution);
+    }
+
+    /**
+     * Converts the puzzle to the matrix format used by {@link MatrixGenerator}.
+     *
+     * @return A new 3-dimensional array with the initial value, the solution and the blank flag of each tile.
+     */
+    int[][][] toMatrix() {
+        int gridSize = size.getGridSize();
+        int[][][] matrix = new int[gridSize][gridSize][3];
+        for (int cell = 0; cell < givens.length; cell++) {
+            int[] tile = matrix[cell / gridSize][cell % gridSize];
+            tile[0] = givens[cell];
+            tile[1] = solution[cell];
+            tile[2] = givens[cell] == 0 ? 1 : 0;
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the size of the puzzle.
+     *
+     * @return The {@link BoardSize} of the puzzle.
+     */
+    public BoardSize getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the difficulty level of the puzzle.
+     *
+     * @return The {@link SudokuLevel} the puzzle was generated for.
+     */
+    public SudokuLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the pre-filled value of a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The pre-filled value, or 0 if the cell starts empty.
+     */
+    public int getGiven(int row, int col) {
+        return givens[row * size.getGridSize() + col];
+    }
+
+    /**
+     * Returns the solution of a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The correct value of the cell.
+     */
+    public int getSolution(int row, int col) {
+        return solution[row * size.getGridSize() + col];
+    }
+
+    /**
+     * Returns a copy of the pre-filled values as a flat array, 0 for empty cells.
+     *
+     * @return A new array of values in row-major order, 81 for a 9x9 board.
+     */
+    public int[] copyGivens() {
+        return givens.clone();
+    }
+
+    /**
+     * Returns the puzzle in the one-line text format described in the class documentation.
+     *
+     * @return The pre-filled values, the solution and the level, separated by spaces.
+     */
+    public String toLine() {
+        StringBuilder line = new StringBuilder(2 * givens.length + 10);
+        for (int value : givens) line.append(BoardSize.toChar(value));
+        line.append(' ');
+        for (int value : solution) line.append(BoardSize.toChar(value));
+        line.append(' ').append(level);
+        return line.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toLine();
+    }
+}
@@ -0,0 +1,463 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code PuzzleArchive} class is an append-only file of fixed-size puzzle records with random access.
+ * <p>
+ * The file starts with a 64-byte header (magic {@code "SDKA"}, format version, record size) followed by one
+ * 64-byte record per puzzle:
+ * </p>
+ * <ul>
+ *     <li>1 byte level ({@link SudokuLevel#ordinal()})</li>
+ *     <li>11 bytes pre-filled mask, one bit per cell</li>
+ *     <li>41 bytes solution values, one nibble per cell (low nibble first)</li>
+ *     <li>4 bytes CRC-32 of the bytes above</li>
+ *     <li>7 bytes padding</li>
+ * </ul>
+ * <p>
+ * Records are read through memory mappings of up to {@link #SEGMENT_RECORDS} records each, so looking up
+ * puzzle number {@code n} is one offset calculation and only touches the pages of that record. Appended
+ * records become visible to readers when the mapping is extended on the next lookup past the old end.
+ * A partially written record at the end of the file (after a crash) is ignored.
+ * </p>
+ * <p>
+ * The record numbers of every level are kept in an index file next to the archive (the archive name with
+ * {@code .idx} appended): a 64-byte header (magic {@code "SDKX"}, format version, the number of records it
+ * covers, the checksum of the last of them, the number of records per level and a CRC-32 of the header)
+ * followed by the record numbers of each level in turn, 4 bytes each. The index is memory-mapped like the
+ * records, so opening an archive reads neither the records nor the whole index. Records the index does not
+ * cover, appended since it was written or by a version without index files, are read on open and added to the
+ * index in memory; a writable archive writes the complete index again when it is closed. An index that does not
+ * match the archive is ignored. {@link #take(SudokuLevel)} picks from the index, so starting a new game only
+ * touches the pages of the puzzle it picks, however rare its level is in the archive.
+ * </p>
+ * Archives hold 9x9 puzzles only. Reads are thread-safe; appends are serialized on the archive.
+ */
+public class PuzzleArchive implements PuzzleSource, Closeable {
+    public static final int RECORD_SIZE = 64;
+    public static final int HEADER_SIZE = 64;
+    static final int SEGMENT_RECORDS = 1 << 24; // 1 GiB of records per mapping
+
+    private static final int MAGIC = 0x53444B41; // "SDKA"
+    private static final int INDEX_MAGIC = 0x53444B58; // "SDKX"
+    private static final byte VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 64;
+    private static final int INDEX_SEGMENT_ENTRIES = 1 << 24; // 64 MiB of record numbers per mapping
+    private static final int GRID_SIZE = BoardSize.NINE.getGridSize();
+    private static final int CELLS = BoardSize.NINE.getCells();
+    private static final int MASK_BYTES = (CELLS + 7) / 8;
+    private static final int NIBBLE_BYTES = (CELLS + 1) / 2;
+    private static final int PAYLOAD_BYTES = 1 + MASK_BYTES + NIBBLE_BYTES;
+
+    private final FileChannel channel;
+    private final Path indexFile;
+    private final boolean writable;
+    private final ByteBuffer appendBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final LevelIndex[] levels = new LevelIndex[SudokuLevel.values().length];
+    private volatile long count;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long mappedRecords;
+    private boolean indexChanged; // whether the index file no longer covers every record, guarded by this
+
+    /**
+     * The numbers of the records of one level: those read from the index file through its mappings, followed by
+     * those added since. Only appends add to it, and they publish the new record through {@code size}.
+     */
+    private static final class LevelIndex {
+        final MappedByteBuffer[] stored;
+        final int storedSize;
+        int[] records = new int[16];
+        volatile int size;
+
+        LevelIndex(MappedByteBuffer[] stored, int storedSize) {
+            this.stored = stored;
+            this.storedSize = storedSize;
+            this.size = storedSize;
+        }
+
+        int get(int i) {
+            if (i < storedSize) return stored[i / INDEX_SEGMENT_ENTRIES].getInt(i % INDEX_SEGMENT_ENTRIES * 4);
+            return records[i - storedSize];
+        }
+
+        void add(long record) {
+            int n = size - storedSize;
+            if (n == records.length) records = Arrays.copyOf(records, 2 * n);
+            records[n] = (int) record;
+            size = storedSize + n + 1;
+        }
+    }
+
+    private PuzzleArchive(FileChannel channel, Path indexFile, boolean writable, long count) throws IOException {
+        if (count > Integer.MAX_VALUE) throw new IOException("Puzzle archive too large: " + count + " records");
+        this.channel = channel;
+        this.indexFile = indexFile;
+        this.writable = writable;
+        this.count = count;
+        long covered = readIndex();
+        indexChanged = covered != count;
+        for (long index = Math.max(covered, 0); index < count; index++) {
+            int ordinal = segmentFor(index).get((int) (index % SEGMENT_RECORDS) * RECORD_SIZE);
+            // a corrupt record is left out of the index, so take() never picks it
+            if (ordinal >= 0 && ordinal < levels.length) levels[ordinal].add(index);
+        }
+    }
+
+    /**
+     * Maps the record numbers of the index file into the level indexes, if the file belongs to this archive.
+     *
+     * @return The number of records the index covers, or -1 if it is missing or does not match the archive.
+     */
+    private long readIndex() {
+        try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            while (header.hasRemaining() && index.read(header, header.position()) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            int crcOffset = 4 + 1 + 8 + 4 + 4 * levels.length;
+            if (header.remaining() < INDEX_HEADER_SIZE || header.getInt() != INDEX_MAGIC || header.get() != VERSION
+                    || (header.getInt(crcOffset) & 0xFFFFFFFFL) != checksum(header, 0, crcOffset)) {
+                return unindexed();
+            }
+            long covered = header.getLong();
+            int lastChecksum = header.getInt();
+            // the index of another archive with the same name does not end with the same record
+            if (covered < 0 || covered > count || covered > 0 && lastChecksumOf(covered) != lastChecksum) {
+                return unindexed();
+            }
+            int[] sizes = new int[levels.length];
+            long total = 0;
+            for (int level = 0; level < levels.length; level++) total += sizes[level] = header.getInt();
+            if (total > covered || index.size() < INDEX_HEADER_SIZE + 4 * total) return unindexed();
+            long position = INDEX_HEADER_SIZE;
+            for (int level = 0; level < levels.length; level++) {
+                int size = sizes[level];
+                if (size < 0) return unindexed();
+                int segments = (size + INDEX_SEGMENT_ENTRIES - 1) / INDEX_SEGMENT_ENTRIES;
+                MappedByteBuffer[] stored = new MappedByteBuffer[segments];
+                for (int segment = 0; segment < stored.length; segment++) {
+                    long entries = Math.min(INDEX_SEGMENT_ENTRIES, size - (long) segment * INDEX_SEGMENT_ENTRIES);
+                    stored[segment] = index.map(FileChannel.MapMode.READ_ONLY, position, 4 * entries);
+                    position += 4 * entries;
+                }
+                levels[level] = new LevelIndex(stored, size);
+            }
+            return covered;
+        } catch (IOException e) {
+            return unindexed(); // a missing or unreadable index is only slower to open
+        }
+    }
+
+    private long unindexed() {
+        for (int level = 0; level < levels.length; level++) {
+            levels[level] = new LevelIndex(new MappedByteBuffer[0], 0);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the stored checksum of the last of the given number of records.
+     */
+    private int lastChecksumOf(long records) {
+        return segmentFor(records - 1).getInt((int) ((records - 1) % SEGMENT_RECORDS) * RECORD_SIZE + PAYLOAD_BYTES);
+    }
+
+    /**
+     * Writes the index of every record to a temporary file and renames it over the index file.
+     */
+    private void writeIndex() throws IOException {
+        long records = count;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        buffer.putInt(INDEX_MAGIC).put(VERSION).putLong(records);
+        buffer.putInt(records == 0 ? 0 : lastChecksumOf(records));
+        for (LevelIndex level : levels) buffer.putInt(level.size);
+        buffer.putInt((int) checksum(buffer, 0, buffer.position())).position(INDEX_HEADER_SIZE);
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel index = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (LevelIndex level : levels) {
+                for (int i = 0; i < level.size; i++) {
+                    if (!buffer.hasRemaining()) drain(buffer, index);
+                    buffer.putInt(level.get(i));
+                }
+            }
+            drain(buffer, index);
+            index.force(true);
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) out.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Opens an archive file for reading and appending, creating it if it does not exist. The index file is
+     * written when the archive is closed.
+     *
+     * @param file The archive file.
+     * @return The opened archive.
+     * @throws IOException If the file cannot be opened or is not a puzzle archive.
+     */
+    public static PuzzleArchive open(Path file) throws IOException {
+        return open(file, true);
+    }
+
+    /**
+     * Opens an existing archive file for reading only, for example to take new games from. The file is never
+     * changed, so it may be read-only.
+     *
+     * @param file The archive file.
+     * @return The opened archive, which cannot be appended to.
+     * @throws IOException If the file cannot be opened or is not a puzzle archive, which includes empty files.
+     */
+    public static PuzzleArchive openReadOnly(Path file) throws IOException {
+        return open(file, false);
+    }
+
+    private static PuzzleArchive open(Path file, boolean writable) throws IOException {
+        Path indexFile = file.resolveSibling(file.getFileName() + ".idx");
+        FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.size() == 0 && writable) {
+                header.putInt(MAGIC).put(VERSION).putInt(RECORD_SIZE).position(HEADER_SIZE).flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+                return new PuzzleArchive(channel, indexFile, true, 0);
+            }
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) throw new IOException("Not a puzzle archive: " + file);
+            byte version = header.get();
+            if (version != VERSION) throw new IOException("Unsupported archive version " + version);
+            if (header.getInt() != RECORD_SIZE) throw new IOException("Unexpected record size in " + file);
+            return new PuzzleArchive(channel, indexFile, writable, (channel.size() - HEADER_SIZE) / RECORD_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles in the archive.
+     *
+     * @return The number of complete records.
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Appends a puzzle to the end of the archive.
+     *
+     * @param puzzle The puzzle to append.
+     * @return The index of the appended puzzle.
+     * @throws IOException If writing to the file fails.
+     * @throws IllegalArgumentException If the puzzle is not a 9x9 puzzle.
+     * @throws IllegalStateException If the archive was opened with {@link #openReadOnly(Path)}.
+     */
+    public synchronized long append(Puzzle puzzle) throws IOException {
+        checkWritable(1);
+        appendBuffer.clear();
+        encode(appendBuffer, puzzle);
+        appendBuffer.flip();
+        long index = count;
+        long position = HEADER_SIZE + index * RECORD_SIZE;
+        while (appendBuffer.hasRemaining()) position += channel.write(appendBuffer, position);
+        levels[puzzle.getLevel().ordinal()].add(index);
+        count = index + 1;
+        indexChanged = true;
+        return index;
+    }
+
+    /**
+     * Appends several puzzles to the end of the archive in one write.
+     *
+     * @param puzzles The puzzles to append.
+     * @throws IOException If writing to the file fails.
+     * @throws IllegalArgumentException If one of the puzzles is not a 9x9 puzzle. Nothing is appended then.
+     * @throws IllegalStateException If the archive was opened with {@link #openReadOnly(Path)}.
+     */
+    public synchronized void appendAll(List<Puzzle> puzzles) throws IOException {
+        checkWritable(puzzles.size());
+        ByteBuffer buffer = ByteBuffer.allocate(puzzles.size() * RECORD_SIZE);
+        for (Puzzle puzzle : puzzles) encode(buffer, puzzle);
+        buffer.flip();
+        long position = HEADER_SIZE + count * RECORD_SIZE;
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+        long index = count;
+        for (Puzzle puzzle : puzzles) levels[puzzle.getLevel().ordinal()].add(index++);
+        count = index;
+        indexChanged = true;
+    }
+
+    private void checkWritable(int records) {
+        if (!writable) throw new IllegalStateException("The puzzle archive is opened read-only");
+        if (count + records > Integer.MAX_VALUE) throw new IllegalStateException("The puzzle archive is full");
+    }
+
+    /**
+     * Reads the puzzle with the given index.
+     *
+     * @param index The index of the puzzle, from 0 to {@code size() - 1}.
+     * @return The puzzle stored at that index.
+     * @throws IndexOutOfBoundsException If there is no puzzle with that index.
+     * @throws IllegalStateException If the record is corrupt.
+     */
+    public Puzzle get(long index) {
+        ByteBuffer segment = segmentFor(index);
+        return decode(segment, (int) (index % SEGMENT_RECORDS) * RECORD_SIZE, index);
+    }
+
+    /**
+     * Returns the level of the puzzle with the given index without decoding the rest of the record.
+     *
+     * @param index The index of the puzzle, from 0 to {@code size() - 1}.
+     * @return The level of the puzzle.
+     * @throws IndexOutOfBoundsException If there is no puzzle with that index.
+     */
+    public SudokuLevel levelOf(long index) {
+        ByteBuffer segment = segmentFor(index);
+        int ordinal = segment.get((int) (index % SEGMENT_RECORDS) * RECORD_SIZE);
+        if (ordinal < 0 || ordinal >= SudokuLevel.values().length) throw new IllegalStateException("Corrupt record " + index);
+        return SudokuLevel.values()[ordinal];
+    }
+
+    /**
+     * Returns a random puzzle of the given level, picked from the records of that level.
+     *
+     * @param level The difficulty level of the puzzle.
+     * @return A puzzle of that level from the archive.
+     * @throws NoSuchElementException If the archive has no puzzle of that level.
+     * @throws IllegalStateException If the record or the index entry it was picked by is corrupt.
+     */
+    @Override
+    public Puzzle take(SudokuLevel level) {
+        if (count == 0) throw new NoSuchElementException("The puzzle archive is empty");
+        LevelIndex index = levels[level.ordinal()];
+        int size = index.size; // read before the records, which are published with it
+        if (size == 0) throw new NoSuchElementException("No " + level + " puzzles in the archive");
+        int record = index.get(ThreadLocalRandom.current().nextInt(size));
+        Puzzle puzzle = record >= 0 && record < count ? get(record) : null;
+        if (puzzle == null || puzzle.getLevel() != level) {
+            throw new IllegalStateException("Corrupt puzzle archive index entry " + record);
+        }
+        return puzzle;
+    }
+
+    /**
+     * Closes the archive, writing the index file first if the archive is writable and the index has changed.
+     *
+     * @throws IOException If the index or the archive cannot be written or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (writable && indexChanged && channel.isOpen()) writeIndex();
+            indexChanged = false;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the mapping holding the given record, extending the mappings if the record was appended after
+     * the last mapping was made.
+     */
+    private ByteBuffer segmentFor(long index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("No puzzle " + index + " in archive of " + count);
+        if (index >= mappedRecords) remap();
+        return segments[(int) (index / SEGMENT_RECORDS)];
+    }
+
+    private synchronized void remap() {
+        long records = count;
+        if (records <= mappedRecords) return;
+        int segmentCount = (int) ((records + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+        MappedByteBuffer[] newSegments = Arrays.copyOf(segments, segmentCount);
+        try {
+            // the last old segment may be partial and has to be mapped again
+            int first = segments.length == 0 ? 0 : segments.length - 1;
+            for (int segment = first; segment < segmentCount; segment++) {
+                long firstRecord = (long) segment * SEGMENT_RECORDS;
+                long recordsInSegment = Math.min(SEGMENT_RECORDS, records - firstRecord);
+                newSegments[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + firstRecord * RECORD_SIZE, recordsInSegment * RECORD_SIZE);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map puzzle archive", e);
+        }
+        segments = newSegments;
+        mappedRecords = records;
+    }
+
+    private static void encode(ByteBuffer buffer, Puzzle puzzle) {
+        if (puzzle.getSize() != BoardSize.NINE) throw new IllegalArgumentException("cannot archive a " + puzzle.getSize() + " puzzle");
+        int start = buffer.position();
+        buffer.put((byte) puzzle.getLevel().ordinal());
+        int mask = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (puzzle.getGiven(cell / GRID_SIZE, cell % GRID_SIZE) != 0) mask |= 1 << (cell & 7);
+            if ((cell & 7) == 7 || cell == CELLS - 1) {
+                buffer.put((byte) mask);
+                mask = 0;
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell += 2) {
+            int low = puzzle.getSolution(cell / GRID_SIZE, cell % GRID_SIZE);
+            int high = cell + 1 < CELLS ? puzzle.getSolution((cell + 1) / GRID_SIZE, (cell + 1) % GRID_SIZE) : 0;
+            buffer.put((byte) (low | high << 4));
+        }
+        buffer.putInt((int) checksum(buffer, start));
+        while (buffer.position() < start + RECORD_SIZE) buffer.put((byte) 0);
+    }
+
+    private static Puzzle decode(ByteBuffer segment, int offset, long index) {
+        if ((segment.getInt(offset + PAYLOAD_BYTES) & 0xFFFFFFFFL) != checksum(segment, offset)) {
+            throw new IllegalStateException("Checksum mismatch in puzzle record " + index);
+        }
+        int ordinal = segment.get(offset);
+        if (ordinal < 0 || ordinal >= SudokuLevel.values().length) throw new IllegalStateException("Corrupt record " + index);
+        int[] givens = new int[CELLS];
+        int[] solution = new int[CELLS];
+        int maskStart = offset + 1;
+        int solutionStart = maskStart + MASK_BYTES;
+        for (int cell = 0; cell < CELLS; cell++) {
+            int packed = segment.get(solutionStart + cell / 2);
+            solution[cell] = (cell & 1) == 0 ? packed & 0x0F : (packed >>> 4) & 0x0F;
+            if ((segment.get(maskStart + cell / 8) & (1 << (cell & 7))) != 0) givens[cell] = solution[cell];
+        }
+        return new Puzzle(SudokuLevel.values()[ordinal], givens, solution);
+    }
+
+    private static long checksum(ByteBuffer buffer, int start) {
+        return checksum(buffer, start, PAYLOAD_BYTES);
+    }
+
+    private static long checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(start + length));
+        return crc.getValue();
+    }
+}
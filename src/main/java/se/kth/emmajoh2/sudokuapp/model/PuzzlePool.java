@@ -0,0 +1,207 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code PuzzlePool} class keeps a bounded supply of ready-made puzzles for each {@link BoardSize} and
+ * {@link SudokuLevel}.
+ * <p>
+ * Taking a puzzle is a single queue poll. When the number of ready puzzles of a level drops below the low
+ * watermark, a background worker generates new ones until the high watermark is reached again. If the pool
+ * of a level is empty, the puzzle is generated on the calling thread instead and counted as a miss.
+ * The hit and miss counters can be used to choose the watermarks.
+ * </p>
+ * <p>
+ * Only the 9x9 levels are filled when the pool is created; the larger sizes are filled from the first time a
+ * puzzle of that size is taken.
+ * </p>
+ * The pool is thread-safe. Its worker is a daemon thread, so it does not keep the application alive.
+ */
+public class PuzzlePool implements PuzzleSource {
+    public static final int DEFAULT_LOW_WATERMARK = 2;
+    public static final int DEFAULT_HIGH_WATERMARK = 8;
+
+    private final int lowWatermark;
+    private final int highWatermark;
+    // indexed by size ordinal, then level ordinal
+    private final ArrayBlockingQueue<Puzzle>[][] ready;
+    private final AtomicBoolean[][] refilling;
+    private final ExecutorService refiller;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // only used by the refill thread
+    private final SolverEngine[] refillSolvers = new SolverEngine[BoardSize.values().length];
+    private final SplittableRandom refillRandom = new SplittableRandom();
+
+    /**
+     * Constructs a new {@code PuzzlePool} and starts filling it in the background.
+     *
+     * @param lowWatermark The number of ready puzzles per level below which a refill is started.
+     * @param highWatermark The number of ready puzzles per level a refill stops at, which is also the capacity.
+     * @throws IllegalArgumentException If the watermarks are negative or the low one is above the high one.
+     */
+    public PuzzlePool(int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark < 1 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("invalid watermarks " + lowWatermark + "/" + highWatermark);
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-pool-refill");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        int sizes = BoardSize.values().length;
+        int levels = SudokuLevel.values().length;
+        @SuppressWarnings({"unchecked", "rawtypes"}) // no generic array creation in Java
+        ArrayBlockingQueue<Puzzle>[][] ready = new ArrayBlockingQueue[sizes][levels];
+        this.ready = ready;
+        this.refilling = new AtomicBoolean[sizes][levels];
+        for (int size = 0; size < sizes; size++) {
+            for (int level = 0; level < levels; level++) {
+                ready[size][level] = new ArrayBlockingQueue<>(highWatermark);
+                refilling[size][level] = new AtomicBoolean();
+            }
+        }
+        for (SudokuLevel level : SudokuLevel.values()) scheduleRefill(BoardSize.NINE, level);
+    }
+
+    /**
+     * Returns the pool shared by all games that do not bring their own, created on first use with the
+     * default watermarks.
+     *
+     * @return The shared {@code PuzzlePool}.
+     */
+    public static PuzzlePool getDefault() {
+        return DefaultHolder.POOL;
+    }
+
+    /**
+     * Takes a ready 9x9 puzzle of the given level, or generates one on the calling thread if none is ready.
+     *
+     * @param level The difficulty level of the puzzle.
+     * @return A puzzle with a unique solution.
+     */
+    @Override
+    public Puzzle take(SudokuLevel level) {
+        return take(BoardSize.NINE, level);
+    }
+
+    /**
+     * Takes a ready puzzle of the given size and level, or generates one on the calling thread if none is ready.
+     *
+     * @param size The size of the board.
+     * @param level The difficulty level of the puzzle.
+     * @return A puzzle with a unique solution.
+     */
+    @Override
+    public Puzzle take(BoardSize size, SudokuLevel level) {
+        ArrayBlockingQueue<Puzzle> queue = queue(size, level);
+        Puzzle puzzle = queue.poll();
+        if (queue.size() < lowWatermark) scheduleRefill(size, level);
+        if (puzzle != null) {
+            hits.incrementAndGet();
+            return puzzle;
+        }
+        misses.incrementAndGet();
+        return MatrixGenerator.generatePuzzle(level, new SudokuSolver(size), new SplittableRandom());
+    }
+
+    /**
+     * Returns the number of ready 9x9 puzzles of the given level.
+     *
+     * @param level The difficulty level.
+     * @return The number of puzzles that can be taken without generating.
+     */
+    public int size(SudokuLevel level) {
+        return size(BoardSize.NINE, level);
+    }
+
+    /**
+     * Returns the number of ready puzzles of the given size and level.
+     *
+     * @param size The size of the board.
+     * @param level The difficulty level.
+     * @return The number of puzzles that can be taken without generating.
+     */
+    public int size(BoardSize size, SudokuLevel level) {
+        return queue(size, level).size();
+    }
+
+    /**
+     * Returns the number of puzzles that were taken from the pool.
+     *
+     * @return The number of hits since the pool was created.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of puzzles that had to be generated on the calling thread because the pool was empty.
+     *
+     * @return The number of misses since the pool was created.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Stops the background worker. Puzzles can still be taken afterwards but are no longer refilled.
+     */
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private ArrayBlockingQueue<Puzzle> queue(BoardSize size, SudokuLevel level) {
+        return ready[size.ordinal()][level.ordinal()];
+    }
+
+    /**
+     * Starts a refill of the given size and level unless one is already scheduled or running.
+     */
+    private void scheduleRefill(BoardSize size, SudokuLevel level) {
+        AtomicBoolean flag = refilling[size.ordinal()][level.ordinal()];
+        if (refiller.isShutdown() || !flag.compareAndSet(false, true)) return;
+        try {
+            refiller.execute(() -> refill(size, level));
+        } catch (RejectedExecutionException e) {
+            flag.set(false); // shut down in the meantime
+        }
+    }
+
+    private void refill(BoardSize size, SudokuLevel level) {
+        ArrayBlockingQueue<Puzzle> queue = queue(size, level);
+        SolverEngine solver = refillSolvers[size.ordinal()];
+        if (solver == null) solver = refillSolvers[size.ordinal()] = new SudokuSolver(size);
+        try {
+            while (queue.size() < highWatermark && !Thread.currentThread().isInterrupted()) {
+                if (!queue.offer(MatrixGenerator.generatePuzzle(level, solver, refillRandom))) break;
+            }
+        } finally {
+            refilling[size.ordinal()][level.ordinal()].set(false);
+        }
+        // puzzles may have been taken after the last size check
+        if (queue.size() < lowWatermark) scheduleRefill(size, level);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder info = new StringBuilder("PuzzlePool[");
+        for (SudokuLevel level : SudokuLevel.values()) info.append(level).append('=').append(size(level)).append(' ');
+        info.append("hits=").append(getHits()).append(" misses=").append(getMisses()).append(']');
+        return info.toString();
+    }
+
+    private static class DefaultHolder {
+        private static final PuzzlePool POOL = new PuzzlePool(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+    }
+}
@@ -0,0 +1,35 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * A {@code PuzzleSource} supplies the puzzles {@link SudokuModel} starts new games with.
+ *
+ * @see PuzzlePool
+ * @see PuzzleArchive
+ */
+public interface PuzzleSource {
+
+    /**
+     * Returns a puzzle of the given level for a new game.
+     *
+     * @param level The difficulty level of the puzzle.
+     * @return A puzzle of that level.
+     * @throws java.util.NoSuchElementException If the source has no puzzle of that level.
+     */
+    Puzzle take(SudokuLevel level);
+
+    /**
+     * Returns a puzzle of the given size and level for a new game.
+     * <p>
+     * The default implementation only supplies 9x9 puzzles, from {@link #take(SudokuLevel)}.
+     * </p>
+     *
+     * @param size The size of the board.
+     * @param level The difficulty level of the puzzle.
+     * @return A puzzle of that size and level.
+     * @throws java.util.NoSuchElementException If the source has no puzzle of that size and level.
+     */
+    default Puzzle take(BoardSize size, SudokuLevel level) {
+        if (size != BoardSize.NINE) throw new java.util.NoSuchElementException("No " + size + " puzzles in this source");
+        return take(level);
+    }
+}
@@ -2,8 +2,6 @@ package se.kth.emmajoh2.sudokuapp.model;
 
 import java.io.Serializable;
 
-import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.GRID_SIZE;
-
 /**
  * Represents an individual tile in a Sudoku grid.
  * <p>
@@ -17,6 +15,9 @@ import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.GRID_SIZE;
  * for saving the state of a Sudoku game.
  */
 public class SelectedTile implements Serializable {
+    // the value computed for the original class, so that existing .ser saves keep loading
+    private static final long serialVersionUID = 1611993327610706707L;
+
     private final int solution;
     private final int initialNumber;
     private int currentNumber;
@@ -90,7 +91,7 @@ public class SelectedTile implements Serializable {
      *
      * @param number The number to set on the tile.
      * @return {@code true} if the tile's number was successfully set, {@code false} if the tile is an initial tile.
-     * @throws IllegalArgumentException If the provided number is invalid (not between 0 and the grid size).
+     * @throws IllegalArgumentException If the provided number is invalid (not between 0 and the largest grid size).
      */
     boolean setCurrentTile(int number) {
         if(!isSudokuNb(number)) throw new IllegalArgumentException();
@@ -105,10 +106,10 @@ public class SelectedTile implements Serializable {
      * Checks if the given number is valid for a Sudoku tile.
      *
      * @param number The number to check.
-     * @return {@code true} if the number is between 0 and the grid size, inclusive.
+     * @return {@code true} if the number is between 0 and the largest grid size, inclusive.
      */
     private boolean isSudokuNb(int number) {
-        if (number >= 0 && number<= GRID_SIZE) return true; //om 0 clear
+        if (number >= 0 && number<= BoardSize.TWENTY_FIVE.getGridSize()) return true; //om 0 clear
         else return false;
     }
 
@@ -0,0 +1,37 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code SolverBackend} enum lists the available {@link SolverEngine} implementations.
+ * <ul>
+ *     <li>{@code BITMASK}: {@link SudokuSolver}, candidate bitmasks with fewest-candidates-first search.</li>
+ *     <li>{@code DANCING_LINKS}: {@link DancingLinksSolver}, Algorithm X over the exact-cover matrix.</li>
+ * </ul>
+ */
+public enum SolverBackend {
+    BITMASK, DANCING_LINKS;
+
+    /**
+     * Creates a new engine of this backend for 9x9 grids.
+     *
+     * @return A new {@link SolverEngine}, to be used by one thread at a time.
+     */
+    public SolverEngine newEngine() {
+        return newEngine(BoardSize.NINE);
+    }
+
+    /**
+     * Creates a new engine of this backend for grids of the given size.
+     *
+     * @param boardSize The size of the grids to solve.
+     * @return A new {@link SolverEngine}, to be used by one thread at a time.
+     */
+    public SolverEngine newEngine(BoardSize boardSize) {
+        switch (this) {
+            case DANCING_LINKS:
+                return new DancingLinksSolver(boardSize);
+            case BITMASK:
+            default:
+                return new SudokuSolver(boardSize);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import se.kth.emmajoh2.sudokuapp.diagnostics.SolveEvent;
+
+/**
+ * The {@code SolverEngine} interface is the common contract for the Sudoku solver backends.
+ * <p>
+ * Grids are passed as a flat array in row-major order ({@code int[81]} for a 9x9 board), with 0 for empty cells.
+ * An engine solves grids of one {@link BoardSize}, chosen when it is created. Implementations
+ * preallocate their working storage and are not thread-safe, so each thread should use its own instance.
+ * </p>
+ * <p>
+ * Every solve and count is reported to the Flight Recorder as a {@link SolveEvent} when that event is enabled.
+ * </p>
+ *
+ * @see SolverBackend
+ */
+public interface SolverEngine {
+
+    /**
+     * Returns the size of the grids this engine solves.
+     *
+     * @return The {@link BoardSize} of the engine.
+     */
+    BoardSize getBoardSize();
+
+    /**
+     * Solves the given grid in place.
+     * <p>
+     * If the grid has a solution, every empty cell is filled in with the first solution found.
+     * If it has none, the grid is left untouched.
+     * </p>
+     *
+     * @param grid The grid to solve (0 for empty cells).
+     * @return {@code true} if a solution was found, {@code false} if the grid cannot be solved.
+     * @throws IllegalArgumentException If the grid has the wrong length or contains an invalid value.
+     */
+    boolean solve(int[] grid);
+
+    /**
+     * Counts the solutions of the given grid, stopping as soon as {@code limit} solutions are found.
+     * The grid is left untouched.
+     *
+     * @param grid The grid to examine (0 for empty cells).
+     * @param limit The number of solutions after which counting stops.
+     * @return The number of solutions found, never more than {@code limit}.
+     * @throws IllegalArgumentException If the grid has the wrong length or contains an invalid value.
+     */
+    int countSolutions(int[] grid, int limit);
+
+    /**
+     * Counts the solutions of the given grid like {@link #countSolutions(int[], int)} and fills it in with the first
+     * solution found, so a caller that needs both the count and a solution searches only once.
+     * <p>
+     * If the grid has no solution, it is left untouched.
+     * </p>
+     *
+     * @param grid The grid to examine and solve (0 for empty cells).
+     * @param limit The number of solutions after which counting stops.
+     * @return The number of solutions found, never more than {@code limit}.
+     * @throws IllegalArgumentException If the grid has the wrong length or contains an invalid value.
+     */
+    int solveAndCount(int[] grid, int limit);
+
+    /**
+     * Checks whether the given grid has exactly one solution.
+     *
+     * @param grid The grid to examine (0 for empty cells).
+     * @return {@code true} if the grid has exactly one solution, {@code false} otherwise.
+     */
+    default boolean hasUniqueSolution(int[] grid) {
+        return countSolutions(grid, 2) == 1;
+    }
+
+    /**
+     * Returns the number of search nodes visited by the last call.
+     *
+     * @return The number of nodes visited during the last solve or count.
+     */
+    long getNodes();
+
+    /**
+     * Returns the number of dead ends the last call had to back out of.
+     *
+     * @return The number of backtracks during the last solve or count.
+     */
+    long getBacktracks();
+}
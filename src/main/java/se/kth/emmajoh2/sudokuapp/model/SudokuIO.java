@@ -1,78 +1,229 @@
 package se.kth.emmajoh2.sudokuapp.model;
 
 import javafx.stage.FileChooser;
-import javafx.stage.Stage;
+import se.kth.emmajoh2.sudokuapp.diagnostics.GameIoEvent;
+import se.kth.emmajoh2.sudokuapp.diagnostics.Metrics;
 
 import java.io.*;
-
-import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.GRID_SIZE;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Utility class for serialization and deserialization of SelectedTile[][] objects.
+ * Utility class for saving and loading Sudoku games.
+ * <p>
+ * Games are saved as one binary record (see {@link BoardCodec}), about 100 bytes for a 9x9 board, written and
+ * read through a {@link FileChannel}. The record is followed by the move history of the game (see
+ * {@link MoveJournal#encode(java.nio.ByteBuffer)}), which older versions of the application skip over since they
+ * only read the record. Files written by older versions of the application, which contain a
+ * serialized {@code SelectedTile[][]}, are recognised by the Java serialization header and still load.
+ * </p>
+ * <p>
+ * Saving and loading files is counted in the {@link Metrics} ({@code io.*}) and reported to the Flight Recorder
+ * as {@link GameIoEvent}s.
+ * </p>
  */
 public class SudokuIO {
+    public static final String SAVE_EXTENSION = "*.sudoku";
+    public static final String LEGACY_EXTENSION = "*.ser";
+
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+    // no save is larger than the largest record and the history of the largest journal
+    private static final int MAX_SAVE_SIZE =
+            BoardCodec.MAX_RECORD_SIZE + MoveJournal.maxEncodedSize(MoveJournal.MAX_CAPACITY);
+    private static final Metrics.Histogram SAVE_NANOS = Metrics.getDefault().histogram("io.save.nanos");
+    private static final Metrics.Histogram LOAD_NANOS = Metrics.getDefault().histogram("io.load.nanos");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.getDefault().counter("io.bytesWritten");
+    private static final Metrics.Counter BYTES_READ = Metrics.getDefault().counter("io.bytesRead");
 
     /**
-     * Serializes a 2D array of {@link SelectedTile} objects to the specified file.
-     * This method writes the provided 2D array of {@code SelectedTile} objects to the given file,
-     * so that it can be deserialized later. The serialized object is written in a binary format.
-     * @param data The 2D array of {@code SelectedTile} objects to be serialized.
+     * Shows a save dialog and saves the given game to the chosen file.
+     *
+     * @param model The game to save.
+     * @return {@code true} if the game was saved, {@code false} if the dialog was cancelled.
      * @throws IOException If an I/O error occurs while writing to the file.
      */
-    public static void serializeToFile(SelectedTile[][] data) throws IOException {
+    public static boolean saveGame(SudokuModel model) throws IOException {
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("SudokuFiles", "*.ser"));
+                new FileChooser.ExtensionFilter("Sudoku Files", SAVE_EXTENSION));
         File selectedFile = fileChooser.showSaveDialog(null);
+        if (selectedFile == null) return false;
+        saveGame(model, selectedFile.toPath());
+        return true;
+    }
 
-
-        ObjectOutputStream objectOutputStream = null;
-        try {
-            FileOutputStream fout = new FileOutputStream(selectedFile);
-            objectOutputStream = new ObjectOutputStream(fout);
-            objectOutputStream.writeObject(data);
-        }
-        catch (IOException e) {
-            throw e;
-        }
-        finally {
-            objectOutputStream.close();
+    /**
+     * Saves the given game to a file in the binary save format, replacing the file if it exists.
+     *
+     * @param model The game to save.
+     * @param file The file to write to.
+     * @throws IOException If an I/O error occurs while writing to the file.
+     */
+    public static void saveGame(SudokuModel model, Path file) throws IOException {
+        long start = System.nanoTime();
+        GameIoEvent event = new GameIoEvent();
+        event.begin();
+        ByteBuffer buffer = encodeGame(model.getPackedBoard(), model.getLevel(), model.getJournal());
+        int bytes = buffer.remaining();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
         }
+        SAVE_NANOS.record(System.nanoTime() - start);
+        BYTES_WRITTEN.add(bytes);
+        finish(event, "save", file, bytes);
     }
 
     /**
-     * Deserializes a 2D array of {@link SelectedTile} objects from the specified file.
-     * This method reads the serialized object data from the given file and returns the
-     * deserialized {@code SelectedTile[][]} grid. The file is expected to contain a previously
-     * serialized 2D array of {@code SelectedTile} objects.
-     * </p>
-     * @return A 2D array of {@code SelectedTile} objects representing the deserialized Sudoku board.
-     * @throws IOException If an I/O error occurs while reading from the file.
-     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * Encodes a game in the binary save format: the board record followed by the move history.
+     *
+     * @param board The board of the game.
+     * @param level The difficulty level of the game.
+     * @param journal The move history of the game.
+     * @return A new buffer holding the save, ready to be written.
      */
-    public static SelectedTile[][] deserializeFromFile() throws IOException, ClassNotFoundException {
+    static ByteBuffer encodeGame(PackedBoard board, SudokuLevel level, MoveJournal journal) {
+        ByteBuffer buffer = ByteBuffer.allocate(BoardCodec.recordSize(board.getSize()) + journal.encodedSize());
+        BoardCodec.encode(buffer, board, level);
+        journal.encode(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Shows an open dialog and loads the chosen file into the given game.
+     *
+     * @param model The game to load into.
+     * @return {@code true} if a game was loaded, {@code false} if the dialog was cancelled.
+     * @throws IOException If an I/O error occurs or the file is not a valid save.
+     */
+    public static boolean loadGame(SudokuModel model) throws IOException {
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("Ser Files", "*.ser")
-        );
+                new FileChooser.ExtensionFilter("Sudoku Files", SAVE_EXTENSION, LEGACY_EXTENSION));
         File file = fileChooser.showOpenDialog(null);
-        ObjectInputStream objectInputStream = null;
-        SelectedTile[][] loadTiles = new SelectedTile[GRID_SIZE][GRID_SIZE];
-        try {
-            FileInputStream fileInputStream = new FileInputStream(file);
-            objectInputStream = new ObjectInputStream(fileInputStream);
+        if (file == null) return false;
+        loadGame(model, file.toPath());
+        return true;
+    }
 
-            loadTiles = (SelectedTile[][]) objectInputStream.readObject();
+    /**
+     * Loads a saved game from a file into the given game.
+     * <p>
+     * Both the binary save format and the serialized {@code SelectedTile[][]} files of older versions are accepted.
+     * Saves without a move history load with an empty one.
+     * </p>
+     *
+     * @param model The game to load into.
+     * @param file The file to read from.
+     * @throws IOException If an I/O error occurs or the file is not a valid save.
+     */
+    public static void loadGame(SudokuModel model, Path file) throws IOException {
+        long start = System.nanoTime();
+        GameIoEvent event = new GameIoEvent();
+        event.begin();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_SAVE_SIZE));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the record is complete or the file ends
+            }
         }
-        catch (ClassNotFoundException e) {
-            throw e;
+        buffer.flip();
+        long bytes = buffer.remaining();
+        if (buffer.remaining() >= 2 && buffer.getShort(0) == SERIALIZATION_MAGIC) {
+            bytes = Files.size(file); // read again in full by the deserialization
+            try {
+                model.loadBoard(deserializeFromFile(file.toFile()));
+            } catch (ClassNotFoundException e) {
+                throw new InvalidClassException(e.getMessage());
+            }
+        } else {
+            decodeGame(model, buffer);
         }
-        finally {
-            objectInputStream.close();
+        LOAD_NANOS.record(System.nanoTime() - start);
+        BYTES_READ.add(bytes);
+        finish(event, "load", file, bytes);
+    }
+
+    /**
+     * Commits the Flight Recorder event of a save or load, if it is being recorded.
+     */
+    private static void finish(GameIoEvent event, String operation, Path file, long bytes) {
+        if (!event.shouldCommit()) return;
+        event.operation = operation;
+        event.path = file.toString();
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    /**
+     * Encodes a game in the binary save format, the same bytes {@link #saveGame(SudokuModel, Path)} writes.
+     *
+     * @param model The game to encode.
+     * @return A new array holding the save.
+     */
+    public static byte[] encodeGame(SudokuModel model) {
+        ByteBuffer buffer = encodeGame(model.getPackedBoard(), model.getLevel(), model.getJournal());
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Loads a game in the binary save format into the given game.
+     * <p>
+     * The move history is read into the journal the model already has, so it keeps its capacity; a save without
+     * a move history clears it. Nothing in the model changes if the save is not valid.
+     * </p>
+     *
+     * @param model The game to load into.
+     * @param buffer The save, from its position to its limit.
+     * @throws IOException If the bytes are not a valid save.
+     */
+    public static void decodeGame(SudokuModel model, ByteBuffer buffer) throws IOException {
+        PackedBoard board = new PackedBoard(BoardCodec.peekSize(buffer));
+        SudokuLevel level = BoardCodec.decode(buffer, board);
+        MoveJournal journal = model.getJournal();
+        if (buffer.hasRemaining()) journal.decode(buffer, board.getCells(), board.getSize().getGridSize());
+        else journal.clear();
+        model.loadBoard(board, level, journal);
+    }
+
+    /**
+     * Serializes a 2D array of {@link SelectedTile} objects to the given file, without showing a dialog.
+     *
+     * @param data The 2D array of {@code SelectedTile} objects to be serialized.
+     * @param file The file to write to.
+     * @throws IOException If an I/O error occurs while writing to the file.
+     * @deprecated Saves are written in the binary format by {@link #saveGame(SudokuModel, Path)}; this format is
+     *             only kept so older saves can be produced for compatibility checks.
+     */
+    @Deprecated
+    public static void serializeToFile(SelectedTile[][] data, File file) throws IOException {
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(file))) {
+            objectOutputStream.writeObject(data);
         }
+    }
 
-        return loadTiles;
+    /**
+     * Deserializes a 2D array of {@link SelectedTile} objects from the given file, without showing a dialog.
+     * This is the save format of older versions of the application.
+     *
+     * @param file The file to read from.
+     * @return A 2D array of {@code SelectedTile} objects representing the deserialized Sudoku board.
+     * @throws IOException If an I/O error occurs while reading from the file.
+     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     */
+    public static SelectedTile[][] deserializeFromFile(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(file))) {
+            return (SelectedTile[][]) objectInputStream.readObject();
+        }
     }
+
     // Private constructor to prevent instantiation of utility class
     private SudokuIO() {}
 }
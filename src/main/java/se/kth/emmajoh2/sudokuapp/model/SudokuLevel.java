@@ -13,6 +13,8 @@ import java.io.Serializable;
  *     <li>{@code MEDIUM}: A moderate number of cells are pre-filled, providing a balanced challenge.</li>
  *     <li>{@code HARD}: Few cells are pre-filled, making the puzzle more difficult to solve.</li>
  * </ul>
+ * Puzzles generated with {@link MatrixGenerator#generateRatedPuzzle} are labelled by the techniques they need
+ * instead (see {@link DifficultyRater}).
  * This enum implements {@link Serializable}, which allows the difficulty level to be saved and restored when the game is serialized.
  */
 public enum SudokuLevel implements Serializable {
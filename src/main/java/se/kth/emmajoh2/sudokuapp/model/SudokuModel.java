@@ -1,44 +1,240 @@
 package se.kth.emmajoh2.sudokuapp.model;
 
-import java.util.Random;
-import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.GRID_SIZE;
-import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.SECTION_SIZE;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The {@code SudokuModel} class represents the underlying data structure for a Sudoku puzzle.
  * <p>
  * It manages the Sudoku grid, the game state, and supports operations like initialization, adding numbers,
- * checking for correctness, providing hints, and resetting moves. The Sudoku board is represented as a
- * 2D array of {@link SelectedTile} objects.
+ * checking for correctness, providing hints, and resetting moves. The Sudoku board is stored in a
+ * {@link PackedBoard}, which is reused from game to game; {@link SelectedTile} objects are only created
+ * when the board is exported for saving.
+ * <p>
+ * The model keeps count of the filled, correct and wrong cells as moves are made, so the game state queries
+ * ({@link #gameOver()}, {@link #allTilesCorrect()}, {@link #placedTilesCorrect()}) do not scan the board.
+ * Every change to a cell's current value must go through {@link #setCell(int, int)}, and every load of a
+ * whole board must end with {@link #recount()}.
+ * </p>
+ * <p>
+ * Registered {@link BoardListener}s are told which cell a move changed, so a view only has to redraw that cell.
+ * </p>
+ * <p>
+ * The board can be any {@link BoardSize}. A new board is only allocated when a game of another size is started
+ * or loaded; listeners should check {@link #getBoardSize()} when they are told the whole board changed.
+ * </p>
+ * <p>
+ * The moves of the player, hints and resets are recorded in a {@link MoveJournal}, so they can be undone and
+ * redone with {@link #undo()} and {@link #redo()}. The journal is cleared when a new game starts and is saved
+ * together with the board.
+ * </p>
+ * <p>
+ * The model also keeps the candidates of every cell, the digits none of its peers holds, for pencil marks and
+ * hints. Every row, column and section counts how many of its cells hold each digit, so a move only updates the
+ * counts of the three units of the cell and recomputes the candidates of the cell and its peers (20 on a 9x9
+ * board); only loading a whole board computes them from scratch.
+ * </p>
+ * <p>
+ * The same counts tell where the rules are broken: a unit where a digit occurs more than once is a conflict.
+ * The number of such conflicts is kept as the counts change, so {@link #hasConflicts()} and
+ * {@link #isConflict(int, int)} answer without the solution and without scanning the board. They work for any
+ * board, also one whose stored solution is not the one the player is heading for.
+ * </p>
  */
 public class SudokuModel {
-    private final SelectedTile[][] sudokuBoard;
+    private PackedBoard sudokuBoard;
+    private int gridSize;
+    private PuzzleSource puzzleSource;
     private SudokuLevel level;
     private int pressedButtonNumber;
+    private int givenCount;
+    private int filledCount;
+    private int correctCount;
+    private int wrongCount;
+    private final List<BoardListener> listeners = new CopyOnWriteArrayList<>();
+    private HintEngine hintEngine; // created on the first hint, and again when the board size changes
+    private int[] hintGrid;
+    private Hint lastHint;
+    private MoveJournal journal;
+
+    // the candidates, updated by setCell and rebuilt by recount
+    private int[][] unitsOf;
+    private int[][] peersOf;
+    private int allDigits;
+    private int[] digitCounts;  // [unit * (gridSize + 1) + digit]: the cells of the unit that hold the digit
+    private int[] unitDigits;   // per unit: bit d - 1 is set while a cell of the unit holds d
+    private int[] candidates;   // per cell: the digits no peer holds, 0 for a filled cell
+    private int conflictCount;  // the units and digits where the digit occurs more than once
+
+    // the texts of the tiles, so getTile() does not create a new string per call
+    private static final String[] TILE_TEXTS = new String[BoardSize.TWENTY_FIVE.getGridSize() + 1];
+    static {
+        TILE_TEXTS[0] = "";
+        for (int value = 1; value < TILE_TEXTS.length; value++) TILE_TEXTS[value] = String.valueOf(value);
+    }
 
 
     /**
      * Constructs a new {@code SudokuModel} with a default difficulty level of {@code MEDIUM}.
-     * Initializes the game board by generating a new Sudoku puzzle based on the default level.
+     * Initializes the game board with a puzzle from the shared {@link PuzzlePool}.
      */
     public SudokuModel() {
+        this(PuzzlePool.getDefault());
+    }
+
+    /**
+     * Constructs a new {@code SudokuModel} with a default difficulty level of {@code MEDIUM}, taking its
+     * puzzles from the given source.
+     *
+     * @param puzzleSource The source new games take their puzzles from, for example a {@link PuzzlePool}
+     *                     or a {@link PuzzleArchive}.
+     */
+    public SudokuModel(PuzzleSource puzzleSource) {
+        this(puzzleSource, MoveJournal.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@code SudokuModel} with a default difficulty level of {@code MEDIUM}, taking its
+     * puzzles from the given source and keeping at most the given number of moves for undo.
+     * <p>
+     * The move history takes 4 bytes per move, so a server holding many games at once keeps it short.
+     * </p>
+     *
+     * @param puzzleSource The source new games take their puzzles from.
+     * @param undoLimit The number of moves that can be undone, rounded up to a power of two.
+     */
+    public SudokuModel(PuzzleSource puzzleSource, int undoLimit) {
+        this(puzzleSource, undoLimit, BoardSize.NINE, SudokuLevel.MEDIUM);
+    }
+
+    /**
+     * Constructs a new {@code SudokuModel} that starts with a game of the given size and difficulty level, taking
+     * its puzzles from the given source and keeping at most the given number of moves for undo.
+     *
+     * @param puzzleSource The source new games take their puzzles from.
+     * @param undoLimit The number of moves that can be undone, rounded up to a power of two.
+     * @param size The size of the board of the first game.
+     * @param level The difficulty level of the first game.
+     * @throws java.util.NoSuchElementException If the puzzle source has no puzzle of that size and level.
+     */
+    public SudokuModel(PuzzleSource puzzleSource, int undoLimit, BoardSize size, SudokuLevel level) {
+        this(puzzleSource, new MoveJournal(undoLimit));
+        initGame(size, level);
+    }
+
+    /**
+     * Constructs a model with an empty 9x9 board and no game, keeping at most the given number of moves for undo.
+     */
+    private SudokuModel(PuzzleSource puzzleSource, MoveJournal journal) {
+        this.puzzleSource = puzzleSource;
+        this.journal = journal;
         this.pressedButtonNumber = 0;
-        this.sudokuBoard = new SelectedTile[GRID_SIZE][GRID_SIZE];
+        this.sudokuBoard = new PackedBoard();
+        this.gridSize = sudokuBoard.getSize().getGridSize();
+        allocateCandidates(sudokuBoard.getSize());
         this.level = SudokuLevel.MEDIUM;
-        initGame(level);
+        recount();
+    }
+
+    /**
+     * Creates a {@code SudokuModel} without starting a game, for a game that is about to be loaded into it, for
+     * example with {@link SudokuIO#decodeGame(SudokuModel, java.nio.ByteBuffer)}. Unlike the constructors it
+     * does not take a puzzle from the source; the board is empty until a game is loaded.
+     *
+     * @param puzzleSource The source new games take their puzzles from.
+     * @param undoLimit The number of moves that can be undone, rounded up to a power of two.
+     * @return The new model, with an empty 9x9 board.
+     */
+    public static SudokuModel withoutGame(PuzzleSource puzzleSource, int undoLimit) {
+        return new SudokuModel(puzzleSource, new MoveJournal(undoLimit));
     }
 
     /**
      * Loads a previously saved Sudoku board into the current game model.
      *
      * @param loadedTiles The 2D array of {@link SelectedTile} objects representing the saved Sudoku board.
+     * @throws IllegalArgumentException If the array does not have the rows of one of the {@link BoardSize}s.
      */
     public void loadBoard(SelectedTile[][] loadedTiles) {
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                sudokuBoard[row][col] = loadedTiles[row][col];
+        resize(BoardSize.ofGridSize(loadedTiles.length));
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                SelectedTile tile = loadedTiles[row][col];
+                sudokuBoard.set(row * gridSize + col, tile.getCurrentTileNb(), tile.getSolutionTile(),
+                        tile.isInitialTile());
             }
         }
+        journal.clear();
+        recount();
+        fireBoardChanged();
+    }
+
+    /**
+     * Loads a board read from a save file into the current game model, together with its move history.
+     *
+     * @param loadedBoard The board to copy into the model.
+     * @param level The difficulty level of the saved game.
+     * @param moves The moves that can be undone and redone from the loaded board. The model keeps it.
+     */
+    void loadBoard(PackedBoard loadedBoard, SudokuLevel level, MoveJournal moves) {
+        this.level = level;
+        this.journal = moves;
+        resize(loadedBoard.getSize());
+        sudokuBoard.copyFrom(loadedBoard);
+        recount();
+        fireBoardChanged();
+    }
+
+    /**
+     * Returns the packed board of the current game, for saving.
+     *
+     * @return The {@link PackedBoard} the model works on (not a copy).
+     */
+    PackedBoard getPackedBoard() {
+        return sudokuBoard;
+    }
+
+    /**
+     * Returns the move history of the current game, for saving.
+     *
+     * @return The {@link MoveJournal} the model records to (not a copy).
+     */
+    MoveJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns an estimate of the heap memory the game takes, in bytes: the board, the move history, the working
+     * arrays of the hint engine once a hint has been asked for, and the objects around them.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long estimateSize() {
+        int cells = sudokuBoard.getCells();
+        long size = 256 + 64 + 8L * ((cells + 4) / 5); // the model, and the board at five or more cells per word
+        size += 48 + 4L * journal.getCapacity();
+        size += 64 + 4L * (cells + 3 * gridSize * (gridSize + 2)); // the candidates and the unit counts
+        if (hintEngine != null) size += 160 + 4L * (3 * cells + gridSize);
+        return size;
+    }
+
+    /**
+     * Returns the size of the current board.
+     *
+     * @return The {@link BoardSize} of the current game.
+     */
+    public BoardSize getBoardSize() {
+        return sudokuBoard.getSize();
+    }
+
+    /**
+     * Returns the difficulty level of the current game.
+     *
+     * @return The {@link SudokuLevel} of the current game.
+     */
+    public SudokuLevel getLevel() {
+        return level;
     }
 
     public void setPressedButtonNumber(int pressedButtonNumber) {
@@ -46,45 +242,115 @@ public class SudokuModel {
     }
 
     /**
-     * Returns the current Sudoku board.
+     * Returns a copy of the current Sudoku board.
+     * <p>
+     * The tiles are created from the packed board on each call, so changing them does not affect the game.
+     * </p>
      *
      * @return A 2D array of {@link SelectedTile} objects representing the current Sudoku board.
      */
     public SelectedTile[][] getSudokuBoard() {
-        return sudokuBoard;
+        SelectedTile[][] tiles = new SelectedTile[gridSize][gridSize];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                int cell = row * gridSize + col;
+                tiles[row][col] = new SelectedTile(sudokuBoard.getCurrent(cell), sudokuBoard.getSolution(cell),
+                        sudokuBoard.isGiven(cell) ? 0 : 1);
+            }
+        }
+        return tiles;
     }
 
     /**
-     * Initializes a new game based on the specified difficulty level.
+     * Initializes a new game of the current board size based on the specified difficulty level.
+     * <p>
+     * The puzzle is taken from the puzzle source, so this normally does not wait for a puzzle to be generated.
+     * </p>
      *
      * @param level The difficulty level of the Sudoku puzzle (EASY, MEDIUM, HARD).
+     * @throws java.util.NoSuchElementException If the puzzle source has no puzzle of that level.
      */
     public void initGame(SudokuLevel level) {
-        this.level = level;
-        int[][][] allMatrixes = MatrixGenerator.generateSudokuMatrix(level);
+        initGame(getBoardSize(), level);
+    }
 
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                sudokuBoard[row][col] = new SelectedTile(allMatrixes[row][col][0],
-                                                        allMatrixes[row][col][1],
-                                                        allMatrixes[row][col][2]);
-            }
-        }
+    /**
+     * Initializes a new game of the given board size and difficulty level.
+     *
+     * @param size The size of the board.
+     * @param level The difficulty level of the Sudoku puzzle (EASY, MEDIUM, HARD).
+     * @throws java.util.NoSuchElementException If the puzzle source has no puzzle of that size and level.
+     */
+    public void initGame(BoardSize size, SudokuLevel level) {
+        loadPuzzle(puzzleSource.take(size, level));
+    }
+
+    /**
+     * Starts a new game with the given puzzle, for example one picked from a {@link PuzzleArchive}.
+     *
+     * @param puzzle The puzzle to play.
+     */
+    public void loadPuzzle(Puzzle puzzle) {
+        this.level = puzzle.getLevel();
+        resize(puzzle.getSize());
+        sudokuBoard.load(puzzle);
+        journal.clear();
+        recount();
+        fireBoardChanged();
+    }
+
+    /**
+     * Registers a listener that is notified of every change to the board.
+     *
+     * @param listener The listener to add.
+     */
+    public void addBoardListener(BoardListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addBoardListener(BoardListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeBoardListener(BoardListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Changes where new games take their puzzles from. The current game is not changed.
+     *
+     * @param puzzleSource The source new games take their puzzles from.
+     */
+    public void setPuzzleSource(PuzzleSource puzzleSource) {
+        this.puzzleSource = puzzleSource;
+    }
+
+    /**
+     * Returns the source new games take their puzzles from.
+     *
+     * @return The current puzzle source.
+     */
+    public PuzzleSource getPuzzleSource() {
+        return puzzleSource;
     }
 
     /**
      * Initializes a new game using the current difficulty level.
      */
     public void initGame() {
-        int[][][] allMatrixes = MatrixGenerator.generateSudokuMatrix(level);
+        initGame(level);
+    }
 
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                sudokuBoard[row][col] = new SelectedTile(allMatrixes[row][col][0],
-                        allMatrixes[row][col][1],
-                        allMatrixes[row][col][2]);
-            }
-        }
+    /**
+     * Returns the current value of a tile at the specified position.
+     *
+     * @param row The row of the tile.
+     * @param col The column of the tile.
+     * @return The number on the tile, or 0 if the tile is empty.
+     */
+    public int getTileValue(int row, int col) {
+        return sudokuBoard.getCurrent(row * gridSize + col);
     }
 
     /**
@@ -95,12 +361,29 @@ public class SudokuModel {
      * @return A string representing the current number on the tile, or an empty string if the tile is empty.
      */
     public String getTile(int row, int col) {
-        int tempInt = sudokuBoard[row][col].getCurrentTileNb();
-        String s = new String();
-        if (tempInt != 0) {
-            s = String.valueOf(tempInt);
-        }
-        return s;
+        return TILE_TEXTS[sudokuBoard.getCurrent(row * gridSize + col)];
+    }
+
+    /**
+     * Returns the candidates of a tile: the numbers that none of the other tiles in its row, column and section
+     * holds, for showing pencil marks.
+     *
+     * @param row The row of the tile.
+     * @param col The column of the tile.
+     * @return A bitmask where bit {@code n - 1} is set if the number {@code n} is a candidate, or 0 if the tile
+     *         holds a number.
+     */
+    public int getCandidates(int row, int col) {
+        return candidates[row * gridSize + col];
+    }
+
+    /**
+     * Returns the candidates of every cell, for the hint and rating engines.
+     *
+     * @return The live candidate masks in row-major order (not a copy); they must not be changed.
+     */
+    int[] getCandidateMasks() {
+        return candidates;
     }
 
     /**
@@ -111,7 +394,7 @@ public class SudokuModel {
      * @return {@code true} if the tile is an initial tile, {@code false} otherwise.
      */
     public boolean isInitTile(int row, int col) {
-        return sudokuBoard[row][col].isInitialTile();
+        return sudokuBoard.isGiven(row * gridSize + col);
     }
 
     /**
@@ -121,26 +404,120 @@ public class SudokuModel {
      * @param col The column of the tile.
      */
     public void addNumber(int row, int col) {
-        sudokuBoard[row][col].setCurrentTile(pressedButtonNumber);
+        addNumber(row, col, pressedButtonNumber);
+    }
+
+    /**
+     * Adds the given number to the specified tile, provided the tile is not an initial tile. Unlike
+     * {@link #addNumber(int, int)} it does not use the number of the pressed button, so callers that are not
+     * driven by the number buttons, such as a server, do not share that state.
+     *
+     * @param row The row of the tile.
+     * @param col The column of the tile.
+     * @param number The number to enter, 0 to clear the tile.
+     */
+    public void addNumber(int row, int col, int number) {
+        play(row * gridSize + col, number);
     }
 
     /**
-     * Adds a hint by randomly selecting a tile that is incorrect or empty and setting it to its correct value.
+     * Takes back the last move, hint or reset.
      *
-     * @return {@code true} if a hint was successfully added, {@code false} otherwise.
+     * @return {@code true} if a move was undone, {@code false} if there was nothing to undo.
+     */
+    public boolean undo() {
+        if (!journal.canUndo()) return false;
+        int move;
+        do {
+            move = journal.undo();
+            setCell(MoveJournal.cellOf(move), MoveJournal.oldValueOf(move));
+        } while (MoveJournal.isGrouped(move) && journal.canUndo());
+        return true;
+    }
+
+    /**
+     * Makes the last undone move, hint or reset again.
+     *
+     * @return {@code true} if a move was redone, {@code false} if there was nothing to redo.
+     */
+    public boolean redo() {
+        if (!journal.canRedo()) return false;
+        do {
+            int move = journal.redo();
+            setCell(MoveJournal.cellOf(move), MoveJournal.newValueOf(move));
+        } while (journal.canRedo() && MoveJournal.isGrouped(journal.peekRedo()));
+        return true;
+    }
+
+    /**
+     * Checks if there is a move to undo.
+     *
+     * @return {@code true} if {@link #undo()} would change the board.
+     */
+    public boolean canUndo() {
+        return journal.canUndo();
+    }
+
+    /**
+     * Checks if there is an undone move to redo.
+     *
+     * @return {@code true} if {@link #redo()} would change the board.
+     */
+    public boolean canRedo() {
+        return journal.canRedo();
+    }
+
+    /**
+     * Adds a hint by filling in the next logical step.
+     * <p>
+     * A tile holding a wrong number is corrected first, since no logical step can be trusted while one is on the
+     * board. Otherwise the {@link HintEngine} finds the next tile that can be deduced and the technique that
+     * justifies it. If no known technique applies, the first empty tile is filled in from the solution.
+     * The hint that was placed is available from {@link #getLastHint()}.
+     * </p>
+     *
+     * @return {@code true} if a hint was successfully added, {@code false} if the board is already solved.
      */
     public boolean addhint() {
-        Random random = new Random();
-        int randRow, randCol;
-        while(true) {
-            randRow = random.nextInt(GRID_SIZE);
-            randCol = random.nextInt(GRID_SIZE);
-            if ((!sudokuBoard[randRow][randCol].isCorrectlyPlaced())) {
-                sudokuBoard[randRow][randCol].setCurrentTile(sudokuBoard[randRow][randCol].getSolutionTile());
-                // TODO: Debugging System.out.println("Row:" + randRow + ", Col:" + randCol);
-                return true;
+        lastHint = null;
+        int cells = sudokuBoard.getCells();
+        if (correctCount == cells) return false;
+        if (wrongCount > 0) {
+            for (int cell = 0; cell < cells; cell++) {
+                if (sudokuBoard.getCurrent(cell) != 0 && !sudokuBoard.isCorrect(cell)) return revealCell(cell);
             }
         }
+        if (hintEngine == null || hintEngine.getBoardSize() != getBoardSize()) {
+            hintEngine = new HintEngine(getBoardSize());
+            hintGrid = new int[cells];
+        }
+        for (int cell = 0; cell < cells; cell++) hintGrid[cell] = sudokuBoard.getCurrent(cell);
+        Hint hint = hintEngine.findHint(hintGrid, candidates);
+        if (hint != null) {
+            play(hint.getRow() * gridSize + hint.getCol(), hint.getValue());
+            lastHint = hint;
+            return true;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (sudokuBoard.getCurrent(cell) == 0) return revealCell(cell);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the hint placed by the last call to {@link #addhint()}.
+     *
+     * @return The last hint, or {@code null} if the last call did not place one.
+     */
+    public Hint getLastHint() {
+        return lastHint;
+    }
+
+    private boolean revealCell(int cell) {
+        int solution = sudokuBoard.getSolution(cell);
+        play(cell, solution);
+        lastHint = new Hint(cell / gridSize, cell % gridSize, solution, null);
+        return true;
     }
 
     /**
@@ -149,12 +526,7 @@ public class SudokuModel {
      * @return {@code true} if all tiles are correct, {@code false} otherwise.
      */
     public boolean allTilesCorrect() {
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                if (!sudokuBoard[row][col].isCorrectlyPlaced()) return false;
-            }
-        }
-        return true;
+        return correctCount == sudokuBoard.getCells();
     }
 
     /**
@@ -163,12 +535,7 @@ public class SudokuModel {
      * @return {@code true} if all placed tiles are correct, {@code false} otherwise.
      */
     public boolean placedTilesCorrect() {
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                if (!sudokuBoard[row][col].isCorrectlyPlaced() && (sudokuBoard[row][col].getCurrentTileNb() != 0)) return false;
-            }
-        }
-        return true;
+        return wrongCount == 0;
     }
 
     /**
@@ -176,23 +543,241 @@ public class SudokuModel {
      * @return {@code true} if all tiles have numbers, {@code false} otherwise.
      */
     public boolean gameOver() {
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                if (sudokuBoard[row][col].getCurrentTileNb() == 0) return false;
-            }
+        return filledCount == sudokuBoard.getCells();
+    }
+
+    /**
+     * Returns the number of tiles that hold a number, pre-filled or entered.
+     *
+     * @return The number of non-empty tiles.
+     */
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    /**
+     * Returns the number of tiles that hold their correct number.
+     *
+     * @return The number of correct tiles, including the pre-filled ones.
+     */
+    public int getCorrectCount() {
+        return correctCount;
+    }
+
+    /**
+     * Returns the number of tiles that hold a wrong number.
+     *
+     * @return The number of non-empty tiles that do not match the solution.
+     */
+    public int getWrongCount() {
+        return wrongCount;
+    }
+
+    /**
+     * Checks if a number occurs more than once in a row, column or section. Unlike {@link #placedTilesCorrect()}
+     * this does not depend on the solution.
+     *
+     * @return {@code true} if the board breaks the rules.
+     */
+    public boolean hasConflicts() {
+        return conflictCount > 0;
+    }
+
+    /**
+     * Returns the number of conflicts on the board: for every row, column and section, the numbers that occur in
+     * it more than once.
+     *
+     * @return The number of conflicts, 0 if the board follows the rules.
+     */
+    public int getConflictCount() {
+        return conflictCount;
+    }
+
+    /**
+     * Checks if a tile holds a number that another tile in its row, column or section also holds.
+     *
+     * @param row The row of the tile.
+     * @param col The column of the tile.
+     * @return {@code true} if the tile is part of a conflict, {@code false} if it is empty or has no conflict.
+     */
+    public boolean isConflict(int row, int col) {
+        int cell = row * gridSize + col;
+        int value = sudokuBoard.getCurrent(cell);
+        if (value == 0 || conflictCount == 0) return false;
+        for (int unit : unitsOf[cell]) {
+            if (digitCounts[unit * (gridSize + 1) + value] > 1) return true;
         }
-        return true;
+        return false;
     }
 
     /**
      * Resets all non-initial tiles on the board, clearing the numbers entered by the player.
+     * <p>
+     * The reset can be undone as one move. If it clears more tiles than the move history holds, the history is
+     * cleared instead, since undoing only part of the reset would leave a board the player never saw.
+     * </p>
      */
     public void resetMoves() {
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                sudokuBoard[row][col].resetTile();
+        int cleared = filledCount - givenCount;
+        if (cleared > journal.getCapacity()) {
+            journal.clear();
+        } else {
+            int grouped = 0;
+            for (int cell = 0; cell < sudokuBoard.getCells(); cell++) {
+                int value = sudokuBoard.getCurrent(cell);
+                if (value == 0 || sudokuBoard.isGiven(cell)) continue;
+                journal.record(MoveJournal.pack(cell, value, 0) | grouped);
+                grouped = MoveJournal.GROUPED; // the cells after the first are undone together with it
             }
         }
+        sudokuBoard.resetMoves();
+        filledCount = givenCount;
+        correctCount = givenCount;
+        wrongCount = 0;
+        rebuildCandidates();
+        fireBoardChanged();
+    }
+
+    /**
+     * Replays a move read back from an autosave log, recording it in the journal like a move of the player.
+     *
+     * @param cell The index of the cell.
+     * @param value The new value of the cell, 0 to clear it.
+     * @return {@code false} if the cell is pre-filled.
+     * @see AutosaveService#recover()
+     */
+    boolean replayMove(int cell, int value) {
+        return play(cell, value);
+    }
+
+    /**
+     * Sets the current value of a cell like {@link #setCell(int, int)} and records the change in the journal.
+     */
+    private boolean play(int cell, int value) {
+        int oldValue = sudokuBoard.getCurrent(cell);
+        if (!setCell(cell, value)) return false;
+        if (oldValue != value) journal.record(MoveJournal.pack(cell, oldValue, value));
+        return true;
+    }
+
+    /**
+     * Sets the current value of a cell and updates the counters, unless the cell is pre-filled.
+     *
+     * @param cell The index of the cell.
+     * @param value The new value, 0 to clear the cell.
+     * @return {@code true} if the value was set, {@code false} if the cell is pre-filled.
+     */
+    private boolean setCell(int cell, int value) {
+        int oldValue = sudokuBoard.getCurrent(cell);
+        if (!sudokuBoard.setCurrent(cell, value)) return false;
+        int solution = sudokuBoard.getSolution(cell);
+        count(oldValue, solution, -1);
+        count(value, solution, 1);
+        if (oldValue != value) {
+            updateCandidates(cell, oldValue, value);
+            fireCellChanged(cell);
+        }
+        return true;
+    }
+
+    /**
+     * Updates the digit counts and the conflicts of the units of a cell after its value changed, and the candidates
+     * of the cell and its peers, the only cells whose candidates the change can affect.
+     */
+    private void updateCandidates(int cell, int oldValue, int value) {
+        for (int unit : unitsOf[cell]) {
+            int counts = unit * (gridSize + 1);
+            if (oldValue != 0) {
+                int left = --digitCounts[counts + oldValue];
+                if (left == 0) unitDigits[unit] &= ~(1 << (oldValue - 1));
+                else if (left == 1) conflictCount--;
+            }
+            if (value != 0) {
+                int before = digitCounts[counts + value]++;
+                if (before == 0) unitDigits[unit] |= 1 << (value - 1);
+                else if (before == 1) conflictCount++;
+            }
+        }
+        candidates[cell] = candidatesOf(cell);
+        for (int peer : peersOf[cell]) candidates[peer] = candidatesOf(peer);
+    }
+
+    private int candidatesOf(int cell) {
+        if (sudokuBoard.getCurrent(cell) != 0) return 0;
+        int[] units = unitsOf[cell];
+        return allDigits & ~(unitDigits[units[0]] | unitDigits[units[1]] | unitDigits[units[2]]);
+    }
+
+    /**
+     * Computes the digit counts, the conflicts and the candidates from scratch after the whole board has been
+     * replaced.
+     */
+    private void rebuildCandidates() {
+        Arrays.fill(digitCounts, 0);
+        Arrays.fill(unitDigits, 0);
+        conflictCount = 0;
+        for (int cell = 0; cell < candidates.length; cell++) {
+            int value = sudokuBoard.getCurrent(cell);
+            if (value == 0) continue;
+            for (int unit : unitsOf[cell]) {
+                if (digitCounts[unit * (gridSize + 1) + value]++ == 1) conflictCount++;
+                unitDigits[unit] |= 1 << (value - 1);
+            }
+        }
+        for (int cell = 0; cell < candidates.length; cell++) candidates[cell] = candidatesOf(cell);
+    }
+
+    /**
+     * Allocates the candidate arrays for a board size.
+     */
+    private void allocateCandidates(BoardSize size) {
+        int units = 3 * size.getGridSize();
+        unitsOf = size.unitsOf();
+        peersOf = size.peersOf();
+        allDigits = size.allDigits();
+        digitCounts = new int[units * (size.getGridSize() + 1)];
+        unitDigits = new int[units];
+        candidates = new int[size.getCells()];
+    }
+
+    /**
+     * Replaces the board with an empty one of the given size, unless it already has that size.
+     */
+    private void resize(BoardSize size) {
+        if (sudokuBoard.getSize() == size) return;
+        sudokuBoard = new PackedBoard(size);
+        gridSize = size.getGridSize();
+        allocateCandidates(size);
+    }
+
+    private void fireCellChanged(int cell) {
+        for (BoardListener listener : listeners) listener.cellChanged(cell / gridSize, cell % gridSize);
+    }
+
+    private void fireBoardChanged() {
+        for (BoardListener listener : listeners) listener.boardChanged();
+    }
+
+    private void count(int value, int solution, int delta) {
+        if (value == 0) return;
+        filledCount += delta;
+        if (value == solution) correctCount += delta;
+        else wrongCount += delta;
+    }
+
+    /**
+     * Recounts the counters and the candidates from scratch after the whole board has been replaced.
+     */
+    private void recount() {
+        givenCount = 0;
+        filledCount = 0;
+        correctCount = 0;
+        wrongCount = 0;
+        for (int cell = 0; cell < sudokuBoard.getCells(); cell++) {
+            if (sudokuBoard.isGiven(cell)) givenCount++;
+            count(sudokuBoard.getCurrent(cell), sudokuBoard.getSolution(cell), 1);
+        }
+        rebuildCandidates();
     }
 
     /**
@@ -219,28 +804,32 @@ public class SudokuModel {
      * | 0 0 8 | 1 0 0 | 3 7 6 |
      * -------------------------
      * @return A string that visually represents the Sudoku board, with section
-     *         dividers between every 3x3 block (or customizable depending on the
-     *         `GRID_SIZE` and `SECTION_SIZE`).
+     *         dividers between every section (3x3 on a 9x9 board, 4x4 on a 16x16 board
+     *         and 5x5 on a 25x25 board). On the larger boards every number takes two characters.
      */
     @Override
     public String toString() {
         StringBuilder info = new StringBuilder();
+        int sectionSize = getBoardSize().getSectionSize();
+        int width = gridSize < 10 ? 1 : 2;
+        String divider = "-".repeat(gridSize * (width + 1) + 2 * sectionSize + 1);
         int rowCounter = 0, colCounter = 0;
-        info.append("-------------------------").append('\n');
-        for (int row = 0; row < GRID_SIZE; row++) {
+        info.append(divider).append('\n');
+        for (int row = 0; row < gridSize; row++) {
             info.append("|");
             rowCounter++;
-            for (int col = 0; col < GRID_SIZE; col++) {
+            for (int col = 0; col < gridSize; col++) {
                 colCounter++;
-                info.append(" ").append(sudokuBoard[row][col].toString());
-                if (colCounter == SECTION_SIZE) {
+                int value = sudokuBoard.getCurrent(row * gridSize + col);
+                info.append(value < 10 && width == 2 ? "  " : " ").append(value);
+                if (colCounter == sectionSize) {
                     info.append(" |");
                     colCounter = 0;
                 }
             }
             info.append('\n');
-            if (rowCounter == SECTION_SIZE) {
-                info.append("-------------------------").append('\n');
+            if (rowCounter == sectionSize) {
+                info.append(divider).append('\n');
                 rowCounter = 0;
             }
         }
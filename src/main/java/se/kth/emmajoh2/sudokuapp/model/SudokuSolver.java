@@ -0,0 +1,368 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import se.kth.emmajoh2.sudokuapp.diagnostics.SolveEvent;
+
+/**
+ * The {@code SudokuSolver} class solves and counts the solutions of a Sudoku grid of any {@link BoardSize}.
+ * <p>
+ * The solver keeps one candidate bitmask per row, column and section (bit {@code d - 1} is set when the
+ * digit {@code d} is used in that unit) and always continues with the empty cell that has the fewest
+ * candidates left. Cells with a single candidate are placed directly without branching. On 16x16 and 25x25
+ * boards, so are digits that only fit in one cell of a row, column or section (hidden singles): without them
+ * the search on a hard 16x16 puzzle branches about a hundred times more often. On a 9x9 board the extra scan
+ * costs more than it saves, so it is skipped.
+ * </p>
+ * <p>
+ * The empty cells are kept in one array where the first {@code filled} entries are the cells that have
+ * been placed so far. That prefix doubles as the undo trail: backtracking just pops cells off the end of it
+ * and clears their bits, so the grid is never copied. All working arrays are allocated once in the
+ * constructor, which means a solver can be reused for any number of grids without allocating.
+ * </p>
+ * The grid is given as a flat array in row-major order ({@code int[81]} for a 9x9 board), with 0 for empty cells.
+ * A solver instance is not thread-safe; use one instance per thread.
+ *
+ * @see SolverBackend#BITMASK
+ */
+public class SudokuSolver implements SolverEngine {
+    private static final int NONE = -1;
+    private static final int DEAD_END = -2;
+
+    private final BoardSize boardSize;
+    private final int cells;
+    private final int gridSize;
+    private final int allDigits;
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int[] sectionOf;
+    private final int[][] unitCells;
+    private final boolean hiddenSingles;
+
+    private final int[] rowMask;
+    private final int[] colMask;
+    private final int[] sectionMask;
+    private final int[] values;
+    private final int[] solution;
+    private final int[] emptyCells;
+    private int emptyCount;
+    private int filled;
+
+    private int solutionCount;
+    private int solutionLimit;
+    private long nodes;
+    private long backtracks;
+
+    /**
+     * Constructs a new {@code SudokuSolver} for 9x9 grids with all working arrays preallocated.
+     */
+    public SudokuSolver() {
+        this(BoardSize.NINE);
+    }
+
+    /**
+     * Constructs a new {@code SudokuSolver} for grids of the given size with all working arrays preallocated.
+     *
+     * @param boardSize The size of the grids to solve.
+     */
+    public SudokuSolver(BoardSize boardSize) {
+        this.boardSize = boardSize;
+        this.cells = boardSize.getCells();
+        this.gridSize = boardSize.getGridSize();
+        this.allDigits = boardSize.allDigits();
+        this.rowOf = boardSize.rowOf();
+        this.colOf = boardSize.colOf();
+        this.sectionOf = boardSize.sectionOf();
+        this.unitCells = boardSize.unitCells();
+        this.hiddenSingles = boardSize != BoardSize.NINE;
+        this.rowMask = new int[gridSize];
+        this.colMask = new int[gridSize];
+        this.sectionMask = new int[gridSize];
+        this.values = new int[cells];
+        this.solution = new int[cells];
+        this.emptyCells = new int[cells];
+    }
+
+    @Override
+    public BoardSize getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Solves the given grid in place.
+     * <p>
+     * If the grid has a solution, every empty cell is filled in with the first solution found.
+     * If it has none, the grid is left untouched.
+     * </p>
+     *
+     * @param grid The grid to solve, a flat array of values in row-major order (0 for empty cells).
+     * @return {@code true} if a solution was found, {@code false} if the grid cannot be solved.
+     * @throws IllegalArgumentException If the grid has the wrong number of cells or contains an invalid value.
+     */
+    @Override
+    public boolean solve(int[] grid) {
+        return solveAndCount(grid, 1) > 0;
+    }
+
+    /**
+     * Counts the solutions of the given grid, stopping as soon as {@code limit} solutions are found.
+     * <p>
+     * A limit of 2 is enough to tell whether a puzzle has a unique solution. The grid is left untouched.
+     * </p>
+     *
+     * @param grid The grid to examine, a flat array of values in row-major order (0 for empty cells).
+     * @param limit The number of solutions after which counting stops.
+     * @return The number of solutions found, never more than {@code limit}.
+     * @throws IllegalArgumentException If the grid has the wrong number of cells or contains an invalid value.
+     */
+    @Override
+    public int countSolutions(int[] grid, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        if (!load(grid)) {
+            finish(event, limit);
+            return 0;
+        }
+        run(limit);
+        finish(event, limit);
+        return solutionCount;
+    }
+
+    /**
+     * Counts the solutions of the given grid, stopping as soon as {@code limit} solutions are found, and fills the
+     * grid in with the first one.
+     *
+     * @param grid The grid to examine and solve, a flat array of values in row-major order (0 for empty cells).
+     * @param limit The number of solutions after which counting stops.
+     * @return The number of solutions found, never more than {@code limit}; the grid is only changed if it is not 0.
+     * @throws IllegalArgumentException If the grid has the wrong number of cells or contains an invalid value.
+     */
+    @Override
+    public int solveAndCount(int[] grid, int limit) {
+        int solutions = countSolutions(grid, limit);
+        if (solutions > 0) System.arraycopy(solution, 0, grid, 0, cells);
+        return solutions;
+    }
+
+    /**
+     * Commits the Flight Recorder event of a run, if it is being recorded.
+     */
+    private void finish(SolveEvent event, int limit) {
+        if (!event.shouldCommit()) return;
+        event.solver = "SudokuSolver";
+        event.size = boardSize.toString();
+        event.limit = limit;
+        event.solutions = solutionCount;
+        event.nodes = nodes;
+        event.backtracks = backtracks;
+        event.commit();
+    }
+
+    /**
+     * Returns the number of search nodes (placed cells) visited by the last call.
+     *
+     * @return The number of nodes visited during the last solve or count.
+     */
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of dead ends the last call had to back out of.
+     *
+     * @return The number of backtracks during the last solve or count.
+     */
+    @Override
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Resets the masks and loads the given values into the solver.
+     *
+     * @return {@code false} if two given values already conflict with each other.
+     */
+    private boolean load(int[] grid) {
+        if (grid.length != cells) throw new IllegalArgumentException("grid must have " + cells + " cells");
+        for (int i = 0; i < gridSize; i++) {
+            rowMask[i] = 0;
+            colMask[i] = 0;
+            sectionMask[i] = 0;
+        }
+        solutionCount = 0;
+        nodes = 0;
+        backtracks = 0;
+        emptyCount = 0;
+        filled = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            int value = grid[cell];
+            if (value < 0 || value > gridSize) throw new IllegalArgumentException("invalid value " + value);
+            values[cell] = value;
+            if (value == 0) {
+                emptyCells[emptyCount++] = cell;
+                continue;
+            }
+            int bit = 1 << (value - 1);
+            int row = rowOf[cell], col = colOf[cell], section = sectionOf[cell];
+            if (((rowMask[row] | colMask[col] | sectionMask[section]) & bit) != 0) return false;
+            rowMask[row] |= bit;
+            colMask[col] |= bit;
+            sectionMask[section] |= bit;
+        }
+        return true;
+    }
+
+    private void run(int limit) {
+        solutionLimit = limit;
+        search();
+    }
+
+    /**
+     * Depth-first search over the empty cells.
+     * <p>
+     * Forced cells (one candidate) are placed in a loop on the current level, and only cells with
+     * several candidates open a new level. Everything placed on this level is undone before returning.
+     * </p>
+     *
+     * @return {@code true} if the solution limit has been reached and the search should stop.
+     */
+    private boolean search() {
+        int mark = filled;
+        while (true) {
+            if (filled == emptyCount) {
+                if (solutionCount++ == 0) System.arraycopy(values, 0, solution, 0, cells);
+                undo(mark);
+                return solutionCount >= solutionLimit;
+            }
+
+            int bestPos = -1, bestCandidates = 0, bestCount = gridSize + 1;
+            for (int pos = filled; pos < emptyCount; pos++) {
+                int cell = emptyCells[pos];
+                int candidates = ~(rowMask[rowOf[cell]] | colMask[colOf[cell]] | sectionMask[sectionOf[cell]]) & allDigits;
+                int count = Integer.bitCount(candidates);
+                if (count < bestCount) {
+                    bestPos = pos;
+                    bestCandidates = candidates;
+                    bestCount = count;
+                    if (count <= 1) break;
+                }
+            }
+
+            if (bestCount == 0) {
+                backtracks++;
+                undo(mark);
+                return false;
+            }
+            if (bestCount == 1) {
+                place(bestPos, bestCandidates);
+                continue;
+            }
+            int hidden = hiddenSingles ? findHiddenSingle() : NONE;
+            if (hidden == DEAD_END) {
+                backtracks++;
+                undo(mark);
+                return false;
+            }
+            if (hidden != NONE) {
+                place(hidden & 0xFFFF, 1 << (hidden >>> 16));
+                continue;
+            }
+
+            // move the branching cell to the head of the trail once, deeper levels only reorder cells behind it
+            int cell = emptyCells[bestPos];
+            emptyCells[bestPos] = emptyCells[filled];
+            emptyCells[filled] = cell;
+            while (bestCandidates != 0) {
+                int bit = bestCandidates & -bestCandidates;
+                bestCandidates ^= bit;
+                place(filled, bit);
+                if (search()) {
+                    undo(mark);
+                    return true;
+                }
+                unplaceLast();
+            }
+            undo(mark);
+            return false;
+        }
+    }
+
+    /**
+     * Looks for a digit that fits in only one empty cell of a row, column or section.
+     *
+     * @return The trail position of the cell in the low 16 bits and the digit's bit index above them,
+     *         {@link #NONE} if there is no hidden single, or {@link #DEAD_END} if a digit missing from a unit
+     *         fits nowhere in it.
+     */
+    private int findHiddenSingle() {
+        for (int unit = 0; unit < unitCells.length; unit++) {
+            int once = 0, twice = 0;
+            for (int cell : unitCells[unit]) {
+                if (values[cell] != 0) continue;
+                int candidates = candidates(cell);
+                twice |= once & candidates;
+                once |= candidates;
+            }
+            int missing = ~unitMask(unit) & allDigits;
+            if ((once & missing) != missing) return DEAD_END;
+            int singles = once & ~twice;
+            if (singles == 0) continue;
+            int bit = singles & -singles;
+            for (int cell : unitCells[unit]) {
+                if (values[cell] == 0 && (candidates(cell) & bit) != 0) {
+                    return Integer.numberOfTrailingZeros(bit) << 16 | trailPosition(cell);
+                }
+            }
+        }
+        return NONE;
+    }
+
+    private int candidates(int cell) {
+        return ~(rowMask[rowOf[cell]] | colMask[colOf[cell]] | sectionMask[sectionOf[cell]]) & allDigits;
+    }
+
+    private int unitMask(int unit) {
+        if (unit < gridSize) return rowMask[unit];
+        if (unit < 2 * gridSize) return colMask[unit - gridSize];
+        return sectionMask[unit - 2 * gridSize];
+    }
+
+    private int trailPosition(int cell) {
+        int pos = filled;
+        while (emptyCells[pos] != cell) pos++;
+        return pos;
+    }
+
+    /**
+     * Moves the empty cell at {@code pos} to the end of the trail and places the digit given by {@code bit}.
+     */
+    private void place(int pos, int bit) {
+        int cell = emptyCells[pos];
+        emptyCells[pos] = emptyCells[filled];
+        emptyCells[filled++] = cell;
+        rowMask[rowOf[cell]] |= bit;
+        colMask[colOf[cell]] |= bit;
+        sectionMask[sectionOf[cell]] |= bit;
+        values[cell] = Integer.numberOfTrailingZeros(bit) + 1;
+        nodes++;
+    }
+
+    /**
+     * Removes the most recently placed cell from the trail and clears its bits.
+     */
+    private void unplaceLast() {
+        int cell = emptyCells[--filled];
+        int bit = ~(1 << (values[cell] - 1));
+        rowMask[rowOf[cell]] &= bit;
+        colMask[colOf[cell]] &= bit;
+        sectionMask[sectionOf[cell]] &= bit;
+        values[cell] = 0;
+    }
+
+    /**
+     * Pops the trail back to {@code mark}.
+     */
+    private void undo(int mark) {
+        while (filled > mark) unplaceLast();
+    }
+}
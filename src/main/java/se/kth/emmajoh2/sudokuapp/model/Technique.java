@@ -0,0 +1,42 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * The {@code Technique} enum lists the logical solving techniques the {@link HintEngine} knows.
+ * <p>
+ * The constants are declared from easiest to hardest, so comparing ordinals compares difficulty.
+ * </p>
+ * <ul>
+ *     <li>{@code HIDDEN_SINGLE}: a digit fits in only one cell of a row, column or section.</li>
+ *     <li>{@code NAKED_SINGLE}: a cell has only one candidate left.</li>
+ *     <li>{@code POINTING_PAIR}: the candidates for a digit in a section all lie in one row or column, so the digit
+ *     is removed from the rest of that row or column.</li>
+ *     <li>{@code BOX_LINE_REDUCTION}: the candidates for a digit in a row or column all lie in one section, so the
+ *     digit is removed from the rest of that section.</li>
+ *     <li>{@code NAKED_PAIR}, {@code NAKED_TRIPLE}, {@code NAKED_QUAD}: two, three or four cells of a unit share
+ *     two, three or four candidates between them, which are removed from the other cells of the unit.</li>
+ * </ul>
+ */
+public enum Technique {
+    HIDDEN_SINGLE("hidden single"),
+    NAKED_SINGLE("naked single"),
+    POINTING_PAIR("pointing pair"),
+    BOX_LINE_REDUCTION("box/line reduction"),
+    NAKED_PAIR("naked pair"),
+    NAKED_TRIPLE("naked triple"),
+    NAKED_QUAD("naked quad");
+
+    private final String displayName;
+
+    Technique(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Returns the name of the technique as shown to the player.
+     *
+     * @return A lower-case name such as {@code "hidden single"}.
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,58 @@
+package se.kth.emmajoh2.sudokuapp.server;
+
+import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One game hosted by the {@link SudokuServer}: a {@link SudokuModel} and the lock that serializes the requests on it.
+ * <p>
+ * A {@link ReentrantLock} is used instead of {@code synchronized}, so a virtual thread waiting for the session
+ * does not hold on to its carrier thread. While the session is spilled by the {@link SessionStore} it has no
+ * model; the fields other than the id are only used while holding the lock.
+ * </p>
+ */
+final class GameSession {
+    private final String id;
+    private final ReentrantLock lock = new ReentrantLock();
+    SudokuModel model;       // null while spilled
+    byte[] spilled;          // the spilled game, when spilled to memory
+    long accountedBytes;     // the size the store counts for the session while it is resident
+    boolean removed;
+
+    GameSession(String id, SudokuModel model) {
+        this.id = id;
+        this.model = model;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the game of the session. Must only be used while holding {@link #lock()}.
+     */
+    SudokuModel getModel() {
+        return model;
+    }
+
+    /**
+     * Locks the session for one request.
+     */
+    void lock() {
+        lock.lock();
+    }
+
+    /**
+     * Locks the session unless another thread holds it.
+     *
+     * @return {@code true} if the lock was acquired.
+     */
+    boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+}
@@ -0,0 +1,194 @@
+package se.kth.emmajoh2.sudokuapp.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the {@link SudokuServer}.
+ * <p>
+ * First opens {@code --sessions} sessions, so that many games are held by the server at the same time, and then
+ * plays {@code --moves} requests on every session: random moves, a hint every tenth request and a check at the end.
+ * Every session runs on a virtual thread of its own, and at most {@code --connections} requests are in flight at
+ * once. The throughput and the latency percentiles of both phases are printed; with {@code --keep} the sessions
+ * are left open afterwards.
+ * </p>
+ * Usage:
+ * <pre>
+ * LoadClient [--url http://127.0.0.1:8080] [--sessions 10000] [--moves 20] [--connections 256] [--keep]
+ * </pre>
+ */
+public class LoadClient {
+    private final HttpClient client;
+    private final String url;
+    private final Semaphore inFlight;
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Constructs a new {@code LoadClient}.
+     *
+     * @param client The client to send the requests with.
+     * @param url The base URL of the server, without a trailing slash.
+     * @param connections The largest number of requests in flight at once.
+     */
+    public LoadClient(HttpClient client, String url, int connections) {
+        this.client = client;
+        this.url = url;
+        this.inFlight = new Semaphore(connections);
+    }
+
+    /**
+     * Sends one request and adds its latency in nanoseconds to {@code latencies}.
+     *
+     * @return The response body, or {@code null} if the request failed.
+     */
+    private String send(String method, String path, long[] latencies, int index) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        inFlight.acquire();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                errors.incrementAndGet();
+                return null;
+            }
+            return response.body();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            return null;
+        } finally {
+            latencies[index] = System.nanoTime() - start;
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Runs one task per session on its own virtual thread and returns the latencies of all of them.
+     */
+    private long[] runAll(ExecutorService executor, int sessions, int requestsPerSession, SessionTask task)
+            throws InterruptedException {
+        List<Future<long[]>> futures = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            int session = i;
+            futures.add(executor.submit(() -> {
+                long[] latencies = new long[requestsPerSession];
+                task.run(session, latencies);
+                return latencies;
+            }));
+        }
+        long[] all = new long[sessions * requestsPerSession];
+        for (int i = 0; i < sessions; i++) {
+            try {
+                System.arraycopy(futures.get(i).get(), 0, all, i * requestsPerSession, requestsPerSession);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return all;
+    }
+
+    /**
+     * The requests of one session in one phase of the test.
+     */
+    private interface SessionTask {
+        void run(int session, long[] latencies) throws InterruptedException;
+    }
+
+    private static void report(String phase, long[] latencies, long nanos, long errors) {
+        Arrays.sort(latencies);
+        double seconds = nanos / 1e9;
+        System.out.printf("%s: %d requests in %.2f s (%.0f requests/s), %d errors%n",
+                phase, latencies.length, seconds, latencies.length / seconds, errors);
+        if (latencies.length == 0) return;
+        System.out.printf("  latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) (fraction * sorted.length))] / 1e6;
+    }
+
+    /**
+     * Returns the value of a string field of a JSON object written by the server.
+     */
+    private static String field(String json, String name) {
+        String key = "\"" + name + "\":\"";
+        int start = json.indexOf(key) + key.length();
+        return json.substring(start, json.indexOf('"', start));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String url = "http://127.0.0.1:" + SudokuServer.DEFAULT_PORT;
+        int sessions = 10_000;
+        int moves = 20;
+        int connections = 256;
+        boolean keep = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url": url = args[++i]; break;
+                case "--sessions": sessions = Integer.parseInt(args[++i]); break;
+                case "--moves": moves = Integer.parseInt(args[++i]); break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--keep": keep = true; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.err.println("Usage: LoadClient [--url http://127.0.0.1:8080] [--sessions 10000]"
+                            + " [--moves 20] [--connections 256] [--keep]");
+                    return;
+            }
+        }
+
+        ExecutorService executor = SudokuServer.newThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+        LoadClient load = new LoadClient(client, url, connections);
+        String[] ids = new String[sessions];
+
+        long start = System.nanoTime();
+        long[] created = load.runAll(executor, sessions, 1, (session, latencies) -> {
+            String body = load.send("POST", "/sessions", latencies, 0);
+            if (body != null) ids[session] = field(body, "id");
+        });
+        report("Create", created, System.nanoTime() - start, load.errors.getAndSet(0));
+        long[] stats = new long[1];
+        System.out.println("Server holds " + load.send("GET", "/stats", stats, 0));
+
+        int movesPerSession = moves;
+        int requests = moves + 1;
+        start = System.nanoTime();
+        long[] played = load.runAll(executor, sessions, requests, (session, latencies) -> {
+            if (ids[session] == null) return;
+            SplittableRandom random = new SplittableRandom(session);
+            String path = "/sessions/" + ids[session];
+            for (int i = 0; i < movesPerSession; i++) {
+                if (i % 10 == 9) {
+                    load.send("POST", path + "/hint", latencies, i);
+                } else {
+                    load.send("POST", path + "/move?row=" + random.nextInt(9) + "&col=" + random.nextInt(9)
+                            + "&value=" + random.nextInt(10), latencies, i);
+                }
+            }
+            load.send("GET", path + "/check", latencies, movesPerSession);
+        });
+        report("Play", played, System.nanoTime() - start, load.errors.getAndSet(0));
+
+        if (!keep) {
+            load.runAll(executor, sessions, 1, (session, latencies) -> {
+                if (ids[session] != null) load.send("DELETE", "/sessions/" + ids[session], latencies, 0);
+            });
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,316 @@
+package se.kth.emmajoh2.sudokuapp.server;
+
+import se.kth.emmajoh2.sudokuapp.model.SudokuIO;
+import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The {@code SessionStore} class holds the sessions of a {@link SudokuServer} within a memory budget.
+ * <p>
+ * The models of the sessions count against the budget by their {@link SudokuModel#estimateSize()}. When they take
+ * more than the budget, the least recently used sessions are spilled: their game is encoded in the binary save
+ * format of {@link SudokuIO} (about 120 bytes for a 9x9 board with a short move history) and kept either in
+ * memory or as a {@code .sudoku} file in the spill directory, and the model is dropped. The next request on a
+ * spilled session decodes it again, into a model left over from an earlier spill when there is one, so most
+ * rehydrations allocate nothing but the board they decode.
+ * </p>
+ * <p>
+ * A request {@linkplain #acquire(String) acquires} its session, which locks it and makes it resident, and
+ * {@linkplain #release(GameSession) releases} it afterwards, which marks it as the most recently used. The
+ * recency order is a {@link LinkedHashMap} in access order behind one lock, held only to reorder the map; spilling
+ * and rehydrating only hold the lock of the session. Sessions in use are never spilled, so the budget can be
+ * exceeded while many requests are running at once.
+ * </p>
+ * The store is thread-safe.
+ */
+final class SessionStore {
+    private static final int FREE_MODELS = 64;
+
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final Supplier<SudokuModel> modelFactory;
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final BlockingQueue<SudokuModel> freeModels = new ArrayBlockingQueue<>(FREE_MODELS);
+
+    // guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, GameSession> resident = new LinkedHashMap<>(1024, 0.75f, true);
+    private long residentBytes;
+
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong spills = new AtomicLong();
+    private final AtomicLong rehydrations = new AtomicLong();
+    private final AtomicLong rehydrateNanos = new AtomicLong();
+    private final AtomicLong maxRehydrateNanos = new AtomicLong();
+
+    /**
+     * Constructs a new, empty {@code SessionStore}.
+     *
+     * @param memoryBudget The number of bytes the resident models may take.
+     * @param spillDirectory The directory spilled sessions are written to, or {@code null} to keep them in memory.
+     * @param modelFactory Creates a model to rehydrate a session into when no spilled model is left over. Its
+     *                     game is replaced, so it does not need to start one.
+     */
+    SessionStore(long memoryBudget, Path spillDirectory, Supplier<SudokuModel> modelFactory) {
+        if (memoryBudget < 0) throw new IllegalArgumentException("invalid memory budget " + memoryBudget);
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.modelFactory = modelFactory;
+    }
+
+    /**
+     * Adds a new session for a model.
+     *
+     * @param model The game of the session.
+     * @return The new session, locked. It must be released with {@link #release(GameSession)}.
+     */
+    GameSession create(SudokuModel model) {
+        GameSession session;
+        do {
+            String id = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+            session = new GameSession(id, model);
+            session.lock();
+        } while (sessions.putIfAbsent(session.getId(), session) != null);
+        return session;
+    }
+
+    /**
+     * Locks a session and makes it resident, rehydrating it if it was spilled.
+     *
+     * @param id The id of the session.
+     * @return The session, locked, or {@code null} if there is no session with that id. It must be released
+     *         with {@link #release(GameSession)}.
+     * @throws IOException If the spilled session cannot be read back. The session is not locked then.
+     */
+    GameSession acquire(String id) throws IOException {
+        GameSession session = sessions.get(id);
+        if (session == null) return null;
+        session.lock();
+        if (session.removed) {
+            session.unlock();
+            return null;
+        }
+        if (session.model == null) {
+            try {
+                rehydrate(session);
+            } catch (IOException | RuntimeException e) {
+                session.unlock();
+                throw e;
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Unlocks a session after a request, marks it as the most recently used and spills the least recently used
+     * sessions if the resident ones take more than the budget.
+     *
+     * @param session A session returned by {@link #create(SudokuModel)} or {@link #acquire(String)}.
+     */
+    void release(GameSession session) {
+        if (!session.removed) {
+            long size = session.model.estimateSize(); // may have grown, for example by the first hint
+            lock.lock();
+            try {
+                resident.put(session.getId(), session);
+                residentBytes += size - session.accountedBytes;
+                session.accountedBytes = size;
+            } finally {
+                lock.unlock();
+            }
+        }
+        session.unlock();
+        spillOverBudget();
+    }
+
+    /**
+     * Removes a session, with its spilled game.
+     *
+     * @param id The id of the session.
+     * @return {@code true} if the session was removed, {@code false} if there was no session with that id.
+     */
+    boolean remove(String id) {
+        GameSession session = sessions.remove(id);
+        if (session == null) return false;
+        session.lock();
+        try {
+            session.removed = true;
+            lock.lock();
+            try {
+                if (resident.remove(id) != null) residentBytes -= session.accountedBytes;
+            } finally {
+                lock.unlock();
+            }
+            if (session.model == null) {
+                spilledCount.decrementAndGet();
+                if (session.spilled != null) spilledBytes.addAndGet(-session.spilled.length);
+                else Files.deleteIfExists(spillFile(session));
+            }
+            session.model = null;
+            session.spilled = null;
+        } catch (IOException e) {
+            e.printStackTrace(); // the session is gone either way, only the file is left behind
+        } finally {
+            session.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Spills the least recently used sessions that are not in use until the resident ones fit in the budget.
+     */
+    private void spillOverBudget() {
+        while (true) {
+            GameSession victim = null;
+            lock.lock();
+            try {
+                if (residentBytes <= memoryBudget) return;
+                Iterator<GameSession> eldest = resident.values().iterator();
+                while (eldest.hasNext()) {
+                    GameSession session = eldest.next();
+                    if (!session.tryLock()) continue; // in use, and about to become the most recent
+                    eldest.remove();
+                    residentBytes -= session.accountedBytes;
+                    session.accountedBytes = 0;
+                    victim = session;
+                    break;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (victim == null) return; // every resident session is in use
+            try {
+                spill(victim);
+            } catch (IOException e) {
+                e.printStackTrace();
+                lock.lock();
+                try {
+                    // keep it resident; spilling the next one would most likely fail the same way
+                    resident.put(victim.getId(), victim);
+                    victim.accountedBytes = victim.model.estimateSize();
+                    residentBytes += victim.accountedBytes;
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            } finally {
+                victim.unlock();
+            }
+        }
+    }
+
+    /**
+     * Encodes the game of a locked session into its spilled form and drops the model.
+     */
+    private void spill(GameSession session) throws IOException {
+        byte[] bytes = SudokuIO.encodeGame(session.model);
+        if (spillDirectory != null) {
+            Files.write(spillFile(session), bytes);
+        } else {
+            session.spilled = bytes;
+            spilledBytes.addAndGet(bytes.length);
+        }
+        freeModels.offer(session.model); // dropped if enough models are left over already
+        session.model = null;
+        spilledCount.incrementAndGet();
+        spills.incrementAndGet();
+    }
+
+    /**
+     * Decodes the spilled game of a locked session into a model.
+     */
+    private void rehydrate(GameSession session) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = session.spilled != null ? session.spilled : Files.readAllBytes(spillFile(session));
+        SudokuModel model = freeModels.poll();
+        if (model == null) model = modelFactory.get();
+        SudokuIO.decodeGame(model, ByteBuffer.wrap(bytes));
+        if (session.spilled != null) spilledBytes.addAndGet(-bytes.length);
+        else Files.deleteIfExists(spillFile(session));
+        session.model = model;
+        session.spilled = null;
+        spilledCount.decrementAndGet();
+        long nanos = System.nanoTime() - start;
+        rehydrations.incrementAndGet();
+        rehydrateNanos.addAndGet(nanos);
+        maxRehydrateNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private Path spillFile(GameSession session) {
+        return spillDirectory.resolve(session.getId() + ".sudoku");
+    }
+
+    /**
+     * Returns the number of sessions, resident or spilled.
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of spilled sessions. The other sessions are resident or being used.
+     */
+    long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    int getResidentCount() {
+        lock.lock();
+        try {
+            return resident.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getResidentBytes() {
+        lock.lock();
+        try {
+            return residentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the bytes held by sessions spilled to memory; 0 when spilling to disk.
+     */
+    long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    long getSpills() {
+        return spills.get();
+    }
+
+    long getRehydrations() {
+        return rehydrations.get();
+    }
+
+    /**
+     * Returns the mean time to rehydrate a session, in nanoseconds.
+     */
+    long getMeanRehydrateNanos() {
+        long count = rehydrations.get();
+        return count == 0 ? 0 : rehydrateNanos.get() / count;
+    }
+
+    long getMaxRehydrateNanos() {
+        return maxRehydrateNanos.get();
+    }
+}
@@ -0,0 +1,389 @@
+package se.kth.emmajoh2.sudokuapp.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import se.kth.emmajoh2.sudokuapp.diagnostics.Metrics;
+import se.kth.emmajoh2.sudokuapp.model.BoardSize;
+import se.kth.emmajoh2.sudokuapp.model.Hint;
+import se.kth.emmajoh2.sudokuapp.model.PuzzlePool;
+import se.kth.emmajoh2.sudokuapp.model.PuzzleSource;
+import se.kth.emmajoh2.sudokuapp.model.SudokuLevel;
+import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
+import se.kth.emmajoh2.sudokuapp.model.VariantPuzzleSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless game server that hosts many Sudoku games at once over HTTP.
+ * <p>
+ * Every session is a {@link SudokuModel} of its own, without a view. The server uses the {@code HttpServer} of the
+ * JDK, which accepts the connections on one thread and handles every request on a new virtual thread (a platform
+ * thread before Java 21). A blocked request only parks its virtual thread, so the number of connections is not
+ * limited by a thread pool. Requests on the same session are serialized; requests on different sessions run in
+ * parallel.
+ * </p>
+ * <p>
+ * New games are random variants of pooled puzzles (see {@link VariantPuzzleSource}), so starting a game does not
+ * wait for the generator, and every session keeps a short undo history to stay small. With {@code --memory-mb}
+ * the sessions are kept in a {@link SessionStore} within that budget: idle sessions are spilled to a compact binary
+ * form, in memory or in the {@code --spill} directory, and restored on their next request.
+ * </p>
+ * Requests and responses (JSON, boards as flat arrays in row-major order):
+ * <pre>
+ * POST   /sessions[?size=9&amp;level=MEDIUM]    create a session      -&gt; {"id":..., board}
+ * GET    /sessions/{id}                       the board             -&gt; {"id":..., board}
+ * POST   /sessions/{id}/new[?size=&amp;level=]    start a new game      -&gt; {"id":..., board}
+ * POST   /sessions/{id}/move?row=&amp;col=&amp;value=  enter a number (0 clears) -&gt; {"accepted":..., "solved":...}
+ * POST   /sessions/{id}/hint                  place a hint          -&gt; {"placed":..., "row":..., ...}
+ * GET    /sessions/{id}/check                 check the placed numbers -&gt; {"correct":..., "conflicts":..., "solved":...}
+ * DELETE /sessions/{id}                       end the session
+ * GET    /stats                               {"sessions":..., "resident":..., "spilled":..., ...}
+ * GET    /metrics                             the {@link Metrics} of the process, as plain text
+ * </pre>
+ * Usage:
+ * <pre>
+ * SudokuServer [--host 127.0.0.1] [--port 8080] [--undo 64] [--memory-mb 256] [--spill dir]
+ * </pre>
+ */
+public class SudokuServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_UNDO_LIMIT = 64;
+    private static final int BACKLOG = 4096;
+    private static final Metrics.Histogram REQUEST_NANOS = Metrics.getDefault().histogram("server.request.nanos");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PuzzleSource puzzleSource;
+    private final int undoLimit;
+    private final SessionStore store;
+
+    /**
+     * Constructs a new {@code SudokuServer}. It does not accept connections until {@link #start()} is called.
+     *
+     * @param address The address to listen on.
+     * @param puzzleSource The source new games take their puzzles from.
+     * @param undoLimit The number of moves that can be undone in each session.
+     * @throws IOException If the address cannot be bound.
+     */
+    public SudokuServer(InetSocketAddress address, PuzzleSource puzzleSource, int undoLimit) throws IOException {
+        this(address, puzzleSource, undoLimit, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Constructs a new {@code SudokuServer} that keeps its sessions within a memory budget (see {@link SessionStore}).
+     * It does not accept connections until {@link #start()} is called.
+     *
+     * @param address The address to listen on.
+     * @param puzzleSource The source new games take their puzzles from.
+     * @param undoLimit The number of moves that can be undone in each session.
+     * @param memoryBudget The number of bytes the models of the resident sessions may take.
+     * @param spillDirectory The directory sessions are spilled to when over the budget, or {@code null} to spill
+     *                       them to memory in their compact binary form.
+     * @throws IOException If the address cannot be bound.
+     */
+    public SudokuServer(InetSocketAddress address, PuzzleSource puzzleSource, int undoLimit, long memoryBudget,
+                        Path spillDirectory) throws IOException {
+        this.puzzleSource = puzzleSource;
+        this.undoLimit = undoLimit;
+        this.store = new SessionStore(memoryBudget, spillDirectory,
+                () -> SudokuModel.withoutGame(puzzleSource, undoLimit));
+        this.executor = newThreadPerTaskExecutor();
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/sessions", this::handleSessions);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting at most a second for the requests being handled.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the address the server listens on, with the actual port if it was started on port 0.
+     *
+     * @return The bound address.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return The number of sessions created and not yet ended.
+     */
+    public int getSessionCount() {
+        return store.size();
+    }
+
+    /**
+     * Returns an executor that runs every task on a new virtual thread, or on a new platform thread if virtual
+     * threads are not available (before Java 21, or Java 19 and 20 without {@code --enable-preview}).
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "{\"sessions\":" + store.size() + ",\"resident\":" + store.getResidentCount()
+                + ",\"spilled\":" + store.getSpilledCount() + ",\"residentBytes\":" + store.getResidentBytes()
+                + ",\"spilledBytes\":" + store.getSpilledBytes() + ",\"spills\":" + store.getSpills()
+                + ",\"rehydrations\":" + store.getRehydrations()
+                + ",\"rehydrateMeanMicros\":" + store.getMeanRehydrateNanos() / 1000
+                + ",\"rehydrateMaxMicros\":" + store.getMaxRehydrateNanos() / 1000 + "}");
+    }
+
+    /**
+     * Writes the {@link Metrics} of the process as plain text, one metric per line.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        byte[] body = Metrics.getDefault().toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Routes the requests under {@code /sessions} and turns the errors of a request into status codes.
+     */
+    private void handleSessions(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/"); // "", "sessions", id, action
+            if (!path[1].equals("sessions") || path.length > 4) throw new HttpError(404, "unknown path");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (path.length == 2) {
+                if (!method.equals("POST")) throw new HttpError(405, "use POST to create a session");
+                respond(exchange, 200, createSession(query));
+                return;
+            }
+            String action = path.length > 3 ? path[3] : "";
+            if (action.isEmpty() && method.equals("DELETE")) {
+                if (!store.remove(path[2])) throw new HttpError(404, "no session " + path[2]);
+                respond(exchange, 200, "{}");
+                return;
+            }
+            String expected = action.isEmpty() || action.equals("check") ? "GET" : "POST";
+            if (!method.equals(expected)) throw new HttpError(405, "use " + expected + " for " + action);
+            GameSession session;
+            try {
+                session = store.acquire(path[2]);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new HttpError(500, "failed to restore session " + path[2] + ": " + e.getMessage());
+            }
+            if (session == null) throw new HttpError(404, "no session " + path[2]);
+            String response;
+            try {
+                response = handle(session, action, query);
+            } finally {
+                store.release(session);
+            }
+            respond(exchange, 200, response); // not while holding the session, the client may be slow to read
+        } catch (HttpError e) {
+            respond(exchange, e.status, error(e.getMessage()));
+        } catch (IllegalArgumentException e) { // also NumberFormatException
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (NoSuchElementException e) {
+            respond(exchange, 503, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            respond(exchange, 500, error(e.toString()));
+        } finally {
+            REQUEST_NANOS.record(System.nanoTime() - start);
+        }
+    }
+
+    private String createSession(Map<String, String> query) {
+        SudokuModel model = new SudokuModel(puzzleSource, undoLimit, sizeParameter(query, BoardSize.NINE),
+                levelParameter(query, SudokuLevel.MEDIUM));
+        GameSession session = store.create(model);
+        try {
+            return board(session);
+        } finally {
+            store.release(session);
+        }
+    }
+
+    /**
+     * Handles a request on one session, with the session locked.
+     */
+    private String handle(GameSession session, String action, Map<String, String> query) throws HttpError {
+        SudokuModel model = session.getModel();
+        switch (action) {
+            case "":
+                return board(session);
+            case "new":
+                newGame(model, query);
+                return board(session);
+            case "move": {
+                int gridSize = model.getBoardSize().getGridSize();
+                int row = intParameter(query, "row", 0, gridSize - 1);
+                int col = intParameter(query, "col", 0, gridSize - 1);
+                int value = intParameter(query, "value", 0, gridSize);
+                boolean accepted = !model.isInitTile(row, col);
+                model.addNumber(row, col, value);
+                return "{\"accepted\":" + accepted + ",\"filled\":" + model.getFilledCount()
+                        + ",\"solved\":" + model.allTilesCorrect() + "}";
+            }
+            case "hint": {
+                if (!model.addhint()) return "{\"placed\":false,\"solved\":true}";
+                Hint hint = model.getLastHint();
+                String technique = hint.getTechnique() == null ? "null" : "\"" + hint.getTechnique().getDisplayName() + "\"";
+                return "{\"placed\":true,\"row\":" + hint.getRow() + ",\"col\":" + hint.getCol()
+                        + ",\"value\":" + hint.getValue() + ",\"technique\":" + technique
+                        + ",\"solved\":" + model.allTilesCorrect() + "}";
+            }
+            case "check":
+                return "{\"correct\":" + model.placedTilesCorrect() + ",\"wrong\":" + model.getWrongCount()
+                        + ",\"conflicts\":" + model.getConflictCount()
+                        + ",\"filled\":" + model.getFilledCount() + ",\"solved\":" + model.allTilesCorrect() + "}";
+            default:
+                throw new HttpError(404, "unknown action " + action);
+        }
+    }
+
+    /**
+     * Starts a new game of the size and level in the query, or of the model's current size and level.
+     */
+    private static void newGame(SudokuModel model, Map<String, String> query) {
+        model.initGame(sizeParameter(query, model.getBoardSize()), levelParameter(query, model.getLevel()));
+    }
+
+    private static BoardSize sizeParameter(Map<String, String> query, BoardSize otherwise) {
+        String size = query.get("size");
+        return size == null ? otherwise : BoardSize.ofGridSize(Integer.parseInt(size));
+    }
+
+    private static SudokuLevel levelParameter(Map<String, String> query, SudokuLevel otherwise) {
+        String level = query.get("level");
+        return level == null ? otherwise : SudokuLevel.valueOf(level.toUpperCase());
+    }
+
+    /**
+     * Returns the session and its board as JSON: the current values, which of them are pre-filled ({@code 1}) and
+     * the game state.
+     */
+    private static String board(GameSession session) {
+        SudokuModel model = session.getModel();
+        int gridSize = model.getBoardSize().getGridSize();
+        StringBuilder json = new StringBuilder(4 * gridSize * gridSize + 128);
+        json.append("{\"id\":\"").append(session.getId()).append("\",\"size\":").append(gridSize)
+                .append(",\"level\":\"").append(model.getLevel()).append("\",\"board\":[");
+        for (int cell = 0; cell < gridSize * gridSize; cell++) {
+            if (cell > 0) json.append(',');
+            json.append(model.getTileValue(cell / gridSize, cell % gridSize));
+        }
+        json.append("],\"given\":\"");
+        for (int cell = 0; cell < gridSize * gridSize; cell++) {
+            json.append(model.isInitTile(cell / gridSize, cell % gridSize) ? '1' : '0');
+        }
+        return json.append("\",\"filled\":").append(model.getFilledCount())
+                .append(",\"solved\":").append(model.allTilesCorrect()).append('}').toString();
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int min, int max) throws HttpError {
+        String value = query.get(name);
+        if (value == null) throw new HttpError(400, "missing parameter " + name);
+        int number = Integer.parseInt(value);
+        if (number < min || number > max) throw new HttpError(400, name + " must be " + min + "-" + max);
+        return number;
+    }
+
+    /**
+     * Splits a query string into its parameters. The parameters used by the server never need URL decoding.
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) parameters.put(pair.substring(0, equals), pair.substring(equals + 1));
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + String.valueOf(message).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * A request that fails with the given HTTP status.
+     */
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int undoLimit = DEFAULT_UNDO_LIMIT;
+        long memoryBudget = Long.MAX_VALUE;
+        Path spillDirectory = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--undo": undoLimit = Integer.parseInt(args[++i]); break;
+                case "--memory-mb": memoryBudget = Long.parseLong(args[++i]) << 20; break;
+                case "--spill": spillDirectory = Path.of(args[++i]); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.err.println("Usage: SudokuServer [--host 127.0.0.1] [--port 8080] [--undo 64]"
+                            + " [--memory-mb 256] [--spill dir]");
+                    return;
+            }
+        }
+        PuzzleSource puzzles = new VariantPuzzleSource(PuzzlePool.getDefault(), 8, 64);
+        if (spillDirectory != null) Files.createDirectories(spillDirectory);
+        SudokuServer server = new SudokuServer(new InetSocketAddress(host, port), puzzles, undoLimit, memoryBudget,
+                spillDirectory);
+        server.start();
+        System.out.println("Sudoku server listening on http://" + host + ":" + server.getAddress().getPort());
+    }
+}
@@ -1,20 +1,23 @@
 package se.kth.emmajoh2.sudokuapp.view;
 
+import javafx.stage.FileChooser;
+import se.kth.emmajoh2.sudokuapp.model.BoardSize;
+import se.kth.emmajoh2.sudokuapp.model.PuzzleArchive;
+import se.kth.emmajoh2.sudokuapp.model.PuzzleSource;
 import se.kth.emmajoh2.sudokuapp.model.SudokuIO;
 import se.kth.emmajoh2.sudokuapp.model.SudokuLevel;
 import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
 
 import java.io.File;
 import java.io.IOException;
-
-import static se.kth.emmajoh2.sudokuapp.model.SudokuIO.deserializeFromFile;
+import java.util.NoSuchElementException;
 
 /**
  * The {@code Controller} class manages the communication between the {@code SudokuModel} and {@code SudokuView}.
  * <p>
  * It handles user actions such as selecting tiles, pressing buttons, saving/loading the game, and interacting
- * with the Sudoku game logic. The controller listens for user input, updates the model, and refreshes the view
- * accordingly.
+ * with the Sudoku game logic. The controller listens for user input and updates the model; the view follows
+ * the changes of the model through its {@link se.kth.emmajoh2.sudokuapp.model.BoardListener}.
  * </p>
  */
 public class Controller {
@@ -34,7 +37,7 @@ public class Controller {
 
     /**
      * Handles when a tile is selected and a number is input by the user.
-     * Updates the model with the selected number for the given row and column, and refreshes the view.
+     * Updates the model with the selected number for the given row and column.
      * If all tiles are correct after the input, it displays a "Game over" message.
      * @param row The row of the selected tile.
      * @param col The column of the selected tile.
@@ -42,7 +45,6 @@ public class Controller {
     public void onTileSelectedOrSomeSuch(int row, int col) {
         System.out.println("Tile Pressed: " + row + col);
         model.addNumber(row, col);
-        view.updateBoard(model);
         if (model.gameOver()) {
             if (model.allTilesCorrect()) view.alert("Game over", "You solved the board");
         }
@@ -61,12 +63,15 @@ public class Controller {
     /**
      * Checks the current placement of the tiles to determine if they are all placed correctly.
      * <p>
-     * If all placed tiles are correct, an alert will display that the placement is correct.
-     * Otherwise, an alert will display that some tiles are not in the right place.
+     * If a number occurs twice in a row, column or section, an alert tells the player so; this needs neither the
+     * solution nor a scan of the board. Otherwise, if all placed tiles are correct, an alert will display that
+     * the placement is correct, and if not, that some tiles are not in the right place.
      * </p>
      */
     public void onCheck() {
-        if (model.placedTilesCorrect()) {
+        if (model.hasConflicts()) {
+            view.alert("Check placement", "Some numbers occur twice in a row, column or section (shown in red)");
+        } else if (model.placedTilesCorrect()) {
             view.alert("Check placement", "Currently all the tiles are in the right place");
         } else view.alert("Check placement", "Currently all the tiles are in not the right place");
     }
@@ -74,34 +79,117 @@ public class Controller {
     /**
      * Provides a hint to the player by automatically filling one incorrect or empty tile.
      * <p>
-     * The view is updated with the hint, and if all tiles are correct after the hint, a "Game over" message is displayed.
+     * The alert names the tile and the technique that finds it, and if all tiles are correct after the hint,
+     * a "Game over" message is displayed.
      * </p>
      */
     public void onHint() {
         if (model.addhint()) {
-            view.alert("Hint", "A hint has been placed");
-            view.updateBoard(model);
+            view.alert("Hint", "A hint has been placed: " + model.getLastHint());
         }
         if (model.allTilesCorrect()) view.alert("Game over", "You solved the board");
     }
 
+    /**
+     * Takes back the last move, hint or reset. Does nothing if there is nothing to undo.
+     */
+    public void onUndo() {
+        model.undo();
+    }
+
+    /**
+     * Makes the last undone move again. Does nothing if there is nothing to redo.
+     */
+    public void onRedo() {
+        model.redo();
+    }
+
+    /**
+     * Shows or hides the candidates of the empty tiles.
+     *
+     * @param show {@code true} to show the pencil marks.
+     */
+    public void onPencilMarks(boolean show) {
+        view.setPencilMarks(show);
+    }
+
     /**
      * Starts a new game with the specified difficulty level.
      * <p>
      * Depending on the mode passed, the game is initialized with either {@code EASY}, {@code MEDIUM}, or {@code HARD} difficulty.
-     * The view is updated to reflect the new game state.
      * </p>
      *
      * @param mode The difficulty mode for the new game (1 for EASY, 2 for MEDIUM, 3 for HARD).
      */
     public void onNewGame(int mode) {
-        switch (mode) {
-            case 1 :    model.initGame(SudokuLevel.EASY); break;
-            case 2 :    model.initGame(SudokuLevel.MEDIUM); break;
-            case 3 :    model.initGame(SudokuLevel.HARD); break;
-            default:    model.initGame();
+        try {
+            switch (mode) {
+                case 1 :    model.initGame(SudokuLevel.EASY); break;
+                case 2 :    model.initGame(SudokuLevel.MEDIUM); break;
+                case 3 :    model.initGame(SudokuLevel.HARD); break;
+                default:    model.initGame();
+            }
+        } catch (NoSuchElementException e) {
+            view.alert("New Game", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a new game of the given board size, keeping the difficulty level of the current game.
+     * <p>
+     * An alert is displayed if the puzzle source has no puzzles of that size (puzzle archives only hold 9x9 puzzles).
+     * </p>
+     *
+     * @param size The size of the new board.
+     */
+    public void onBoardSize(BoardSize size) {
+        if (size == model.getBoardSize()) return;
+        try {
+            model.initGame(size, model.getLevel());
+        } catch (NoSuchElementException e) {
+            view.alert("New Game", e.getMessage());
+        }
+    }
+
+    /**
+     * Lets the player choose a puzzle archive that new games are taken from from now on, and starts a new game
+     * from it.
+     * <p>
+     * An alert is displayed if the file cannot be opened as a puzzle archive.
+     * </p>
+     */
+    public void onOpenArchive() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Puzzle Archives", "*.sdka"));
+        File file = fileChooser.showOpenDialog(null);
+        if (file == null) return;
+        try {
+            PuzzleArchive archive = PuzzleArchive.openReadOnly(file.toPath());
+            if (archive.size() == 0) {
+                archive.close();
+                view.alert("Open Archive", "The archive does not contain any puzzles");
+                return;
+            }
+            PuzzleSource previous = model.getPuzzleSource();
+            model.setPuzzleSource(archive);
+            if (previous instanceof PuzzleArchive) closeArchive((PuzzleArchive) previous);
+            view.alert("Open Archive", "New games are now taken from " + file.getName()
+                    + " (" + archive.size() + " puzzles)");
+            onNewGame(0);
+        } catch (IOException e) {
+            view.alert("Open Archive", "Failed to open the archive: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes an archive new games are no longer taken from, with its mappings.
+     */
+    private static void closeArchive(PuzzleArchive archive) {
+        try {
+            archive.close();
+        } catch (IOException e) {
+            e.printStackTrace(); // nothing is read from it any more, so the game is not affected
         }
-        view.updateBoard(model);
     }
 
     /**
@@ -121,28 +209,24 @@ public class Controller {
 
     /**
      * Clears all moves made by the player by resetting all non-initial tiles.
-     * <p>
-     * The game board is refreshed after clearing the tiles.
-     * </p>
      */
     public void onClear() {
         model.resetMoves();
-        view.updateBoard(model);
     }
 
     /**
-     * Saves the current game state to a file named "sudoku.ser".
+     * Saves the current game state to a file chosen by the player.
      * <p>
-     * The Sudoku board is serialized and saved to the file. An alert is displayed if the game is successfully saved,
+     * The game is written in the binary save format. An alert is displayed if the game is successfully saved,
      * or if an error occurs during saving.
      * </p>
      */
     public void onSave() {
-        File file = new File("sudoku.ser");
         try {
-            SudokuIO.serializeToFile(model.getSudokuBoard());
-            view.alert("Save", "Game saved successfully!");
-            System.out.println("Game saved successfully!");
+            if (SudokuIO.saveGame(model)) {
+                view.alert("Save", "Game saved successfully!");
+                System.out.println("Game saved successfully!");
+            }
         } catch (IOException e) {
             view.alert("Save Error", "Failed to save the game: " + e.getMessage());
             e.printStackTrace();  // Print full error to help with debugging
@@ -150,21 +234,19 @@ public class Controller {
     }
 
     /**
-     * Loads a previously saved game state from the file "sudoku.ser".
+     * Loads a previously saved game state from a file chosen by the player.
      * <p>
-     * The Sudoku board is deserialized from the file. The game board is updated after loading the saved state,
-     * and an alert is displayed to confirm that the game was successfully loaded or if an error occurs during loading.
+     * Both the binary save format and the older {@code .ser} files are accepted. An alert is displayed to confirm
+     * that the game was successfully loaded or if an error occurs during loading.
      * </p>
      */
     public void onLoad() {
-        File file = new File("sudoku.ser");
         try {
-
-            model.loadBoard(deserializeFromFile());
-            view.updateBoard(model);
-            view.alert("Load", "Game loaded successfully!");
-            System.out.println("Game loaded successfully!");
-        } catch (IOException | ClassNotFoundException e) {
+            if (SudokuIO.loadGame(model)) {
+                view.alert("Load", "Game loaded successfully!");
+                System.out.println("Game loaded successfully!");
+            }
+        } catch (IOException e) {
             view.alert("Load Error", "Failed to load the game: " + e.getMessage());
             e.printStackTrace();
         }
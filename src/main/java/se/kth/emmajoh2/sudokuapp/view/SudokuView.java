@@ -1,20 +1,26 @@
 package se.kth.emmajoh2.sudokuapp.view;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import se.kth.emmajoh2.sudokuapp.diagnostics.BoardUpdateEvent;
+import se.kth.emmajoh2.sudokuapp.diagnostics.Metrics;
+import se.kth.emmajoh2.sudokuapp.model.BoardListener;
+import se.kth.emmajoh2.sudokuapp.model.BoardSize;
 import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
 
-import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.*;
-
 /**
  * The {@code SudokuView} class represents the visual interface for the Sudoku game.
  * <p>
@@ -22,11 +28,67 @@ import static se.kth.emmajoh2.sudokuapp.model.MatrixGenerator.*;
  * to interact with the Sudoku puzzle. The view is responsible for updating the game board and handling
  * user input such as tile selections, button clicks, and menu actions.
  * </p>
+ * <p>
+ * The view listens to the model for board changes. Changed cells are collected in a dirty set and the
+ * affected labels are updated once per JavaFX pulse, just before layout, so a move touches one label and
+ * a burst of changes (hints, a new game) is applied in one go.
+ * </p>
+ * <p>
+ * When the model switches to another {@link BoardSize}, the tiles, the grid and the number buttons are built
+ * again for the new size on the next pulse, with smaller tiles on the larger boards.
+ * </p>
+ * <p>
+ * Numbers that occur twice in a row, column or section are shown in red as soon as they are entered, and on a
+ * 9x9 board the empty tiles can show pencil marks, the candidates the model keeps for them. A move can only change
+ * the conflicts of the peers (the cells in the same row, column or section) that hold the old or the new number
+ * of the cell, so only those are updated with it; with pencil marks shown, the empty peers are updated as well.
+ * </p>
  */
-public class  SudokuView extends BorderPane {
+public class  SudokuView extends BorderPane implements BoardListener {
+    // indexed by BoardSize ordinal: 9x9, 16x16, 25x25
+    private static final int[] TILE_SIZES = {32, 28, 24};
+    private static final Font[] FONTS = {
+            Font.font("Monospaced", FontWeight.NORMAL, 20),
+            Font.font("Monospaced", FontWeight.NORMAL, 16),
+            Font.font("Monospaced", FontWeight.NORMAL, 13)};
+    private static final Font[] BOLD_FONTS = {
+            Font.font("Monospaced", FontWeight.BOLD, 20),
+            Font.font("Monospaced", FontWeight.BOLD, 16),
+            Font.font("Monospaced", FontWeight.BOLD, 13)};
+    private static final Metrics.Histogram UPDATE_NANOS = Metrics.getDefault().histogram("view.update.nanos");
+    private static final Metrics.Counter CELLS_UPDATED = Metrics.getDefault().counter("view.cellsUpdated");
+    private static final Font PENCIL_FONT = Font.font("Monospaced", FontWeight.NORMAL, 8);
+    // the pencil marks of every candidate mask of a 9x9 board, three candidates per line
+    private static final String[] PENCIL_TEXTS = new String[1 << 9];
+    static {
+        for (int mask = 0; mask < PENCIL_TEXTS.length; mask++) {
+            StringBuilder text = new StringBuilder(11);
+            for (int digit = 1; digit <= 9; digit++) {
+                text.append((mask & 1 << (digit - 1)) != 0 ? (char) ('0' + digit) : ' ');
+                if (digit % 3 == 0 && digit < 9) text.append('\n');
+            }
+            PENCIL_TEXTS[mask] = text.toString();
+        }
+    }
+
+    private final SudokuModel model;
+    private final Controller controller;
+    private BoardSize boardSize;
+    private int gridSize;
+    private Font font;
+    private Font boldFont;
+    private boolean[] dirty;
+    private int[] shownValues; // the number each label shows, until its update on the next pulse
+    private int[] dirtyCells;
+    private int dirtyCount;
+    private boolean allDirty;
+    private boolean pencilMarks;
+    private final Runnable pulseListener = this::applyChanges;
+
     private transient Label[][] numberTiles; // the tiles/squares to show in the ui grid
     private transient GridPane numberPane;
     private transient MenuBar menuBar;
+    private transient RadioMenuItem[] sizeItems;
     private transient Button check;
     private transient Button hint;
 
@@ -37,16 +99,11 @@ public class  SudokuView extends BorderPane {
      */
     public SudokuView(SudokuModel model) {
         super();
-        model = new SudokuModel();
-        Controller controller = new Controller(model,this);
-        numberTiles = new Label[GRID_SIZE][GRID_SIZE];
-        initNumberTiles(controller, model);
-        numberPane = makeNumberPane();
+        this.model = model;
+        this.controller = new Controller(model,this);
+        buildBoard();
         this.setPadding(new Insets(10));
 
-        this.setCenter(numberPane);
-        this.setRight(createButtons(controller));
-
         check = new Button("Check");
         hint = new Button("Hint");
         VBox hintAndClear = new VBox();
@@ -56,120 +113,239 @@ public class  SudokuView extends BorderPane {
         hintAndClear.setSpacing(1);
         setLeft(hintAndClear);
 
-        createButtons(controller);
         addEventHandlers(controller);
         createMenuBar(controller);
+
+        // apply the collected changes once per pulse of the scene the view is shown in
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null) oldScene.removePreLayoutPulseListener(pulseListener);
+            if (newScene != null) newScene.addPreLayoutPulseListener(pulseListener);
+        });
+        model.addBoardListener(this);
     }
 
 
     /**
-     * Creates a vertical box (VBox) containing a set of number buttons (1-9) and a clear button ('C').
+     * Builds the tiles, the grid and the number buttons for the board size of the model.
+     * <p>
+     * Called by the constructor, and again whenever the model switches to another board size.
+     * </p>
+     */
+    private void buildBoard() {
+        boardSize = model.getBoardSize();
+        gridSize = boardSize.getGridSize();
+        font = FONTS[boardSize.ordinal()];
+        boldFont = BOLD_FONTS[boardSize.ordinal()];
+        dirty = new boolean[boardSize.getCells()];
+        shownValues = new int[boardSize.getCells()];
+        dirtyCells = new int[boardSize.getCells()];
+        dirtyCount = 0;
+        allDirty = false;
+
+        numberTiles = new Label[gridSize][gridSize];
+        initNumberTiles(controller, model);
+        numberPane = makeNumberPane();
+        this.setCenter(numberPane);
+        this.setRight(createButtons(controller));
+        if (sizeItems != null) sizeItems[boardSize.ordinal()].setSelected(true);
+    }
+
+    /**
+     * Creates a grid (GridPane) containing a set of number buttons (1 up to the grid size) and a clear button ('C').
      * <p>
      * Each button's label represents a number (or 'C' for clearing). When clicked, the button's label
      * is used to determine the value to send to the controller. The clear button ('C') sets the value
      * to 0, while the number buttons set their corresponding numeric values.
      * </p>
      * <p>
-     * The buttons are displayed vertically in the VBox. Each button is linked to a single event handler,
-     * which extracts the button's label, processes it, and calls the corresponding method in the controller.
+     * The buttons are displayed in one column on a 9x9 board and in two columns on the larger boards.
+     * Each button is linked to a single event handler, which extracts the button's label, processes it,
+     * and calls the corresponding method in the controller.
      * </p>
      *
      * @param controller The {@link Controller} responsible for handling the button actions.
-     * @return A {@link VBox} containing the number buttons and the clear button.
+     * @return A {@link GridPane} containing the number buttons and the clear button.
      */
-    private VBox createButtons(Controller controller) {
-        VBox numberButtons = new VBox();
+    private GridPane createButtons(Controller controller) {
+        GridPane numberButtons = new GridPane();
         numberButtons.setAlignment(Pos.CENTER);
         EventHandler<ActionEvent> buttonEventHandler = new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
                 Button sourceButton = (Button) actionEvent.getSource();
                 String buttonText = sourceButton.getText();
-                switch (buttonText) {
-                    case "1" : controller.onNumberButton(1); break;
-                    case "2" : controller.onNumberButton(2); break;
-                    case "3" : controller.onNumberButton(3); break;
-                    case "4" : controller.onNumberButton(4); break;
-                    case "5" : controller.onNumberButton(5); break;
-                    case "6" : controller.onNumberButton(6); break;
-                    case "7" : controller.onNumberButton(7); break;
-                    case "8" : controller.onNumberButton(8); break;
-                    case "9" : controller.onNumberButton(9); break;
-                    case "C" : controller.onNumberButton(0); break;
-                }
+                if (buttonText.equals("C")) controller.onNumberButton(0);
+                else controller.onNumberButton(Integer.parseInt(buttonText));
             }
         };
-        Button one      = new Button("1");
-        Button two      = new Button("2");
-        Button three    = new Button("3");
-        Button four     = new Button("4");
-        Button five     = new Button("5");
-        Button six      = new Button("6");
-        Button seven    = new Button("7");
-        Button eight    = new Button("8");
-        Button nine     = new Button("9");
-        Button clear    = new Button("C");
-
-        one.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        two.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        three.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        four.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        five.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        six.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        seven.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        eight.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        nine.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        clear.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
-        numberButtons.getChildren().addAll(one,two,three,four,five,six,seven,eight,nine,clear);
+        int columns = gridSize > 9 ? 2 : 1;
+        int rows = (gridSize + 1 + columns - 1) / columns;
+        for (int value = 1; value <= gridSize + 1; value++) {
+            Button button = new Button(value <= gridSize ? String.valueOf(value) : "C");
+            button.setMaxWidth(Double.MAX_VALUE);
+            button.addEventHandler(ActionEvent.ACTION, buttonEventHandler);
+            numberButtons.add(button, (value - 1) / rows, (value - 1) % rows);
+        }
         numberButtons.setPadding(new Insets(10));
-        numberButtons.setSpacing(1);
+        numberButtons.setHgap(1);
+        numberButtons.setVgap(1);
         setStyle( "-fx-background-color: #ffffff;");
 
         return numberButtons;
     }
 
     /**
-     * Updates the game board by refreshing the UI tiles based on the current model state.
+     * Updates the game board by refreshing all UI tiles based on the current model state, right away.
      * <p>
+     * The view normally follows the model by itself; this is only needed to force a full refresh.
      * The font of each tile is adjusted depending on whether it is an initial tile (bold) or a user-input tile (normal).
      * </p>
      */
     public void updateBoard(SudokuModel model) {
-        Font font = Font.font("Monospaced", FontWeight.NORMAL, 20);
-        Font boldFont = Font.font("Monospaced", FontWeight.BOLD, 20);
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                String newValue = model.getTile(row, col); // Get updated data from the model
-
-                Label tile = numberTiles[row][col];
-                tile.setText(newValue); // Update the text with the new value
-
-                // Update the font depending on whether it's an initial tile or not
-                if (model.isInitTile(row, col)) {
-                    tile.setFont(boldFont); // Use bold for pre-filled tiles
-                } else {
-                    tile.setFont(font); // Use normal font for user-modifiable tiles
-                }
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                updateTile(model, row, col);
+            }
+        }
+    }
+
+    /**
+     * Marks a cell as changed; its label is updated on the next pulse.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    @Override
+    public void cellChanged(int row, int col) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> cellChanged(row, col));
+            return;
+        }
+        int cell = row * gridSize + col;
+        if (allDirty || cell >= dirty.length) return;
+        markDirty(cell);
+        int oldValue = shownValues[cell], value = model.getTileValue(row, col);
+        boolean candidates = showsPencilMarks();
+        int sectionSize = boardSize.getSectionSize();
+        int firstRow = row - row % sectionSize, firstCol = col - col % sectionSize;
+        for (int i = 0; i < gridSize; i++) {
+            markPeer(row * gridSize + i, oldValue, value, candidates);
+            markPeer(i * gridSize + col, oldValue, value, candidates);
+            markPeer((firstRow + i / sectionSize) * gridSize + firstCol + i % sectionSize, oldValue, value, candidates);
+        }
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Marks a peer of a changed cell if the change can show on it: a peer holding the old or the new number may
+     * have gained or lost a conflict, and an empty peer a candidate.
+     */
+    private void markPeer(int peer, int oldValue, int value, boolean candidates) {
+        int peerValue = model.getTileValue(peer / gridSize, peer % gridSize);
+        if (peerValue == 0 ? candidates : peerValue == oldValue || peerValue == value) markDirty(peer);
+    }
+
+    private void markDirty(int cell) {
+        if (dirty[cell]) return;
+        dirty[cell] = true;
+        dirtyCells[dirtyCount++] = cell;
+    }
+
+    /**
+     * Shows or hides the candidates of the empty tiles. Pencil marks are only shown on 9x9 boards; the tiles of
+     * the larger boards are too small for them.
+     *
+     * @param show {@code true} to show the pencil marks.
+     */
+    public void setPencilMarks(boolean show) {
+        pencilMarks = show;
+        boardChanged();
+    }
+
+    private boolean showsPencilMarks() {
+        return pencilMarks && gridSize == 9;
+    }
 
-                // Optionally, you can update the tile's style or other properties here if needed
+    /**
+     * Marks the whole board as changed; all labels are updated on the next pulse.
+     */
+    @Override
+    public void boardChanged() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::boardChanged);
+            return;
+        }
+        allDirty = true;
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Applies the changes collected since the last pulse. Called by the scene before each layout pass; the
+     * pulses with changes are timed in the {@link Metrics} ({@code view.*}) and reported to the Flight Recorder
+     * as {@link BoardUpdateEvent}s.
+     */
+    private void applyChanges() {
+        if (!allDirty && dirtyCount == 0) return;
+        long start = System.nanoTime();
+        BoardUpdateEvent event = new BoardUpdateEvent();
+        event.begin();
+        boolean wholeBoard = allDirty;
+        boolean rebuilt = allDirty && model.getBoardSize() != boardSize;
+        int cells = allDirty ? boardSize.getCells() : dirtyCount;
+        if (rebuilt) {
+            buildBoard(); // the new tiles already show the model
+            if (getScene() != null && getScene().getWindow() != null) getScene().getWindow().sizeToScene();
+        } else {
+            if (allDirty) {
+                updateBoard(model);
+            } else {
+                for (int i = 0; i < dirtyCount; i++) {
+                    int cell = dirtyCells[i];
+                    updateTile(model, cell / gridSize, cell % gridSize);
+                }
             }
+            for (int i = 0; i < dirtyCount; i++) dirty[dirtyCells[i]] = false;
+            dirtyCount = 0;
+            allDirty = false;
+        }
+        UPDATE_NANOS.record(System.nanoTime() - start);
+        CELLS_UPDATED.add(cells);
+        if (event.shouldCommit()) {
+            event.cells = cells;
+            event.wholeBoard = wholeBoard;
+            event.rebuilt = rebuilt;
+            event.commit();
         }
     }
 
+    private void updateTile(SudokuModel model, int row, int col) {
+        Label tile = numberTiles[row][col];
+        shownValues[row * gridSize + col] = model.getTileValue(row, col);
+        if (showsPencilMarks() && model.getTileValue(row, col) == 0) {
+            tile.setText(PENCIL_TEXTS[model.getCandidates(row, col)]);
+            tile.setFont(PENCIL_FONT);
+            tile.setTextFill(Color.GRAY);
+            return;
+        }
+        tile.setText(model.getTile(row, col));
+        // bold for pre-filled tiles, normal font for user-modifiable tiles
+        tile.setFont(model.isInitTile(row, col) ? boldFont : font);
+        tile.setTextFill(model.isConflict(row, col) ? Color.RED : Color.BLACK);
+    }
+
     /**
      * Initializes the tiles displayed in the grid based on the current state of the model.
      * <p>
-     * This method is called by the constructor to populate the UI with the appropriate labels for each tile.
-     * called by constructor (only)
+     * This method is called by {@link #buildBoard()} to populate the UI with the appropriate labels for each tile.
      */
     private final void initNumberTiles(Controller controller, SudokuModel model) {
-        Font font = Font.font("Monospaced", FontWeight.NORMAL, 20);
-        Font boldFont = Font.font("Monospaced", FontWeight.BOLD, 20);
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
+        int tileSize = TILE_SIZES[boardSize.ordinal()];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
                 Label tile = new Label(model.getTile(row, col)); // data from model
-                tile.setPrefWidth(32);
-                tile.setPrefHeight(32);
+                shownValues[row * gridSize + col] = model.getTileValue(row, col);
+                tile.setPrefWidth(tileSize);
+                tile.setPrefHeight(tileSize);
                 if (model.isInitTile(row, col)) tile.setFont(boldFont);
                 else tile.setFont(font);
                 tile.setAlignment(Pos.CENTER);
@@ -181,16 +357,11 @@ public class  SudokuView extends BorderPane {
                  * When a tile is clicked, it passes the row, column, and the number selected to the controller.
                  * </p>
                  */
+                int tileRow = row, tileCol = col;
                 EventHandler<MouseEvent> tileClickHandler = new EventHandler<MouseEvent>() {
                     @Override
                     public void handle(MouseEvent event) {
-                        for (int row = 0; row < GRID_SIZE; row++) {
-                            for (int col = 0; col < GRID_SIZE; col++) {
-                                if (event.getSource() == numberTiles[row][col]) {
-                                    controller.onTileSelectedOrSomeSuch(row, col);
-                                }
-                            }
-                        }
+                        controller.onTileSelectedOrSomeSuch(tileRow, tileCol);
                     }
                 };
 
@@ -202,7 +373,7 @@ public class  SudokuView extends BorderPane {
     }
 
     /**
-     * Creates the 9x9 grid pane that holds the number tiles, organizing them into 3x3 sections.
+     * Creates the grid pane that holds the number tiles, organizing them into sections (3x3 on a 9x9 board).
      *
      * @return The constructed {@link GridPane} containing the number tiles.
      */
@@ -212,18 +383,19 @@ public class  SudokuView extends BorderPane {
         root.setStyle(
                 "-fx-border-color: black; -fx-border-width: 1.0px; -fx-background-color: #caf5d3;");
 
-        // create the 3*3 sections and add the number tiles
-        for (int srow = 0; srow < SECTIONS_PER_ROW; srow++) {
-            for (int scol = 0; scol < SECTIONS_PER_ROW; scol++) {
+        // create the sections and add the number tiles
+        int sectionSize = boardSize.getSectionSize();
+        for (int srow = 0; srow < sectionSize; srow++) {
+            for (int scol = 0; scol < sectionSize; scol++) {
                 GridPane section = new GridPane();
                 section.setStyle( "-fx-border-color: black; -fx-border-width: 0.5px;");
 
                 // add number tiles to this section
-                for (int row = 0; row < SECTION_SIZE; row++) {
-                    for (int col = 0; col < SECTION_SIZE; col++) {
+                for (int row = 0; row < sectionSize; row++) {
+                    for (int col = 0; col < sectionSize; col++) {
                         // calculate which tile and add
                         section.add(
-                                numberTiles[srow * SECTION_SIZE + row][scol * SECTION_SIZE + col],
+                                numberTiles[srow * sectionSize + row][scol * sectionSize + col],
                                 col, row);
                     }
                 }
@@ -270,8 +442,9 @@ public class  SudokuView extends BorderPane {
     /**
      * Creates the menu bar with "File", "Game", and "Help" menus.
      * <p>
-     * The "File" menu contains options to load and save the game, and exit the application.
-     * The "Game" menu allows starting new games with different difficulty levels.
+     * The "File" menu contains options to load and save the game, open a puzzle archive, and exit the application.
+     * The "Game" menu allows undoing and redoing moves (Ctrl+Z and Ctrl+Y), showing pencil marks (Ctrl+P), and
+     * starting new games with different difficulty levels and board sizes.
      * The "Help" menu contains options to reset the game, check the current state of the board,
      * display Sudoku rules, and get a hint.
      * Each menu item is connected to the corresponding method in the {@link Controller} to handle the action.
@@ -283,9 +456,11 @@ public class  SudokuView extends BorderPane {
         Menu fileMenu = new Menu("File");
         MenuItem loadItem = new MenuItem("Load Game");
         MenuItem saveItem = new MenuItem("Save Game");
+        MenuItem archiveItem = new MenuItem("Open Puzzle Archive");
         MenuItem exitItem = new MenuItem("Exit");
 
-        fileMenu.getItems().addAll(loadItem, saveItem, new SeparatorMenuItem(), exitItem);
+        fileMenu.getItems().addAll(loadItem, saveItem, new SeparatorMenuItem(), archiveItem,
+                new SeparatorMenuItem(), exitItem);
         EventHandler<ActionEvent> loadHandler = new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
@@ -298,14 +473,21 @@ public class  SudokuView extends BorderPane {
                 controller.onSave();
             }
         };
+        EventHandler<ActionEvent> archiveHandler = new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                controller.onOpenArchive();
+            }
+        };
         EventHandler<ActionEvent> exitHandler = new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
-                System.exit(0);     //Save data?
+                Platform.exit();    // the autosave is flushed when the application stops
             }
         };
         loadItem.addEventHandler(ActionEvent.ACTION, loadHandler);
         saveItem.addEventHandler(ActionEvent.ACTION, saveHandler);
+        archiveItem.addEventHandler(ActionEvent.ACTION, archiveHandler);
         exitItem.addEventHandler(ActionEvent.ACTION, exitHandler);
 
         Menu gameMenu = new Menu("Game");
@@ -314,7 +496,36 @@ public class  SudokuView extends BorderPane {
         MenuItem mediumItem = new MenuItem("New Medium Game");
         MenuItem hardItem = new MenuItem("New Hard Game");
 
-        gameMenu.getItems().addAll(newItem, new SeparatorMenuItem(), easyItem, mediumItem, hardItem);
+        CheckMenuItem pencilItem = new CheckMenuItem("Pencil Marks");
+        pencilItem.setAccelerator(KeyCombination.keyCombination("Shortcut+P"));
+        MenuItem undoItem = new MenuItem("Undo");
+        MenuItem redoItem = new MenuItem("Redo");
+        undoItem.setAccelerator(KeyCombination.keyCombination("Shortcut+Z"));
+        redoItem.setAccelerator(KeyCombination.keyCombination("Shortcut+Y"));
+
+        gameMenu.getItems().addAll(undoItem, redoItem, pencilItem, new SeparatorMenuItem(),
+                newItem, new SeparatorMenuItem(), easyItem, mediumItem, hardItem);
+        EventHandler<ActionEvent> undoHandler = new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                controller.onUndo();
+            }
+        };
+        EventHandler<ActionEvent> redoHandler = new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                controller.onRedo();
+            }
+        };
+        EventHandler<ActionEvent> pencilHandler = new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent actionEvent) {
+                controller.onPencilMarks(pencilItem.isSelected());
+            }
+        };
+        pencilItem.addEventHandler(ActionEvent.ACTION, pencilHandler);
+        undoItem.addEventHandler(ActionEvent.ACTION, undoHandler);
+        redoItem.addEventHandler(ActionEvent.ACTION, redoHandler);
         EventHandler<ActionEvent> newGameHandler = new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent actionEvent) {
@@ -348,6 +559,27 @@ public class  SudokuView extends BorderPane {
         mediumItem.addEventHandler(ActionEvent.ACTION, mediumHandler);
         hardItem.addEventHandler(ActionEvent.ACTION, hardHandler);
 
+        // one radio item per board size, selecting one starts a new game of that size
+        Menu sizeMenu = new Menu("Board Size");
+        ToggleGroup sizeGroup = new ToggleGroup();
+        sizeItems = new RadioMenuItem[BoardSize.values().length];
+        for (BoardSize size : BoardSize.values()) {
+            RadioMenuItem sizeItem = new RadioMenuItem(size.toString());
+            sizeItem.setToggleGroup(sizeGroup);
+            sizeItem.setSelected(size == boardSize);
+            sizeItem.addEventHandler(ActionEvent.ACTION, new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent actionEvent) {
+                    controller.onBoardSize(size);
+                    // stays on the old size if no puzzle of the new size was found
+                    sizeItems[model.getBoardSize().ordinal()].setSelected(true);
+                }
+            });
+            sizeItems[size.ordinal()] = sizeItem;
+        }
+        sizeMenu.getItems().addAll(sizeItems);
+        gameMenu.getItems().addAll(new SeparatorMenuItem(), sizeMenu);
+
         Menu helpMenu = new Menu("Help");
         MenuItem clearItem = new MenuItem("Reset Game");
         MenuItem checkItem = new MenuItem("Check");
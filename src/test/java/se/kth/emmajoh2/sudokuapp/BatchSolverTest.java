@@ -0,0 +1,121 @@
+package se.kth.emmajoh2.sudokuapp;
+
+import org.junit.jupiter.api.Test;
+import se.kth.emmajoh2.sudokuapp.model.SolverBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams a mix of puzzles through a {@link BatchSolver} with read buffers from one line up to the whole input, and
+ * checks that every puzzle gets its result line in input order.
+ */
+class BatchSolverTest {
+    private static final String PUZZLE =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    private static final String SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+    private static final String EMPTY = ".".repeat(81);
+    // the last cell of the first row can only hold a 9, which the cell below it already holds
+    private static final String DEAD_END = "12345678." + "........9" + ".".repeat(63);
+    private static final String CONFLICT = "11" + ".".repeat(79);
+    private static final String[] STATUSES = {"unique", "multiple", "none", "invalid"};
+    private static final String[] OTHERS = {EMPTY, DEAD_END, CONFLICT, PUZZLE.substring(1), PUZZLE.replace('.', 'x')};
+    private static final int[] OTHER_STATUSES = {1, 2, 2, 3, 3};
+
+    @Test
+    void solvesInInputOrderAcrossChunks() throws Exception {
+        StringBuilder input = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        int[] counts = new int[4];
+        for (int i = 0; i < 60; i++) {
+            // every unique puzzle gets one more given, so each line is different
+            String unique = SOLUTION.substring(0, i) + PUZZLE.substring(i);
+            String line;
+            switch (i % 6) {
+                case 0:
+                    line = unique + "\r\n"; // written on Windows
+                    break;
+                case 1:
+                    line = unique.replace('.', '0') + " EASY\n"; // with zeros and a level, like BatchGenerator
+                    unique = unique.replace('.', '0');
+                    break;
+                case 2:
+                    line = "\n\r\n" + unique + "\n";
+                    break;
+                default:
+                    line = unique + "\n";
+            }
+            input.append(line);
+            expected.add(unique + " " + SOLUTION + " unique");
+            counts[0]++;
+            if (i % 4 == 3) {
+                int other = i / 4 % OTHERS.length;
+                input.append(OTHERS[other]).append(i % 8 == 3 ? "\r\n" : "\n");
+                expected.add(OTHERS[other] + " - " + STATUSES[OTHER_STATUSES[other]]);
+                counts[OTHER_STATUSES[other]]++;
+            }
+        }
+        input.append(PUZZLE); // the last line has no line break
+        expected.add(PUZZLE + " " + SOLUTION + " unique");
+        counts[0]++;
+
+        byte[] bytes = input.toString().getBytes(StandardCharsets.US_ASCII);
+        String output = String.join("\n", expected) + "\n";
+        // from the longest line, 87 bytes, up to the whole input in one chunk
+        for (int chunkBytes : new int[]{87, 100, 250, 1000, bytes.length + 1}) {
+            for (int threads : new int[]{1, 4}) {
+                for (int readAhead : new int[]{1, 3}) {
+                    String setup = chunkBytes + " bytes, " + threads + " threads, read-ahead " + readAhead;
+                    BatchSolver solver = new BatchSolver(threads, SolverBackend.BITMASK, chunkBytes, readAhead);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    long puzzles = solver.run(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                            Channels.newChannel(out));
+                    assertEquals(output, out.toString(StandardCharsets.US_ASCII), setup);
+                    assertEquals(expected.size(), puzzles, setup);
+                    assertEquals(counts[0], solver.getUniqueCount(), setup);
+                    assertEquals(counts[1], solver.getMultipleCount(), setup);
+                    assertEquals(counts[2], solver.getUnsolvableCount(), setup);
+                    assertEquals(counts[3], solver.getInvalidCount(), setup);
+                    assertTrue(solver.getMaxNanos() > 0, setup);
+                }
+            }
+        }
+        assertTrue(counts[1] > 0 && counts[2] > 1 && counts[3] > 1, "every status occurs");
+    }
+
+    @Test
+    void solvesWithBothBackends() throws Exception {
+        byte[] input = (PUZZLE + "\n" + EMPTY + "\n" + DEAD_END + "\n").getBytes(StandardCharsets.US_ASCII);
+        for (SolverBackend backend : SolverBackend.values()) {
+            BatchSolver solver = new BatchSolver(2, backend, 100, 2);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(3, solver.run(Channels.newChannel(new ByteArrayInputStream(input)), Channels.newChannel(out)));
+            assertEquals(PUZZLE + " " + SOLUTION + " unique\n" + EMPTY + " - multiple\n" + DEAD_END + " - none\n",
+                    out.toString(StandardCharsets.US_ASCII), backend.name());
+        }
+    }
+
+    @Test
+    void handlesEmptyInputAndLongLines() throws Exception {
+        BatchSolver solver = new BatchSolver(1, SolverBackend.BITMASK, 83, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, solver.run(Channels.newChannel(new ByteArrayInputStream("\n\r\n".getBytes())),
+                Channels.newChannel(out)));
+        assertEquals(0, out.size());
+
+        byte[] longLine = (PUZZLE + " " + SOLUTION + "\n").getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> new BatchSolver(1, SolverBackend.BITMASK, 83, 1)
+                .run(Channels.newChannel(new ByteArrayInputStream(longLine)), Channels.newChannel(out)));
+        assertThrows(IllegalArgumentException.class, () -> new BatchSolver(1, SolverBackend.BITMASK, 82, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BatchSolver(0, SolverBackend.BITMASK, 1024, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BatchSolver(1, SolverBackend.BITMASK, 1024, 0));
+    }
+}
@@ -0,0 +1,74 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link AutosaveService#recover()} restores the game that was autosaved, also when writing a
+ * snapshot failed.
+ */
+class AutosaveServiceTest {
+    private static final long SETTLE_MILLIS = 3 * AutosaveService.FLUSH_DELAY_MILLIS;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversLoggedMoves() throws IOException, InterruptedException {
+        SudokuModel model = new SudokuModel(TestPuzzles.source());
+        try (AutosaveService autosave = new AutosaveService(model, directory)) {
+            autosave.start();
+            TestPuzzles.play(model, 12);
+            model.undo();
+            Thread.sleep(SETTLE_MILLIS);
+        }
+        SudokuModel recovered = new SudokuModel(TestPuzzles.source());
+        assertTrue(new AutosaveService(recovered, directory).recover());
+        BoardCodecTest.assertSameBoard(model.getPackedBoard(), recovered.getPackedBoard());
+    }
+
+    @Test
+    void recoversHistoryLongerThanDefaultJournal() throws IOException, InterruptedException {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 1 << 16);
+        int moves = MoveJournal.DEFAULT_CAPACITY + 904;
+        try (AutosaveService autosave = new AutosaveService(model, directory)) {
+            autosave.start();
+            for (int i = 0; i < moves; i++) model.addNumber(0, 1, i % 9 + 1);
+            Thread.sleep(SETTLE_MILLIS);
+        }
+        SudokuModel recovered = new SudokuModel(TestPuzzles.source(), 1 << 16);
+        assertTrue(new AutosaveService(recovered, directory).recover());
+        BoardCodecTest.assertSameBoard(model.getPackedBoard(), recovered.getPackedBoard());
+        int undone = 0;
+        while (recovered.undo()) undone++;
+        assertEquals(moves, undone);
+    }
+
+    @Test
+    void neverLogsMovesAgainstSnapshotOfAnotherGame() throws IOException, InterruptedException {
+        SudokuModel model = new SudokuModel(TestPuzzles.source());
+        PackedBoard firstGame = new PackedBoard();
+        try (AutosaveService autosave = new AutosaveService(model, directory)) {
+            autosave.start();
+            TestPuzzles.play(model, 10);
+            Thread.sleep(SETTLE_MILLIS); // logged against the snapshot of the first game
+            firstGame.copyFrom(model.getPackedBoard());
+
+            // a directory in the way of the temporary file makes every snapshot fail from now on
+            Files.createDirectory(directory.resolve(AutosaveService.SNAPSHOT_FILE + ".tmp"));
+            model.initGame(SudokuLevel.HARD);
+            Thread.sleep(SETTLE_MILLIS);
+            TestPuzzles.play(model, 20);
+            Thread.sleep(SETTLE_MILLIS);
+        }
+        SudokuModel recovered = new SudokuModel(TestPuzzles.source());
+        assertTrue(new AutosaveService(recovered, directory).recover());
+        BoardCodecTest.assertSameBoard(firstGame, recovered.getPackedBoard());
+    }
+}
@@ -0,0 +1,103 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that every board size survives a {@link BoardCodec} round trip and that damaged records are rejected
+ * without changing the board they are read into.
+ */
+class BoardCodecTest {
+
+    @Test
+    void roundTripsEverySize() throws IOException {
+        for (BoardSize size : BoardSize.values()) {
+            PackedBoard board = board(size);
+            for (SudokuLevel level : SudokuLevel.values()) {
+                ByteBuffer buffer = ByteBuffer.allocate(3 + BoardCodec.recordSize(size));
+                buffer.position(3); // records do not have to start at the beginning of the buffer
+                BoardCodec.encode(buffer, board, level);
+                assertFalse(buffer.hasRemaining(), size + " record is not " + BoardCodec.recordSize(size) + " bytes");
+
+                buffer.position(3);
+                assertSame(size, BoardCodec.peekSize(buffer));
+                assertEquals(3, buffer.position());
+                PackedBoard decoded = new PackedBoard(size);
+                assertSame(level, BoardCodec.decode(buffer, decoded));
+                assertFalse(buffer.hasRemaining());
+                assertSameBoard(board, decoded);
+            }
+        }
+        assertEquals(103, BoardCodec.RECORD_SIZE);
+    }
+
+    @Test
+    void rejectsFlippedBytes() {
+        for (BoardSize size : BoardSize.values()) {
+            byte[] record = encode(board(size));
+            for (int i = 0; i < record.length; i++) {
+                byte[] damaged = record.clone();
+                damaged[i] ^= (byte) (1 << (i & 7));
+                assertRejected(size, damaged, damaged.length, size + " record with byte " + i + " flipped");
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedRecords() {
+        for (BoardSize size : BoardSize.values()) {
+            byte[] record = encode(board(size));
+            for (int length = 0; length < record.length; length++) {
+                assertRejected(size, record, length, size + " record cut to " + length + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void rejectsRecordOfAnotherSize() {
+        byte[] record = encode(board(BoardSize.SIXTEEN));
+        assertRejected(BoardSize.NINE, record, record.length, "16x16 record read into a 9x9 board");
+        assertRejected(BoardSize.TWENTY_FIVE, record, record.length, "16x16 record read into a 25x25 board");
+    }
+
+    /**
+     * Returns a board with the pattern solution, a third of its cells pre-filled, and correct, wrong and empty
+     * cells among the others.
+     */
+    static PackedBoard board(BoardSize size) {
+        int gridSize = size.getGridSize();
+        int[] solution = TestPuzzles.patternSolution(size);
+        PackedBoard board = new PackedBoard(size);
+        for (int cell = 0; cell < board.getCells(); cell++) {
+            boolean given = cell % 3 == 0;
+            int current = given || cell % 3 == 1 ? solution[cell] : cell % 5 == 0 ? 0 : solution[cell] % gridSize + 1;
+            board.set(cell, current, solution[cell], given);
+        }
+        return board;
+    }
+
+    static void assertSameBoard(PackedBoard expected, PackedBoard actual) {
+        assertSame(expected.getSize(), actual.getSize());
+        for (int cell = 0; cell < expected.getCells(); cell++) {
+            assertEquals(expected.getCurrent(cell), actual.getCurrent(cell), "current value of cell " + cell);
+            assertEquals(expected.getSolution(cell), actual.getSolution(cell), "solution of cell " + cell);
+            assertEquals(expected.isGiven(cell), actual.isGiven(cell), "pre-filled flag of cell " + cell);
+        }
+    }
+
+    private static byte[] encode(PackedBoard board) {
+        ByteBuffer buffer = ByteBuffer.allocate(BoardCodec.recordSize(board.getSize()));
+        BoardCodec.encode(buffer, board, SudokuLevel.HARD);
+        return buffer.array();
+    }
+
+    private static void assertRejected(BoardSize size, byte[] record, int length, String message) {
+        PackedBoard target = board(size);
+        assertThrows(IOException.class, () -> BoardCodec.decode(ByteBuffer.wrap(record, 0, length), target), message);
+        assertSameBoard(board(size), target);
+    }
+}
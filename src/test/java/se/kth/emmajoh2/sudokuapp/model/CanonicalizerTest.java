@@ -0,0 +1,53 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link Canonicalizer} maps every variant of a puzzle to the same canonical form, and different
+ * puzzles to different ones.
+ */
+class CanonicalizerTest {
+
+    @Test
+    void variantsHaveSameCanonicalForm() {
+        SplittableRandom random = new SplittableRandom(16);
+        Puzzle puzzle = MatrixGenerator.generatePuzzle(SudokuLevel.HARD, new SudokuSolver(), random);
+        Canonicalizer canonicalizer = new Canonicalizer();
+        int[] form = canonicalizer.canonicalForm(puzzle);
+        Fingerprint fingerprint = canonicalizer.fingerprint(puzzle);
+        for (int i = 0; i < 1000; i++) {
+            Puzzle variant = GridTransform.randomize(puzzle, random);
+            assertArrayEquals(form, canonicalizer.canonicalForm(variant), "variant " + i + ": " + variant.toLine());
+            assertEquals(fingerprint, canonicalizer.fingerprint(variant));
+        }
+        assertArrayEquals(form, canonicalizer.canonicalForm(form), "a canonical form is its own canonical form");
+    }
+
+    @Test
+    void differentPuzzlesHaveDifferentForms() {
+        SplittableRandom random = new SplittableRandom(17);
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Puzzle first = MatrixGenerator.generatePuzzle(SudokuLevel.EASY, new SudokuSolver(), random);
+        Puzzle second = MatrixGenerator.generatePuzzle(SudokuLevel.EASY, new SudokuSolver(), random);
+        assertNotEquals(canonicalizer.fingerprint(first), canonicalizer.fingerprint(second));
+
+        // one more clue makes it another puzzle
+        int[] givens = first.copyGivens();
+        int cell = 0;
+        while (givens[cell] != 0) cell++;
+        givens[cell] = first.getSolution(cell / 9, cell % 9);
+        assertNotEquals(canonicalizer.fingerprint(first), canonicalizer.fingerprint(givens));
+    }
+
+    @Test
+    void rejectsOtherSizes() {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        assertThrows(IllegalArgumentException.class,
+                () -> canonicalizer.fingerprint(TestPuzzles.puzzle(BoardSize.SIXTEEN, SudokuLevel.EASY)));
+        assertThrows(IllegalArgumentException.class, () -> canonicalizer.canonicalForm(new int[80]));
+    }
+}
@@ -0,0 +1,93 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the stamps and counts of {@link ConcurrentBoard} with several players moving on the same board at once.
+ */
+class ConcurrentBoardTest {
+    private static final int PLAYERS = 4;
+    private static final int MOVES = 200_000;
+
+    @Test
+    void rejectsStaleAndGivenMoves() {
+        Puzzle puzzle = TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.EASY);
+        ConcurrentBoard board = new ConcurrentBoard(puzzle);
+        long stamp = board.read(1);
+        assertEquals(0, ConcurrentBoard.versionOf(stamp));
+        long moved = board.compareAndSet(1, stamp, 5, 1);
+        assertEquals(5, ConcurrentBoard.valueOf(moved));
+        assertEquals(1, ConcurrentBoard.playerOf(moved));
+        assertEquals(1, ConcurrentBoard.versionOf(moved));
+        assertEquals(ConcurrentBoard.CONFLICT, board.compareAndSet(1, stamp, 6, 2), "the stamp is stale");
+        assertEquals(5, board.getValue(1));
+
+        assertTrue(ConcurrentBoard.isGiven(board.read(0)));
+        assertEquals(ConcurrentBoard.GIVEN, board.set(0, 1, 1));
+        assertEquals(ConcurrentBoard.GIVEN, board.compareAndSet(0, board.read(0), 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> board.set(1, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> board.set(1, 1, 0));
+    }
+
+    @Test
+    void losesNoUpdateUnderContention() throws Exception {
+        Puzzle puzzle = TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.EASY);
+        ConcurrentBoard board = new ConcurrentBoard(puzzle);
+        ExecutorService executor = Executors.newFixedThreadPool(PLAYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        try {
+            for (int player = 1; player <= PLAYERS; player++) {
+                int id = player;
+                Callable<Long> moves = () -> {
+                    SplittableRandom random = new SplittableRandom(id);
+                    long made = 0;
+                    start.await();
+                    for (int i = 0; i < MOVES; i++) {
+                        int cell = 1 + 2 * random.nextInt(40); // only the empty cells, where the players collide
+                        int value = random.nextInt(10);
+                        long stamp = (i & 1) == 0 ? board.set(cell, value, id)
+                                : board.compareAndSet(cell, board.read(cell), value, id);
+                        if (stamp >= 0) made++;
+                    }
+                    return made;
+                };
+                results.add(executor.submit(moves));
+            }
+            start.countDown();
+            long made = 0;
+            for (Future<Long> result : results) made += result.get();
+
+            // every successful move bumps the version of its cell exactly once
+            long versions = 0;
+            for (int cell = 0; cell < 81; cell++) versions += ConcurrentBoard.versionOf(board.read(cell));
+            assertEquals(made, versions, "a move was lost");
+            assertTrue(made >= (long) PLAYERS * MOVES / 2, "every set() must succeed");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PackedBoard copy = board.toPackedBoard();
+        int filled = 0, correct = 0, wrong = 0;
+        for (int cell = 0; cell < copy.getCells(); cell++) {
+            if (copy.getCurrent(cell) == 0) continue;
+            filled++;
+            if (copy.isCorrect(cell)) correct++;
+            else wrong++;
+        }
+        assertEquals(filled, board.getFilledCount());
+        assertEquals(correct, board.getCorrectCount());
+        assertEquals(wrong, board.getWrongCount());
+    }
+}
@@ -0,0 +1,67 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link DedupIndex} keeps every fingerprint while its segments grow, and counts each one once when
+ * several threads add the same fingerprints at the same time.
+ */
+class DedupIndexTest {
+
+    @Test
+    void keepsFingerprintsWhileGrowing() {
+        DedupIndex index = new DedupIndex(); // the smallest segments, which have to grow many times
+        int count = 200_000;
+        for (int i = 0; i < count; i++) assertTrue(index.add(fingerprint(i)), "fingerprint " + i + " is new");
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(index.contains(fingerprint(i)), "fingerprint " + i + " was lost");
+            assertFalse(index.add(fingerprint(i)), "fingerprint " + i + " was added twice");
+        }
+        for (int i = count; i < 2 * count; i++) assertFalse(index.contains(fingerprint(i)));
+        assertEquals(count, index.size());
+    }
+
+    @Test
+    void countsConcurrentAddsOnce() throws Exception {
+        DedupIndex index = new DedupIndex();
+        int count = 100_000, threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> added = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int offset = thread * count / threads;
+                // every thread adds all fingerprints, starting at another one
+                Callable<Integer> task = () -> {
+                    int news = 0;
+                    for (int i = 0; i < count; i++) if (index.add(fingerprint((offset + i) % count))) news++;
+                    return news;
+                };
+                added.add(executor.submit(task));
+            }
+            int news = 0;
+            for (Future<Integer> future : added) news += future.get();
+            assertEquals(count, news, "a fingerprint was added by more than one thread, or by none");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) assertTrue(index.contains(fingerprint(i)));
+    }
+
+    /**
+     * Returns a fingerprint spread over all stripes, never the all-zero pair the index uses for empty slots.
+     */
+    private static Fingerprint fingerprint(long i) {
+        return new Fingerprint((i + 1) * 0x9E3779B97F4A7C15L, Long.rotateLeft(i, 17) ^ 0x5DEECE66DL);
+    }
+}
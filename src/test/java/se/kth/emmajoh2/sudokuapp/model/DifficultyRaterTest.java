@@ -0,0 +1,155 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the {@link DifficultyRater} on puzzles of a known level, the order of its ratings, the parallel batch and
+ * the rated puzzles of the {@link MatrixGenerator}.
+ */
+class DifficultyRaterTest {
+    private static final String EASY =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    private static final String EASY_SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+    private static final String MEDIUM =
+            ".....269.......1.75..4........7........82.35..4......1.7.......386.....49.12.7...";
+    private static final String MEDIUM_SOLUTION =
+            "714382695823956147569471238635719482197824356248563971472638519386195724951247863";
+    // has one solution, but the techniques of the hint engine cannot place a single digit
+    private static final String GUESS_ONLY =
+            "534.7.....7..9.34...834..678597614234...537.1713.24.5......72.4287419.3..4.2...7.";
+
+    @Test
+    void ratesKnownPuzzles() {
+        DifficultyRater rater = new DifficultyRater();
+        DifficultyRater.Rating easy = rater.rate(puzzle(EASY, EASY_SOLUTION));
+        assertTrue(easy.isSolved(), easy.toString());
+        assertSame(Technique.HIDDEN_SINGLE, easy.getHardest(), easy.toString());
+        assertEquals(51, easy.getSteps(), easy.toString());
+        assertEquals(0, easy.getEliminations(), easy.toString());
+        assertSame(SudokuLevel.EASY, easy.getLevel());
+
+        DifficultyRater.Rating medium = rater.rate(puzzle(MEDIUM, MEDIUM_SOLUTION));
+        assertTrue(medium.isSolved(), medium.toString());
+        assertSame(Technique.POINTING_PAIR, medium.getHardest(), medium.toString());
+        assertEquals(58, medium.getSteps(), medium.toString());
+        assertEquals(1, medium.getEliminations(), medium.toString());
+        assertSame(SudokuLevel.MEDIUM, medium.getLevel());
+
+        int[] guessOnly = SolverEngineTest.parse(GUESS_ONLY);
+        DifficultyRater.Rating hard = rater.rate(guessOnly);
+        assertFalse(hard.isSolved(), hard.toString());
+        assertNull(hard.getHardest(), hard.toString());
+        assertEquals(0, hard.getSteps(), hard.toString());
+        assertSame(SudokuLevel.HARD, hard.getLevel());
+        assertArrayEquals(SolverEngineTest.parse(GUESS_ONLY), guessOnly, "the rater changed the grid");
+
+        int[] conflicting = SolverEngineTest.parse(EASY);
+        conflicting[2] = 5; // twice in the first row
+        assertFalse(rater.rate(conflicting).isSolved());
+        assertThrows(IllegalArgumentException.class, () -> rater.rate(new int[80]));
+    }
+
+    @Test
+    void ratesSolvedAndOtherSizes() {
+        DifficultyRater rater = new DifficultyRater();
+        for (BoardSize size : BoardSize.values()) {
+            DifficultyRater.Rating solved = rater.rate(TestPuzzles.patternSolution(size));
+            assertTrue(solved.isSolved(), size.toString());
+            assertNull(solved.getHardest(), size.toString());
+            assertEquals(0, solved.getSteps(), size.toString());
+            assertSame(SudokuLevel.EASY, solved.getLevel(), size.toString());
+
+            // without its first row and column every other row and column misses one digit
+            int gridSize = size.getGridSize();
+            int[] grid = TestPuzzles.patternSolution(size);
+            for (int i = 0; i < gridSize; i++) {
+                grid[i] = 0;
+                grid[i * gridSize] = 0;
+            }
+            DifficultyRater.Rating rating = rater.rate(grid);
+            assertTrue(rating.isSolved(), size + ": " + rating);
+            assertSame(Technique.HIDDEN_SINGLE, rating.getHardest(), size + ": " + rating);
+            assertEquals(2 * gridSize - 1, rating.getSteps(), size + ": " + rating);
+        }
+        assertSame(SudokuLevel.EASY, rater.rate(puzzle(EASY, EASY_SOLUTION)).getLevel(), "after the larger sizes");
+    }
+
+    @Test
+    void ordersRatings() {
+        DifficultyRater.Rating none = new DifficultyRater.Rating(null, 0, 0, true);
+        DifficultyRater.Rating hidden = new DifficultyRater.Rating(Technique.HIDDEN_SINGLE, 40, 0, true);
+        DifficultyRater.Rating longer = new DifficultyRater.Rating(Technique.HIDDEN_SINGLE, 50, 0, true);
+        DifficultyRater.Rating naked = new DifficultyRater.Rating(Technique.NAKED_SINGLE, 10, 0, true);
+        DifficultyRater.Rating pointing = new DifficultyRater.Rating(Technique.POINTING_PAIR, 50, 1, true);
+        DifficultyRater.Rating morePointing = new DifficultyRater.Rating(Technique.POINTING_PAIR, 40, 3, true);
+        DifficultyRater.Rating quad = new DifficultyRater.Rating(Technique.NAKED_QUAD, 50, 1, true);
+        DifficultyRater.Rating unsolvedEasy = new DifficultyRater.Rating(Technique.HIDDEN_SINGLE, 5, 0, false);
+        DifficultyRater.Rating unsolved = new DifficultyRater.Rating(Technique.NAKED_PAIR, 20, 4, false);
+        DifficultyRater.Rating[] ordered =
+                {none, hidden, longer, naked, pointing, morePointing, quad, unsolvedEasy, unsolved};
+        SudokuLevel[] levels = {SudokuLevel.EASY, SudokuLevel.EASY, SudokuLevel.EASY, SudokuLevel.MEDIUM,
+                SudokuLevel.MEDIUM, SudokuLevel.MEDIUM, SudokuLevel.MEDIUM, SudokuLevel.HARD, SudokuLevel.HARD};
+        for (int i = 0; i < ordered.length; i++) {
+            assertSame(levels[i], ordered[i].getLevel(), ordered[i].toString());
+            for (int j = 0; j < ordered.length; j++) {
+                assertEquals(Integer.compare(i, j), Integer.signum(ordered[i].compareTo(ordered[j])),
+                        ordered[i] + " vs " + ordered[j]);
+            }
+        }
+        assertEquals(0, hidden.compareTo(new DifficultyRater.Rating(Technique.HIDDEN_SINGLE, 40, 0, true)));
+    }
+
+    @Test
+    void ratesBatchInParallel() {
+        SplittableRandom random = new SplittableRandom(5);
+        SolverEngine solver = SolverBackend.BITMASK.newEngine();
+        List<Puzzle> puzzles = new ArrayList<>();
+        for (int i = 0; i < 48; i++) {
+            puzzles.add(MatrixGenerator.generatePuzzle(SudokuLevel.values()[i % 3], solver, random));
+        }
+        puzzles.add(puzzle(GUESS_ONLY, EASY_SOLUTION));
+        puzzles.add(TestPuzzles.puzzle(BoardSize.SIXTEEN, SudokuLevel.EASY));
+
+        List<DifficultyRater.Rating> ratings = DifficultyRater.rateAll(puzzles);
+        assertEquals(puzzles.size(), ratings.size());
+        DifficultyRater rater = new DifficultyRater();
+        for (int i = 0; i < puzzles.size(); i++) {
+            DifficultyRater.Rating expected = rater.rate(puzzles.get(i));
+            DifficultyRater.Rating actual = ratings.get(i);
+            assertEquals(expected.toString(), actual.toString(), "puzzle " + i);
+            assertEquals(expected.getEliminations(), actual.getEliminations(), "puzzle " + i);
+            assertEquals(0, expected.compareTo(actual), "puzzle " + i);
+        }
+        assertTrue(DifficultyRater.rateAll(List.of()).isEmpty());
+    }
+
+    @Test
+    void generatesPuzzlesOfRatedLevel() {
+        DifficultyRater rater = new DifficultyRater();
+        SudokuSolver solver = new SudokuSolver();
+        for (SudokuLevel level : SudokuLevel.values()) {
+            for (long seed = 1; seed <= 3; seed++) {
+                Puzzle puzzle = MatrixGenerator.generateRatedPuzzle(level, solver, rater, new SplittableRandom(seed));
+                assertSame(level, puzzle.getLevel(), level + " seed " + seed);
+                assertSame(level, rater.rate(puzzle).getLevel(), level + " seed " + seed);
+                int[] givens = puzzle.copyGivens();
+                assertEquals(1, solver.countSolutions(givens, 2), level + " seed " + seed);
+                assertTrue(solver.solve(givens));
+                for (int cell = 0; cell < givens.length; cell++) {
+                    assertEquals(puzzle.getSolution(cell / 9, cell % 9), givens[cell], level + " seed " + seed);
+                }
+            }
+        }
+    }
+
+    private static Puzzle puzzle(String givens, String solution) {
+        return new Puzzle(SudokuLevel.EASY, SolverEngineTest.parse(givens), SolverEngineTest.parse(solution));
+    }
+}
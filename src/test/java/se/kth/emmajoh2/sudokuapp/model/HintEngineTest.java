@@ -0,0 +1,153 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the steps of a {@link HintEngine} on grids whose next step needs a known {@link Technique}, found by
+ * solving minimal puzzles of the grid in {@link SolverEngineTest} one hint at a time.
+ */
+class HintEngineTest {
+    private static final String PUZZLE =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    private static final String SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+    // needs a technique the engine does not know
+    private static final String STUCK =
+            "534.7.....7..9.34...834..678597614234...537.1713.24.5......72.4287419.3..4.2...7.";
+
+    @Test
+    void findsHiddenSingle() {
+        assertHint("5.4.......7....3....83...6..597..4.3....5...1.....4........7..428..19....4.2...7.",
+                0, 1, 3, Technique.HIDDEN_SINGLE);
+    }
+
+    @Test
+    void findsNakedSingle() {
+        assertHint("534678912.7...5348198...56785..6....4...53..17.3..4.5....5.728..87.....5.45...17.",
+                2, 5, 2, Technique.NAKED_SINGLE);
+    }
+
+    @Test
+    void findsPointingPair() {
+        assertHint("534678912.7...5348198..256785..6....4...53..17.3..4.5....5.728..87.....5.45...17.",
+                1, 2, 2, Technique.POINTING_PAIR);
+    }
+
+    @Test
+    void findsBoxLineReduction() {
+        assertHint("534.7.....7....34...834..678597614234...5.7.17....4........72.4287419.3..4.2...7.",
+                5, 7, 5, Technique.BOX_LINE_REDUCTION);
+    }
+
+    @Test
+    void findsNakedSubsets() {
+        assertHint("534.7.....7....34...834..678597614234...5.7.17....4.5......72.4287419.3..4.2...7.",
+                1, 4, 9, Technique.NAKED_PAIR);
+        assertHint("......912....95348.9.3.......9.61...426....91..39.48..961....8......96.5.4..861.9",
+                4, 3, 8, Technique.NAKED_TRIPLE);
+        assertHint("......912....95348.9.3.......9.61...4268...91..39.48..961....8......96.5.4..861.9",
+                3, 8, 3, Technique.NAKED_QUAD);
+    }
+
+    @Test
+    void solvesPuzzleWithBoundedWork() {
+        HintEngine engine = new HintEngine();
+        int[] grid = SolverEngineTest.parse(PUZZLE);
+        int[] solution = SolverEngineTest.parse(SOLUTION);
+        int empty = 0;
+        for (int value : grid) {
+            if (value == 0) empty++;
+        }
+        for (int step = 0; step < empty; step++) {
+            Hint hint = engine.findHint(grid);
+            assertNotNull(hint, "no hint after " + step + " steps");
+            assertTrue(engine.getEliminations() <= 729, hint.toString());
+            int cell = hint.getRow() * 9 + hint.getCol();
+            assertEquals(0, grid[cell], hint.toString());
+            assertEquals(solution[cell], hint.getValue(), hint.toString());
+            assertEquals(hint.getValue(), engine.findHint(grid, candidatesOf(grid)).getValue(), hint.toString());
+            grid[cell] = hint.getValue();
+        }
+        assertArrayEquals(solution, grid);
+        assertNull(engine.findHint(grid), "a solved grid has no next step");
+    }
+
+    @Test
+    void givesUpWhenNoTechniqueApplies() {
+        HintEngine engine = new HintEngine();
+        int[] grid = SolverEngineTest.parse(STUCK);
+        assertEquals(1, new SudokuSolver().countSolutions(grid, 2));
+        assertNull(engine.findHint(grid));
+        assertTrue(engine.getEliminations() > 0 && engine.getEliminations() <= 729,
+                "eliminations: " + engine.getEliminations());
+        assertNull(engine.findHint(grid, candidatesOf(grid)));
+        assertArrayEquals(SolverEngineTest.parse(STUCK), grid, "the engine changed the grid");
+    }
+
+    @Test
+    void rejectsInvalidGrids() {
+        HintEngine engine = new HintEngine();
+        int[] conflicting = SolverEngineTest.parse(PUZZLE);
+        conflicting[2] = 5; // twice in the first row
+        assertNull(engine.findHint(conflicting));
+        assertThrows(IllegalArgumentException.class, () -> engine.findHint(new int[80]));
+        int[] invalid = new int[81];
+        invalid[0] = 10;
+        assertThrows(IllegalArgumentException.class, () -> engine.findHint(invalid));
+        assertThrows(IllegalArgumentException.class, () -> engine.findHint(new int[81], new int[80]));
+    }
+
+    @Test
+    void findsStepOnLargerSizes() {
+        for (BoardSize size : BoardSize.values()) {
+            HintEngine engine = new HintEngine(size);
+            int[] solution = TestPuzzles.patternSolution(size);
+            assertNull(engine.findHint(solution), size.toString());
+            int[] grid = solution.clone();
+            int cell = size.getCells() / 2;
+            grid[cell] = 0;
+            Hint hint = engine.findHint(grid);
+            assertEquals(cell / size.getGridSize(), hint.getRow(), size.toString());
+            assertEquals(cell % size.getGridSize(), hint.getCol(), size.toString());
+            assertEquals(solution[cell], hint.getValue(), size.toString());
+            assertSame(Technique.HIDDEN_SINGLE, hint.getTechnique(), size.toString());
+        }
+    }
+
+    /**
+     * Checks the first hint of a grid, both with the candidates computed by the engine and with them passed in.
+     */
+    private static void assertHint(String puzzle, int row, int col, int value, Technique technique) {
+        HintEngine engine = new HintEngine();
+        int[] grid = SolverEngineTest.parse(puzzle);
+        for (Hint hint : new Hint[]{engine.findHint(grid), engine.findHint(grid, candidatesOf(grid))}) {
+            assertNotNull(hint, puzzle);
+            assertEquals(row, hint.getRow(), hint.toString());
+            assertEquals(col, hint.getCol(), hint.toString());
+            assertEquals(value, hint.getValue(), hint.toString());
+            assertSame(technique, hint.getTechnique(), hint.toString());
+        }
+        assertArrayEquals(SolverEngineTest.parse(puzzle), grid, "the engine changed the grid");
+    }
+
+    /**
+     * Computes the candidate bitmask of every empty cell of a 9x9 grid from its filled cells.
+     */
+    private static int[] candidatesOf(int[] grid) {
+        int[] candidates = new int[81];
+        for (int cell = 0; cell < 81; cell++) {
+            if (grid[cell] != 0) continue;
+            int mask = 0x1FF;
+            int row = cell / 9, col = cell % 9, box = row / 3 * 27 + col / 3 * 3;
+            for (int i = 0; i < 9; i++) {
+                for (int other : new int[]{row * 9 + i, i * 9 + col, box + i / 3 * 9 + i % 3}) {
+                    if (grid[other] != 0) mask &= ~(1 << (grid[other] - 1));
+                }
+            }
+            candidates[cell] = mask;
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,138 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the ring buffer of {@link MoveJournal} when it wraps around, and that grouped moves are undone, redone
+ * and dropped together, also by {@link SudokuModel#resetMoves()}.
+ */
+class MoveJournalTest {
+
+    @Test
+    void keepsNewestMovesWhenWrapping() {
+        MoveJournal journal = new MoveJournal(8);
+        for (int cell = 0; cell < 21; cell++) journal.record(MoveJournal.pack(cell, 0, 1));
+        for (int cell = 20; cell >= 13; cell--) assertEquals(cell, MoveJournal.cellOf(journal.undo()));
+        assertFalse(journal.canUndo());
+        for (int cell = 13; cell <= 20; cell++) assertEquals(cell, MoveJournal.cellOf(journal.redo()));
+        assertFalse(journal.canRedo());
+
+        journal.undo();
+        journal.undo();
+        journal.record(MoveJournal.pack(40, 0, 2));
+        assertFalse(journal.canRedo(), "a new move drops the moves that could have been redone");
+        assertEquals(40, MoveJournal.cellOf(journal.undo()));
+        assertEquals(18, MoveJournal.cellOf(journal.undo()));
+    }
+
+    @Test
+    void undoesAndRedoesGroupsTogether() {
+        MoveJournal journal = new MoveJournal(16);
+        journal.record(MoveJournal.pack(1, 0, 5));
+        recordGroup(journal, 10, 3);
+        journal.record(MoveJournal.pack(2, 0, 6));
+
+        assertEquals(2, MoveJournal.cellOf(journal.undo()));
+        assertArrayEquals(new int[]{12, 11, 10}, undoGroup(journal));
+        assertEquals(1, MoveJournal.cellOf(journal.undo()));
+        assertFalse(journal.canUndo());
+
+        assertEquals(1, MoveJournal.cellOf(journal.redo()));
+        assertFalse(MoveJournal.isGrouped(journal.peekRedo()), "the first move of a group starts it");
+        assertEquals(10, MoveJournal.cellOf(journal.redo()));
+        assertTrue(MoveJournal.isGrouped(journal.redo()));
+        assertTrue(MoveJournal.isGrouped(journal.redo()));
+        assertFalse(MoveJournal.isGrouped(journal.peekRedo()));
+    }
+
+    @Test
+    void dropsWholeGroupWhenWrapping() {
+        MoveJournal journal = new MoveJournal(8);
+        recordGroup(journal, 10, 5);
+        for (int cell = 0; cell < 3; cell++) journal.record(MoveJournal.pack(cell, 0, 1));
+        journal.record(MoveJournal.pack(3, 0, 1)); // the journal is full: the group goes, not just its first move
+        for (int cell = 3; cell >= 0; cell--) assertEquals(cell, MoveJournal.cellOf(journal.undo()));
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    void decodesSmallerJournalWithoutSplittingGroup() throws IOException {
+        MoveJournal large = new MoveJournal(16);
+        recordGroup(large, 10, 6);
+        for (int cell = 0; cell < 5; cell++) large.record(MoveJournal.pack(cell, 0, 1));
+        ByteBuffer buffer = ByteBuffer.allocate(large.encodedSize());
+        large.encode(buffer);
+        buffer.flip();
+
+        MoveJournal small = new MoveJournal(8);
+        small.decode(buffer, 81, 9);
+        for (int cell = 4; cell >= 0; cell--) assertEquals(cell, MoveJournal.cellOf(small.undo()));
+        assertFalse(small.canUndo(), "the rest of the group must not be kept");
+    }
+
+    @Test
+    void resetLargerThanJournalClearsIt() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 64);
+        model.initGame(BoardSize.SIXTEEN, SudokuLevel.EASY);
+        int givens = model.getFilledCount();
+        TestPuzzles.play(model, 256); // every empty cell, more than the journal holds
+        assertEquals(256, model.getFilledCount());
+        model.resetMoves();
+        assertEquals(givens, model.getFilledCount());
+        assertFalse(model.undo(), "a reset larger than the journal cannot be undone");
+        assertEquals(givens, model.getFilledCount());
+    }
+
+    @Test
+    void resetPushedOutOfJournalIsNotPartlyUndone() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 64);
+        int givens = model.getFilledCount();
+        assertEquals(40, TestPuzzles.play(model, 40));
+        model.resetMoves();
+        model.resetMoves(); // nothing to clear, so nothing is recorded
+        int[] cleared = values(model);
+        assertEquals(30, TestPuzzles.play(model, 30)); // pushes the first moves of the reset out of the journal
+        while (model.undo()) {
+            // undo as far as the journal goes
+        }
+        assertEquals(givens, model.getFilledCount(), "undo went back into the reset");
+        assertArrayEquals(cleared, values(model));
+
+        model.undo();
+        assertTrue(model.canRedo());
+        while (model.redo()) {
+            // redo everything again
+        }
+        assertEquals(givens + 30, model.getFilledCount());
+    }
+
+    private static int[] values(SudokuModel model) {
+        PackedBoard board = model.getPackedBoard();
+        int[] values = new int[board.getCells()];
+        for (int cell = 0; cell < values.length; cell++) values[cell] = board.getCurrent(cell);
+        return values;
+    }
+
+    private static void recordGroup(MoveJournal journal, int firstCell, int cells) {
+        for (int i = 0; i < cells; i++) {
+            journal.record(MoveJournal.pack(firstCell + i, 1, 0) | (i > 0 ? MoveJournal.GROUPED : 0));
+        }
+    }
+
+    private static int[] undoGroup(MoveJournal journal) {
+        List<Integer> cells = new ArrayList<>();
+        int move;
+        do {
+            move = journal.undo();
+            cells.add(MoveJournal.cellOf(move));
+        } while (MoveJournal.isGrouped(move));
+        return cells.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,127 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link PuzzleArchive#take(SudokuLevel)} finds the puzzles of every level, also after appends and
+ * when reopened with a missing, stale or foreign index file, and that read-only archives are never changed.
+ */
+class PuzzleArchiveTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void takesPuzzlesOfRareLevel() throws IOException {
+        Path file = directory.resolve("pack.sdka");
+        try (PuzzleArchive archive = PuzzleArchive.open(file)) {
+            assertThrows(NoSuchElementException.class, () -> archive.take(SudokuLevel.EASY));
+            List<Puzzle> puzzles = new ArrayList<>();
+            for (int i = 0; i < 999; i++) puzzles.add(TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.EASY));
+            archive.appendAll(puzzles);
+            assertThrows(NoSuchElementException.class, () -> archive.take(SudokuLevel.HARD));
+            long hard = archive.append(TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.HARD));
+            assertEquals(999, hard);
+            for (int i = 0; i < 20; i++) assertSame(SudokuLevel.HARD, archive.take(SudokuLevel.HARD).getLevel());
+            assertSame(SudokuLevel.EASY, archive.take(SudokuLevel.EASY).getLevel());
+            assertThrows(NoSuchElementException.class, () -> archive.take(SudokuLevel.MEDIUM));
+        }
+        try (PuzzleArchive archive = PuzzleArchive.openReadOnly(file)) {
+            assertEquals(1000, archive.size());
+            assertSame(SudokuLevel.HARD, archive.take(SudokuLevel.HARD).getLevel());
+            assertEquals(TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.HARD).toLine(), archive.get(999).toLine());
+        }
+    }
+
+    @Test
+    void neverChangesReadOnlyArchive() throws IOException {
+        Path empty = Files.createFile(directory.resolve("empty.sdka"));
+        assertThrows(IOException.class, () -> PuzzleArchive.openReadOnly(empty));
+        assertEquals(0, Files.size(empty));
+        assertThrows(IOException.class, () -> PuzzleArchive.openReadOnly(directory.resolve("missing.sdka")));
+
+        Path file = directory.resolve("pack.sdka");
+        try (PuzzleArchive archive = PuzzleArchive.open(file)) {
+            archive.append(TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.MEDIUM));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.delete(indexOf(file));
+        assertTrue(file.toFile().setReadOnly());
+        try (PuzzleArchive archive = PuzzleArchive.openReadOnly(file)) {
+            assertSame(SudokuLevel.MEDIUM, archive.take(SudokuLevel.MEDIUM).getLevel());
+            assertThrows(IllegalStateException.class,
+                    () -> archive.append(TestPuzzles.puzzle(BoardSize.NINE, SudokuLevel.EASY)));
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+        assertFalse(Files.exists(indexOf(file)), "a read-only archive wrote an index");
+    }
+
+    @Test
+    void writesIndexOnClose() throws IOException {
+        Path file = directory.resolve("pack.sdka");
+        write(file, SudokuLevel.EASY, 30);
+        write(file, SudokuLevel.HARD, 3);
+        assertEquals(64 + 4 * 33, Files.size(indexOf(file)));
+        try (PuzzleArchive archive = PuzzleArchive.openReadOnly(file)) {
+            assertEquals(33, archive.size());
+            for (int i = 0; i < 20; i++) assertSame(SudokuLevel.HARD, archive.take(SudokuLevel.HARD).getLevel());
+            assertSame(SudokuLevel.EASY, archive.take(SudokuLevel.EASY).getLevel());
+            assertThrows(NoSuchElementException.class, () -> archive.take(SudokuLevel.MEDIUM));
+        }
+    }
+
+    @Test
+    void readsRecordsAfterStaleIndex() throws IOException {
+        Path file = directory.resolve("pack.sdka");
+        write(file, SudokuLevel.EASY, 10);
+        byte[] staleIndex = Files.readAllBytes(indexOf(file));
+        write(file, SudokuLevel.MEDIUM, 2); // as if the archive was not closed after these appends
+        Files.write(indexOf(file), staleIndex);
+        try (PuzzleArchive archive = PuzzleArchive.open(file)) {
+            assertEquals(12, archive.size());
+            assertSame(SudokuLevel.MEDIUM, archive.take(SudokuLevel.MEDIUM).getLevel());
+        }
+        assertEquals(64 + 4 * 12, Files.size(indexOf(file)), "the index was not brought up to date");
+    }
+
+    @Test
+    void ignoresIndexOfAnotherArchive() throws IOException {
+        Path file = directory.resolve("pack.sdka");
+        Path other = directory.resolve("other.sdka");
+        write(file, SudokuLevel.EASY, 5);
+        write(other, SudokuLevel.HARD, 5);
+        Files.copy(indexOf(other), indexOf(file), StandardCopyOption.REPLACE_EXISTING);
+        try (PuzzleArchive archive = PuzzleArchive.openReadOnly(file)) {
+            assertSame(SudokuLevel.EASY, archive.take(SudokuLevel.EASY).getLevel());
+            assertThrows(NoSuchElementException.class, () -> archive.take(SudokuLevel.HARD));
+        }
+
+        byte[] damaged = Files.readAllBytes(indexOf(other));
+        damaged[20] ^= 1; // the number of EASY records
+        Files.write(indexOf(other), damaged);
+        try (PuzzleArchive archive = PuzzleArchive.openReadOnly(other)) {
+            assertSame(SudokuLevel.HARD, archive.take(SudokuLevel.HARD).getLevel());
+            assertThrows(NoSuchElementException.class, () -> archive.take(SudokuLevel.EASY));
+        }
+    }
+
+    private static void write(Path file, SudokuLevel level, int count) throws IOException {
+        try (PuzzleArchive archive = PuzzleArchive.open(file)) {
+            for (int i = 0; i < count; i++) archive.append(TestPuzzles.puzzle(BoardSize.NINE, level));
+        }
+    }
+
+    private static Path indexOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+}
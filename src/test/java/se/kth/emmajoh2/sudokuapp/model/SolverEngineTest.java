@@ -0,0 +1,135 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks both {@link SolverBackend}s on grids with a known number of solutions, for every {@link BoardSize}.
+ */
+class SolverEngineTest {
+    private static final String PUZZLE =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    private static final String SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+
+    @Test
+    void solvesUniquePuzzle() {
+        for (SolverBackend backend : SolverBackend.values()) {
+            SolverEngine solver = backend.newEngine();
+            int[] grid = parse(PUZZLE);
+            assertEquals(1, solver.countSolutions(grid, 2), backend.name());
+            assertArrayEquals(parse(PUZZLE), grid, backend + " changed the grid while counting");
+            assertTrue(solver.hasUniqueSolution(grid), backend.name());
+            assertTrue(solver.solve(grid), backend.name());
+            assertArrayEquals(parse(SOLUTION), grid, backend.name());
+        }
+    }
+
+    @Test
+    void countsMultipleSolutions() {
+        for (SolverBackend backend : SolverBackend.values()) {
+            for (BoardSize size : BoardSize.values()) {
+                SolverEngine solver = backend.newEngine(size);
+                int[] empty = new int[size.getCells()];
+                assertEquals(2, solver.countSolutions(empty, 2), backend + " " + size);
+                assertFalse(solver.hasUniqueSolution(empty), backend + " " + size);
+                assertTrue(solver.solve(empty), backend + " " + size);
+                assertValidSolution(size, empty);
+            }
+        }
+    }
+
+    @Test
+    void solvesLargerSizes() {
+        for (SolverBackend backend : SolverBackend.values()) {
+            for (BoardSize size : BoardSize.values()) {
+                SolverEngine solver = backend.newEngine(size);
+                assertSame(size, solver.getBoardSize());
+                int[] solution = TestPuzzles.patternSolution(size);
+                int[] grid = solution.clone();
+                // without its first row and column the pattern still has only one solution
+                for (int i = 0; i < size.getGridSize(); i++) {
+                    grid[i] = 0;
+                    grid[i * size.getGridSize()] = 0;
+                }
+                assertEquals(1, solver.countSolutions(grid, 2), backend + " " + size);
+                assertTrue(solver.solve(grid), backend + " " + size);
+                assertArrayEquals(solution, grid, backend + " " + size);
+            }
+        }
+    }
+
+    @Test
+    void solvesWhileCounting() {
+        for (SolverBackend backend : SolverBackend.values()) {
+            SolverEngine solver = backend.newEngine();
+            int[] grid = parse(PUZZLE);
+            assertEquals(1, solver.solveAndCount(grid, 2), backend.name());
+            assertArrayEquals(parse(SOLUTION), grid, backend.name());
+            for (BoardSize size : BoardSize.values()) {
+                int[] empty = new int[size.getCells()];
+                assertEquals(2, backend.newEngine(size).solveAndCount(empty, 2), backend + " " + size);
+                assertValidSolution(size, empty);
+            }
+            int[] unsolvable = new int[81];
+            for (int col = 0; col < 8; col++) unsolvable[col] = col + 1;
+            unsolvable[9 + 8] = 9;
+            int[] copy = unsolvable.clone();
+            assertEquals(0, solver.solveAndCount(unsolvable, 2), backend.name());
+            assertArrayEquals(copy, unsolvable, backend + " must leave an unsolvable grid untouched");
+        }
+    }
+
+    @Test
+    void rejectsConflictingGrid() {
+        for (SolverBackend backend : SolverBackend.values()) {
+            for (BoardSize size : BoardSize.values()) {
+                SolverEngine solver = backend.newEngine(size);
+                int[] grid = new int[size.getCells()];
+                grid[0] = 1;
+                grid[size.getGridSize() - 1] = 1; // the same digit twice in the first row
+                assertEquals(0, solver.countSolutions(grid, 2), backend + " " + size);
+                int[] copy = grid.clone();
+                assertFalse(solver.solve(grid), backend + " " + size);
+                assertArrayEquals(copy, grid, backend + " must leave an unsolvable grid untouched");
+            }
+            // no conflict between the givens, but the last cell of the first row has no candidate left
+            int[] grid = new int[81];
+            for (int col = 0; col < 8; col++) grid[col] = col + 1;
+            grid[9 + 8] = 9;
+            assertEquals(0, backend.newEngine().countSolutions(grid, 2), backend.name());
+            assertFalse(backend.newEngine().solve(grid), backend.name());
+        }
+    }
+
+    @Test
+    void rejectsInvalidGrids() {
+        for (SolverBackend backend : SolverBackend.values()) {
+            SolverEngine solver = backend.newEngine();
+            assertThrows(IllegalArgumentException.class, () -> solver.solve(new int[80]));
+            int[] grid = new int[81];
+            grid[3] = 10;
+            assertThrows(IllegalArgumentException.class, () -> solver.countSolutions(grid, 2));
+            assertThrows(IllegalArgumentException.class, () -> solver.countSolutions(new int[81], 0));
+        }
+    }
+
+    static int[] parse(String text) {
+        int[] grid = new int[text.length()];
+        for (int i = 0; i < grid.length; i++) grid[i] = text.charAt(i) == '.' ? 0 : text.charAt(i) - '0';
+        return grid;
+    }
+
+    static void assertValidSolution(BoardSize size, int[] grid) {
+        int gridSize = size.getGridSize();
+        for (int[] unit : size.unitCells()) {
+            long seen = 0;
+            for (int cell : unit) {
+                assertTrue(grid[cell] >= 1 && grid[cell] <= gridSize, "cell " + cell + " is empty");
+                seen |= 1L << grid[cell];
+            }
+            assertEquals(Long.bitCount(seen), gridSize, "a unit holds a digit twice");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saves and loads games through files with {@link SudokuIO}, in the binary format and in the serialized format
+ * of older versions.
+ */
+class SudokuIOTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void savesAndLoadsEverySize() throws IOException {
+        for (BoardSize size : BoardSize.values()) {
+            SudokuModel model = new SudokuModel(TestPuzzles.source());
+            model.initGame(size, SudokuLevel.EASY);
+            TestPuzzles.play(model, 10);
+            model.undo();
+            Path file = directory.resolve(size.getGridSize() + ".sudoku");
+            SudokuIO.saveGame(model, file);
+            assertEquals(SudokuIO.encodeGame(model).length, Files.size(file));
+
+            SudokuModel loaded = new SudokuModel(TestPuzzles.source());
+            SudokuIO.loadGame(loaded, file);
+            assertSameGame(model, loaded);
+            assertTrue(loaded.canUndo() && loaded.canRedo(), "the move history was not loaded");
+            while (model.undo()) {
+                assertTrue(loaded.undo());
+                assertSameGame(model, loaded);
+            }
+            assertFalse(loaded.undo());
+        }
+    }
+
+    @Test
+    void loadsHistoryLongerThanDefaultJournal() throws IOException {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 1 << 16);
+        int moves = MoveJournal.DEFAULT_CAPACITY + 904;
+        for (int i = 0; i < moves; i++) model.addNumber(0, 1, i % 9 + 1); // cell 1 is empty in the test puzzles
+        Path file = directory.resolve("long.sudoku");
+        SudokuIO.saveGame(model, file);
+        long defaultMax = BoardCodec.MAX_RECORD_SIZE + MoveJournal.maxEncodedSize(MoveJournal.DEFAULT_CAPACITY);
+        assertTrue(Files.size(file) > defaultMax, "the save must not fit the default journal");
+
+        SudokuModel loaded = new SudokuModel(TestPuzzles.source(), 1 << 16);
+        SudokuIO.loadGame(loaded, file);
+        assertSameGame(model, loaded);
+        int undone = 0;
+        while (loaded.undo()) undone++;
+        assertEquals(moves, undone);
+    }
+
+    @Test
+    void rejectsFlippedByte() throws IOException {
+        SudokuModel model = new SudokuModel(TestPuzzles.source());
+        TestPuzzles.play(model, 5);
+        byte[] save = SudokuIO.encodeGame(model);
+        for (int i : new int[]{0, 4, 5, 40, BoardCodec.RECORD_SIZE - 1, BoardCodec.RECORD_SIZE + 20, save.length - 1}) {
+            byte[] damaged = save.clone();
+            damaged[i] ^= 0x10;
+            assertRejected(damaged, "save with byte " + i + " flipped");
+        }
+    }
+
+    @Test
+    void rejectsTruncatedSave() throws IOException {
+        SudokuModel model = new SudokuModel(TestPuzzles.source());
+        TestPuzzles.play(model, 5);
+        byte[] save = SudokuIO.encodeGame(model);
+        for (int length : new int[]{0, 3, BoardCodec.RECORD_SIZE - 1, BoardCodec.RECORD_SIZE + 10, save.length - 1}) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(save, 0, truncated, 0, length);
+            assertRejected(truncated, "save cut to " + length + " bytes");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void loadsLegacySerializedSave() throws IOException {
+        for (BoardSize size : BoardSize.values()) {
+            SudokuModel model = new SudokuModel(TestPuzzles.source());
+            model.initGame(size, SudokuLevel.MEDIUM);
+            TestPuzzles.play(model, 7);
+            Path file = directory.resolve(size.getGridSize() + ".ser");
+            SudokuIO.serializeToFile(model.getSudokuBoard(), file.toFile());
+
+            SudokuModel loaded = new SudokuModel(TestPuzzles.source());
+            loaded.initGame(SudokuLevel.MEDIUM);
+            TestPuzzles.play(loaded, 3);
+            SudokuIO.loadGame(loaded, file);
+            assertSameGame(model, loaded);
+            assertFalse(loaded.canUndo(), "old saves have no move history");
+        }
+    }
+
+    private void assertRejected(byte[] save, String message) throws IOException {
+        Path file = directory.resolve("damaged.sudoku");
+        Files.write(file, save);
+        SudokuModel model = new SudokuModel(TestPuzzles.source());
+        TestPuzzles.play(model, 2);
+        byte[] before = SudokuIO.encodeGame(model);
+        assertThrows(IOException.class, () -> SudokuIO.loadGame(model, file), message);
+        assertArrayEquals(before, SudokuIO.encodeGame(model), message + " changed the game");
+    }
+
+    private static void assertSameGame(SudokuModel expected, SudokuModel actual) {
+        assertSame(expected.getLevel(), actual.getLevel());
+        BoardCodecTest.assertSameBoard(expected.getPackedBoard(), actual.getPackedBoard());
+        assertEquals(expected.getFilledCount(), actual.getFilledCount());
+        assertEquals(expected.getCorrectCount(), actual.getCorrectCount());
+        assertEquals(expected.getConflictCount(), actual.getConflictCount());
+    }
+}
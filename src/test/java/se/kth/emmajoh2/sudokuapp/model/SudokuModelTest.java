@@ -0,0 +1,246 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plays random sequences of moves, hints, resets, undos, redos and loads on a {@link SudokuModel} and checks after
+ * every step that the state it keeps up to date matches the state computed from scratch from the board.
+ */
+class SudokuModelTest {
+    private static final String PUZZLE =
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    private static final String SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+    private static final int OPERATIONS = 2000;
+
+    @Test
+    void keepsStateOfRandomGames() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 64);
+        model.loadPuzzle(new Puzzle(SudokuLevel.EASY, SolverEngineTest.parse(PUZZLE),
+                SolverEngineTest.parse(SOLUTION)));
+        assertState(model);
+        playRandomly(model, new SplittableRandom(1), OPERATIONS);
+    }
+
+    @Test
+    void keepsStateOfRandomGamesOnLargerSizes() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 16, BoardSize.SIXTEEN, SudokuLevel.EASY);
+        assertState(model);
+        playRandomly(model, new SplittableRandom(2), OPERATIONS);
+        model.initGame(BoardSize.TWENTY_FIVE, SudokuLevel.HARD);
+        assertState(model);
+        playRandomly(model, new SplittableRandom(3), OPERATIONS);
+    }
+
+    @Test
+    void keepsStateWhenHistoryOverflows() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 4);
+        SplittableRandom random = new SplittableRandom(4);
+        playRandomly(model, random, OPERATIONS);
+        TestPuzzles.play(model, 40);
+        model.resetMoves(); // clears more cells than the history holds
+        assertState(model);
+        assertFalse(model.undo());
+        playRandomly(model, random, OPERATIONS);
+    }
+
+    @Test
+    void tracksConflictsWithoutSolution() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 64);
+        // an empty board whose solution is not known, so only the rules say what conflicts
+        model.loadPuzzle(new Puzzle(SudokuLevel.EASY, new int[81], new int[81]));
+        model.addNumber(0, 0, 1);
+        model.addNumber(0, 1, 2);
+        assertConflicts(model, 0);
+        model.addNumber(0, 4, 1); // a second 1 in the first row
+        assertConflicts(model, 1);
+        assertTrue(model.isConflict(0, 0));
+        assertTrue(model.isConflict(0, 4));
+        assertFalse(model.isConflict(0, 1));
+        assertFalse(model.isConflict(0, 2), "an empty tile is never a conflict");
+        model.addNumber(0, 8, 1); // a third one is still one conflict of the row
+        assertConflicts(model, 1);
+        assertTrue(model.isConflict(0, 8));
+        model.addNumber(1, 1, 1); // and a second one in the first section
+        assertConflicts(model, 2);
+        assertTrue(model.isConflict(1, 1));
+
+        model.addNumber(0, 8, 0);
+        assertConflicts(model, 2);
+        model.addNumber(0, 4, 3); // back to one 1 in the first row
+        assertConflicts(model, 1);
+        assertTrue(model.isConflict(0, 0), "still twice in the first section");
+        assertFalse(model.isConflict(0, 4));
+        model.addNumber(1, 1, 0);
+        assertConflicts(model, 0);
+        assertFalse(model.isConflict(0, 0));
+        assertTrue(model.undo());
+        assertConflicts(model, 1);
+        model.resetMoves();
+        assertConflicts(model, 0);
+        assertTrue(model.undo());
+        assertConflicts(model, 1);
+
+        playRandomly(model, new SplittableRandom(5), OPERATIONS);
+    }
+
+    @Test
+    void tracksConflictsOfGivens() {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), 64);
+        int[] givens = SolverEngineTest.parse(PUZZLE);
+        int[] solution = SolverEngineTest.parse(SOLUTION);
+        givens[2] = 5; // twice in the first row and section
+        solution[2] = 5; // the model takes the givens to be correct
+        model.loadPuzzle(new Puzzle(SudokuLevel.EASY, givens, solution));
+        assertConflicts(model, 2);
+        assertTrue(model.isConflict(0, 0));
+        assertTrue(model.isConflict(0, 2));
+        assertFalse(model.isConflict(0, 1));
+        model.resetMoves();
+        assertConflicts(model, 2);
+        playRandomly(model, new SplittableRandom(6), OPERATIONS);
+    }
+
+    /**
+     * Checks the number of conflicts of a model and that they match a full scan of its board.
+     */
+    private static void assertConflicts(SudokuModel model, int conflicts) {
+        assertEquals(conflicts, model.getConflictCount());
+        assertEquals(conflicts > 0, model.hasConflicts());
+        assertState(model);
+    }
+
+    /**
+     * Applies random operations to a model and checks its state after each of them.
+     */
+    private static void playRandomly(SudokuModel model, SplittableRandom random, int operations) {
+        int gridSize = model.getBoardSize().getGridSize();
+        for (int i = 0; i < operations; i++) {
+            int operation = random.nextInt(100);
+            String step;
+            if (operation < 60) {
+                int row = random.nextInt(gridSize), col = random.nextInt(gridSize);
+                int value = random.nextInt(gridSize + 1);
+                model.addNumber(row, col, value);
+                step = "addNumber(" + row + ", " + col + ", " + value + ")";
+            } else if (operation < 70) {
+                model.addhint();
+                step = "addhint";
+            } else if (operation < 80) {
+                model.undo();
+                step = "undo";
+            } else if (operation < 88) {
+                model.redo();
+                step = "redo";
+            } else if (operation < 92) {
+                model.resetMoves();
+                step = "resetMoves";
+            } else if (operation < 96) {
+                model.loadBoard(model.getSudokuBoard());
+                step = "loadBoard";
+            } else {
+                model.loadBoard(randomBoard(model, random));
+                step = "loadBoard(random)";
+            }
+            assertState(model, "after " + step + " (operation " + i + ")");
+        }
+    }
+
+    /**
+     * Returns the tiles of the model's board with a random value, right or wrong, in each cell that is not
+     * pre-filled.
+     */
+    private static SelectedTile[][] randomBoard(SudokuModel model, SplittableRandom random) {
+        SelectedTile[][] tiles = model.getSudokuBoard();
+        int gridSize = tiles.length;
+        for (SelectedTile[] row : tiles) {
+            for (int col = 0; col < gridSize; col++) {
+                SelectedTile tile = row[col];
+                if (tile.isInitialTile()) continue;
+                int value = random.nextInt(3) == 0 ? tile.getSolutionTile() : random.nextInt(gridSize + 1);
+                row[col] = new SelectedTile(value, tile.getSolutionTile(), 1);
+            }
+        }
+        return tiles;
+    }
+
+    private static void assertState(SudokuModel model) {
+        assertState(model, "");
+    }
+
+    /**
+     * Compares the counters, the candidates and the conflicts of the model with a full scan of its board.
+     */
+    private static void assertState(SudokuModel model, String message) {
+        PackedBoard board = model.getPackedBoard();
+        int filled = 0, correct = 0, wrong = 0;
+        for (int cell = 0; cell < board.getCells(); cell++) {
+            int value = board.getCurrent(cell);
+            if (value == 0) continue;
+            filled++;
+            if (value == board.getSolution(cell)) correct++;
+            else wrong++;
+        }
+        assertEquals(filled, model.getFilledCount(), "filled " + message);
+        assertEquals(correct, model.getCorrectCount(), "correct " + message);
+        assertEquals(wrong, model.getWrongCount(), "wrong " + message);
+        assertEquals(wrong == 0, model.placedTilesCorrect(), message);
+        assertEquals(correct == board.getCells(), model.allTilesCorrect(), message);
+        assertEquals(filled == board.getCells(), model.gameOver(), message);
+
+        int gridSize = model.getBoardSize().getGridSize();
+        for (int cell = 0; cell < board.getCells(); cell++) {
+            int row = cell / gridSize, col = cell % gridSize;
+            assertEquals(candidatesOf(model, row, col), model.getCandidates(row, col),
+                    "candidates of (" + row + ", " + col + ") " + message);
+        }
+
+        // count the numbers of every row, column and section by brute force
+        int sectionSize = model.getBoardSize().getSectionSize();
+        int[][] counts = new int[3 * gridSize][gridSize + 1];
+        for (int cell = 0; cell < board.getCells(); cell++) {
+            int row = cell / gridSize, col = cell % gridSize;
+            int value = model.getTileValue(row, col);
+            counts[row][value]++;
+            counts[gridSize + col][value]++;
+            counts[2 * gridSize + row / sectionSize * sectionSize + col / sectionSize][value]++;
+        }
+        int conflicts = 0;
+        for (int[] unit : counts) {
+            for (int value = 1; value <= gridSize; value++) {
+                if (unit[value] > 1) conflicts++;
+            }
+        }
+        assertEquals(conflicts, model.getConflictCount(), "conflicts " + message);
+        assertEquals(conflicts > 0, model.hasConflicts(), message);
+        for (int cell = 0; cell < board.getCells(); cell++) {
+            int row = cell / gridSize, col = cell % gridSize;
+            int value = model.getTileValue(row, col);
+            boolean conflict = value != 0 && (counts[row][value] > 1 || counts[gridSize + col][value] > 1
+                    || counts[2 * gridSize + row / sectionSize * sectionSize + col / sectionSize][value] > 1);
+            assertEquals(conflict, model.isConflict(row, col), "conflict at (" + row + ", " + col + ") " + message);
+        }
+    }
+
+    /**
+     * Computes the candidates of a tile from the numbers in its row, column and section.
+     */
+    private static int candidatesOf(SudokuModel model, int row, int col) {
+        if (model.getTileValue(row, col) != 0) return 0;
+        int gridSize = model.getBoardSize().getGridSize(), sectionSize = model.getBoardSize().getSectionSize();
+        int firstRow = row / sectionSize * sectionSize, firstCol = col / sectionSize * sectionSize;
+        int candidates = (1 << gridSize) - 1;
+        for (int i = 0; i < gridSize; i++) {
+            int[] values = {model.getTileValue(row, i), model.getTileValue(i, col),
+                    model.getTileValue(firstRow + i / sectionSize, firstCol + i % sectionSize)};
+            for (int value : values) {
+                if (value != 0) candidates &= ~(1 << (value - 1));
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,70 @@
+package se.kth.emmajoh2.sudokuapp.model;
+
+/**
+ * Puzzles for the tests that can be made for every {@link BoardSize} without running the generator. Public for the
+ * tests of the other packages, which cannot create a {@link Puzzle}.
+ */
+public final class TestPuzzles {
+
+    /**
+     * Returns the shifted-rows solution of a board size: every row is the one above it moved one section along.
+     */
+    public static int[] patternSolution(BoardSize size) {
+        int gridSize = size.getGridSize(), sectionSize = size.getSectionSize();
+        int[] grid = new int[size.getCells()];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                grid[row * gridSize + col] = (row * sectionSize + row / sectionSize + col) % gridSize + 1;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns a puzzle with the pattern solution where every other cell is pre-filled. It has more than one
+     * solution, which is enough for the tests that only play it.
+     */
+    static Puzzle puzzle(BoardSize size, SudokuLevel level) {
+        int[] solution = patternSolution(size);
+        int[] givens = new int[solution.length];
+        for (int cell = 0; cell < givens.length; cell += 2) givens[cell] = solution[cell];
+        return new Puzzle(level, givens, solution);
+    }
+
+    /**
+     * Returns a source of {@link #puzzle(BoardSize, SudokuLevel)}s of every size.
+     */
+    public static PuzzleSource source() {
+        return new PuzzleSource() {
+            @Override
+            public Puzzle take(SudokuLevel level) {
+                return take(BoardSize.NINE, level);
+            }
+
+            @Override
+            public Puzzle take(BoardSize size, SudokuLevel level) {
+                return puzzle(size, level);
+            }
+        };
+    }
+
+    /**
+     * Fills in the empty cells of a model: the first ones correctly and every third one wrongly.
+     *
+     * @return The number of cells filled in.
+     */
+    static int play(SudokuModel model, int moves) {
+        int gridSize = model.getBoardSize().getGridSize();
+        int played = 0;
+        for (int cell = 0; cell < gridSize * gridSize && played < moves; cell++) {
+            int row = cell / gridSize, col = cell % gridSize;
+            if (model.isInitTile(row, col)) continue;
+            int solution = model.getPackedBoard().getSolution(cell);
+            model.addNumber(row, col, played % 3 == 2 ? solution % gridSize + 1 : solution);
+            played++;
+        }
+        return played;
+    }
+
+    private TestPuzzles() {}
+}
@@ -0,0 +1,173 @@
+package se.kth.emmajoh2.sudokuapp.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.kth.emmajoh2.sudokuapp.model.SudokuIO;
+import se.kth.emmajoh2.sudokuapp.model.SudokuModel;
+import se.kth.emmajoh2.sudokuapp.model.TestPuzzles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a {@link SessionStore} with a budget of two models spills the least recently used sessions that are
+ * not in use, accounts for their bytes and restores the same games, in memory and on disk.
+ */
+class SessionStoreTest {
+    private static final int UNDO_LIMIT = 64;
+    private static final int SESSIONS = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void spillsToMemory() throws Exception {
+        checkSpilling(null);
+    }
+
+    @Test
+    void spillsToDisk() throws Exception {
+        checkSpilling(Files.createDirectory(directory.resolve("spill")));
+    }
+
+    private void checkSpilling(Path spill) throws Exception {
+        long modelBytes = newModel(0).estimateSize();
+        SessionStore store = newStore(2 * modelBytes, spill);
+        GameSession[] sessions = new GameSession[SESSIONS];
+        byte[][] games = new byte[SESSIONS][];
+        for (int i = 0; i < SESSIONS; i++) {
+            SudokuModel model = newModel(i);
+            games[i] = SudokuIO.encodeGame(model);
+            sessions[i] = store.create(model);
+            store.release(sessions[i]);
+        }
+        // the three least recently used sessions were spilled
+        assertSpilled(store, spill, sessions, games, 0, 1, 2);
+        assertEquals(3, store.getSpills());
+
+        GameSession first = store.acquire(sessions[0].getId());
+        assertArrayEquals(games[0], SudokuIO.encodeGame(first.getModel()));
+        store.release(first);
+        assertSpilled(store, spill, sessions, games, 1, 2, 3);
+        assertEquals(1, store.getRehydrations());
+
+        // session 4 is now the least recently used, but a request on another thread uses it, so session 0 is
+        // spilled instead
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread request = new Thread(() -> {
+            try {
+                GameSession busy = store.acquire(sessions[4].getId());
+                acquired.countDown();
+                done.await();
+                store.release(busy);
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        request.start();
+        acquired.await();
+        GameSession second = store.acquire(sessions[1].getId());
+        assertArrayEquals(games[1], SudokuIO.encodeGame(second.getModel()));
+        store.release(second);
+        assertSpilled(store, spill, sessions, games, 0, 2, 3);
+        done.countDown();
+        request.join();
+        assertSpilled(store, spill, sessions, games, 0, 2, 3);
+
+        assertTrue(store.remove(sessions[2].getId()));
+        assertFalse(store.remove(sessions[2].getId()));
+        assertNull(store.acquire(sessions[2].getId()));
+        assertTrue(store.remove(sessions[4].getId()));
+        assertEquals(SESSIONS - 2, store.size());
+        assertEquals(1, store.getResidentCount());
+        assertEquals(modelBytes, store.getResidentBytes());
+        assertEquals(2, store.getSpilledCount());
+        if (spill == null) assertEquals(games[0].length + games[3].length, store.getSpilledBytes());
+        else assertFalse(Files.exists(spillFile(spill, sessions[2])), "the spill file of a removed session is left");
+
+        for (int i : new int[]{0, 3}) {
+            GameSession session = store.acquire(sessions[i].getId());
+            assertArrayEquals(games[i], SudokuIO.encodeGame(session.getModel()), "session " + i);
+            store.release(session);
+        }
+    }
+
+    @Test
+    void keepsSessionResidentWhenSpillFails() throws IOException {
+        Path spill = Files.createDirectory(directory.resolve("spill"));
+        long modelBytes = newModel(0).estimateSize();
+        SessionStore store = newStore(modelBytes, spill);
+        GameSession[] sessions = new GameSession[3];
+        byte[][] games = new byte[3][];
+        games[0] = SudokuIO.encodeGame(newModel(0));
+        sessions[0] = store.create(newModel(0));
+        store.release(sessions[0]);
+
+        Files.delete(spill); // spilling fails until it is created again
+        games[1] = SudokuIO.encodeGame(newModel(1));
+        sessions[1] = store.create(newModel(1));
+        store.release(sessions[1]);
+        assertEquals(2, store.getResidentCount());
+        assertEquals(2 * modelBytes, store.getResidentBytes());
+        assertEquals(0, store.getSpilledCount());
+        assertEquals(0, store.getSpills());
+        assertArrayEquals(games[0], SudokuIO.encodeGame(sessions[0].model));
+
+        Files.createDirectory(spill);
+        games[2] = SudokuIO.encodeGame(newModel(2));
+        sessions[2] = store.create(newModel(2));
+        store.release(sessions[2]);
+        assertSpilled(store, spill, sessions, games, 0, 1);
+
+        Files.delete(spillFile(spill, sessions[1]));
+        assertThrows(IOException.class, () -> store.acquire(sessions[1].getId()));
+        assertTrue(sessions[1].tryLock(), "a session that failed to rehydrate is still locked");
+        sessions[1].unlock();
+        assertEquals(2, store.getSpilledCount());
+    }
+
+    /**
+     * Checks that exactly the given sessions are spilled, that the others are resident and accounted for, and
+     * that the spilled ones take the bytes of their games in memory or a file each on disk.
+     */
+    private static void assertSpilled(SessionStore store, Path spill, GameSession[] sessions, byte[][] games,
+                                      int... spilled) {
+        long modelBytes = newModel(0).estimateSize();
+        long spilledBytes = 0;
+        for (int i = 0; i < sessions.length; i++) {
+            boolean expected = false;
+            for (int s : spilled) expected |= s == i;
+            assertEquals(expected, sessions[i].model == null, "session " + i + " spilled");
+            if (spill != null) assertEquals(expected, Files.exists(spillFile(spill, sessions[i])), "file " + i);
+            if (expected) spilledBytes += games[i].length;
+        }
+        assertEquals(sessions.length, store.size());
+        assertEquals(spilled.length, store.getSpilledCount());
+        assertEquals(sessions.length - spilled.length, store.getResidentCount());
+        assertEquals((sessions.length - spilled.length) * modelBytes, store.getResidentBytes());
+        assertEquals(spill == null ? spilledBytes : 0, store.getSpilledBytes());
+    }
+
+    private static SessionStore newStore(long budget, Path spill) {
+        return new SessionStore(budget, spill, () -> SudokuModel.withoutGame(TestPuzzles.source(), UNDO_LIMIT));
+    }
+
+    /**
+     * Returns a game with two moves that differ for every {@code i} below 9.
+     */
+    private static SudokuModel newModel(int i) {
+        SudokuModel model = new SudokuModel(TestPuzzles.source(), UNDO_LIMIT);
+        model.addNumber(0, 1, i % 9 + 1); // the odd cells are empty in the test puzzles
+        model.addNumber(0, 3, (i + 4) % 9 + 1);
+        return model;
+    }
+
+    private static Path spillFile(Path spill, GameSession session) {
+        return spill.resolve(session.getId() + ".sudoku");
+    }
+}
@@ -0,0 +1,158 @@
+package se.kth.emmajoh2.sudokuapp.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.kth.emmajoh2.sudokuapp.model.BoardSize;
+import se.kth.emmajoh2.sudokuapp.model.Puzzle;
+import se.kth.emmajoh2.sudokuapp.model.PuzzleSource;
+import se.kth.emmajoh2.sudokuapp.model.SudokuLevel;
+import se.kth.emmajoh2.sudokuapp.model.TestPuzzles;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives a {@link SudokuServer} on a free port over HTTP: the routing, the status codes of failed requests and the
+ * JSON of the session actions.
+ */
+class SudokuServerTest {
+    private final AtomicInteger takes = new AtomicInteger();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SudokuServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        PuzzleSource puzzles = TestPuzzles.source();
+        PuzzleSource source = new PuzzleSource() {
+            @Override
+            public Puzzle take(SudokuLevel level) {
+                return take(BoardSize.NINE, level);
+            }
+
+            @Override
+            public Puzzle take(BoardSize size, SudokuLevel level) {
+                takes.incrementAndGet();
+                if (size == BoardSize.TWENTY_FIVE) throw new NoSuchElementException("no 25x25 puzzles");
+                return puzzles.take(size, level);
+            }
+        };
+        server = new SudokuServer(new InetSocketAddress("127.0.0.1", 0), source, 16);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void createsSessionWithOnePuzzle() throws Exception {
+        String body = ok("POST", "/sessions?size=16&level=hard");
+        assertTrue(body.contains("\"size\":16,\"level\":\"HARD\""), body);
+        assertEquals(1, takes.get(), "the session took more than one puzzle");
+        body = ok("POST", "/sessions");
+        assertTrue(body.contains("\"size\":9,\"level\":\"MEDIUM\""), body);
+        assertEquals(2, takes.get());
+        assertEquals(2, server.getSessionCount());
+
+        String id = field(body, "id");
+        body = ok("POST", "/sessions/" + id + "/new?level=EASY");
+        assertTrue(body.contains("\"id\":\"" + id + "\",\"size\":9,\"level\":\"EASY\""), body);
+        assertEquals(3, takes.get());
+    }
+
+    @Test
+    void playsSession() throws Exception {
+        String id = field(ok("POST", "/sessions"), "id");
+        String board = ok("GET", "/sessions/" + id);
+        String given = field(board, "given");
+        assertEquals('1', given.charAt(0));
+        assertEquals('0', given.charAt(1)); // the odd cells are empty in the test puzzles
+        int[] solution = TestPuzzles.patternSolution(BoardSize.NINE);
+
+        assertEquals("{\"accepted\":true,\"filled\":42,\"solved\":false}",
+                ok("POST", "/sessions/" + id + "/move?row=0&col=1&value=" + solution[1]));
+        assertEquals("{\"correct\":true,\"wrong\":0,\"conflicts\":0,\"filled\":42,\"solved\":false}",
+                ok("GET", "/sessions/" + id + "/check"));
+        assertEquals("{\"accepted\":false,\"filled\":42,\"solved\":false}",
+                ok("POST", "/sessions/" + id + "/move?row=0&col=0&value=" + solution[1]));
+        ok("POST", "/sessions/" + id + "/move?row=0&col=3&value=" + solution[1]); // twice in the first row
+        String check = ok("GET", "/sessions/" + id + "/check");
+        assertTrue(check.startsWith("{\"correct\":false,\"wrong\":1,"), check);
+        assertNotEquals("0", field(check, "conflicts"), check);
+        ok("POST", "/sessions/" + id + "/move?row=0&col=3&value=0");
+
+        String hint = ok("POST", "/sessions/" + id + "/hint");
+        assertTrue(hint.startsWith("{\"placed\":true,"), hint);
+        int row = Integer.parseInt(field(hint, "row")), col = Integer.parseInt(field(hint, "col"));
+        assertEquals(solution[row * 9 + col], Integer.parseInt(field(hint, "value")), hint);
+        board = ok("GET", "/sessions/" + id);
+        assertTrue(board.contains("\"filled\":43"), board);
+
+        ok("DELETE", "/sessions/" + id);
+        assertEquals(0, server.getSessionCount());
+        assertStatus(404, "GET", "/sessions/" + id);
+        assertStatus(404, "DELETE", "/sessions/" + id);
+    }
+
+    @Test
+    void mapsErrorsToStatusCodes() throws Exception {
+        String id = field(ok("POST", "/sessions"), "id");
+        assertStatus(405, "GET", "/sessions");
+        assertStatus(405, "GET", "/sessions/" + id + "/move?row=0&col=1&value=1");
+        assertStatus(405, "POST", "/sessions/" + id + "/check");
+        assertStatus(404, "GET", "/sessions/" + id + "/move/again");
+        assertStatus(404, "POST", "/sessions/" + id + "/undo");
+        assertStatus(404, "GET", "/sessions/0123456789abcdef");
+        assertStatus(400, "POST", "/sessions/" + id + "/move?row=0&col=1");
+        assertStatus(400, "POST", "/sessions/" + id + "/move?row=9&col=1&value=1");
+        assertStatus(400, "POST", "/sessions/" + id + "/move?row=0&col=1&value=one");
+        assertStatus(400, "POST", "/sessions?size=10");
+        assertStatus(400, "POST", "/sessions?level=IMPOSSIBLE");
+        assertStatus(503, "POST", "/sessions?size=25");
+        assertStatus(503, "POST", "/sessions/" + id + "/new?size=25");
+        assertEquals(1, server.getSessionCount());
+
+        String stats = ok("GET", "/stats");
+        assertTrue(stats.startsWith("{\"sessions\":1,\"resident\":1,\"spilled\":0,"), stats);
+        assertTrue(ok("GET", "/metrics").contains("server.request.nanos count="));
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String ok(String method, String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(method, path);
+        assertEquals(200, response.statusCode(), method + " " + path + ": " + response.body());
+        return response.body();
+    }
+
+    private void assertStatus(int status, String method, String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(method, path);
+        assertEquals(status, response.statusCode(), method + " " + path + ": " + response.body());
+        assertTrue(response.body().startsWith("{\"error\":\""), response.body());
+    }
+
+    /**
+     * Returns the value of a string or number field of a flat JSON object.
+     */
+    private static String field(String json, String name) {
+        Matcher matcher = Pattern.compile("\"" + name + "\":\"?([^\",}]*)").matcher(json);
+        assertTrue(matcher.find(), "no " + name + " in " + json);
+        return matcher.group(1);
+    }
+}